@@ -1,112 +1,495 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 /**
  * AVLTree class for managing a balanced binary search tree of stocks.
  * This class supports insertion, deletion, searching, and traversal operations,
  * while ensuring the tree remains balanced.
+ * Nodes are ordered by the packed {@link SymbolKey} of their symbol, so that most
+ * comparisons are between two longs. This is the same as symbol order when every
+ * symbol consists of at most 12 uppercase letters; other symbols come last.
+ * Every node also keeps the size, total market capitalization, and price range
+ * of its subtree, which answer rank and range queries in O(log n). Stocks stored
+ * in the tree must therefore only be changed through {@link #compute} or {@link #rekey}.
+ * It is the default {@link StockIndex} engine of StockDataManager.
  *
  * @author Muhammet Akkurt
  * @version 1.0
  */
-public class AVLTree {
+public class AVLTree implements StockIndex {
     private class Node {
         Stock stock;
+        long key; // Packed symbol of the stock
         Node left, right;
         int height;
+        int size; // Number of nodes in the subtree
+        long marketCapSum; // Total market capitalization of the subtree
+        double minPrice, maxPrice; // Price range of the subtree
         /**
          * Constructs a new Node with the specified stock.
          *
          * @param stock the stock associated with the node
+         * @param key the packed symbol of the stock
          */
-        Node(Stock stock) {
+        Node(Stock stock, long key) {
             this.stock = stock;
+            this.key = key;
             this.height = 1;
+            this.size = 1;
+            this.marketCapSum = stock.getMarketCap();
+            this.minPrice = stock.getPrice();
+            this.maxPrice = stock.getPrice();
         }
     }
 
+    /**
+     * Upper bound on the height of the tree. An AVL tree of height 64 would need
+     * more than 10^13 nodes, so the fixed-size path stack can never overflow.
+     */
+    private static final int MAX_HEIGHT = 64;
+    private static final int PARALLEL_BUILD_THRESHOLD = 1 << 13; // Smaller ranges are built sequentially
+    private static final Comparator<Stock> SYMBOL_ORDER = (a, b) -> SymbolKey.compare(
+            SymbolKey.encode(a.getSymbol()), a.getSymbol(), SymbolKey.encode(b.getSymbol()), b.getSymbol());
+
     private Node root;
+    private int modCount; // Number of insertions and removals, checked by cursors
+    private final Node[] path = new Node[MAX_HEIGHT]; // Nodes visited on the way down
+    private final boolean[] wentLeft = new boolean[MAX_HEIGHT]; // Direction taken from each visited node
     /**
      * Inserts a stock into the AVL tree.
+     * The tree is walked down once with a single key comparison per level, and
+     * the recorded path is rebalanced on the way back up.
      *
      * @param stock the stock to be inserted
      */
+    @Override
     public void insert(Stock stock) {
-        root = insert(root, stock);
+        String symbol = stock.getSymbol();
+        long key = SymbolKey.encode(symbol);
+        Node node = root;
+        int depth = 0;
+
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp == 0) {
+                node.stock = stock;
+                update(node);
+                retrace(depth);
+                return;
+            }
+            path[depth] = node;
+            wentLeft[depth++] = cmp < 0;
+            node = (cmp < 0) ? node.left : node.right;
+        }
+
+        replaceChild(depth, new Node(stock, key));
+        retrace(depth);
+        modCount++;
     }
     /**
-     * Helper method to insert a stock into the AVL tree starting from the given node.
-     * Rebalances the tree if necessary.
+     * Builds a tree from stocks that are already sorted by symbol, in linear time.
+     * The middle stock of every range becomes the root of its subtree, so the
+     * tree is perfectly balanced and no rotations are needed.
      *
-     * @param node the current node
-     * @param stock the stock to be inserted
-     * @return the updated node after insertion and rebalancing
+     * @param sorted the stocks in strictly ascending symbol order
+     * @return the new tree
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+     */
+    public static AVLTree fromSorted(Stock[] sorted) {
+        AVLTree tree = new AVLTree();
+        long[] keys = new long[sorted.length];
+        encodeSorted(sorted, keys, 0, sorted.length - 1);
+        tree.root = tree.build(sorted, keys, 0, sorted.length - 1);
+        return tree;
+    }
+    /**
+     * Builds a tree from stocks that are already sorted by symbol, like {@link #fromSorted},
+     * but builds the left and right subtrees of large ranges in parallel with fork/join.
+     * Small inputs are built sequentially.
+     *
+     * @param sorted the stocks in strictly ascending symbol order
+     * @return the new tree
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
      */
-    private Node insert(Node node, Stock stock) {
-        if (node == null) {
-            return new Node(stock);
+    public static AVLTree fromSortedParallel(Stock[] sorted) {
+        if (sorted.length <= PARALLEL_BUILD_THRESHOLD) {
+            return fromSorted(sorted);
         }
-
-        if (stock.getSymbol().compareTo(node.stock.getSymbol()) < 0) {
-            node.left = insert(node.left, stock);
-        } else if (stock.getSymbol().compareTo(node.stock.getSymbol()) > 0) {
-            node.right = insert(node.right, stock);
-        } else {
-            node.stock = stock;
+        AVLTree tree = new AVLTree();
+        long[] keys = new long[sorted.length];
+        tree.root = ForkJoinPool.commonPool().invoke(tree.new BuildTask(sorted, keys, 0, sorted.length - 1));
+        return tree;
+    }
+    /**
+     * Replaces the contents of this tree with stocks that are already sorted by symbol,
+     * building it like {@link #fromSortedParallel}.
+     *
+     * @param sorted an iterator over the stocks in strictly ascending symbol order
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order;
+     *         the tree is left unchanged
+     */
+    public void bulkLoad(Iterator<Stock> sorted) {
+        List<Stock> stocks = new ArrayList<>();
+        sorted.forEachRemaining(stocks::add);
+        root = fromSortedParallel(stocks.toArray(new Stock[0])).root;
+        modCount++;
+    }
+    /**
+     * Encodes the symbols of a range of sorted stocks and checks that they are in strictly
+     * ascending order, including the step from the stock just before the range.
+     *
+     * @param sorted the sorted stocks
+     * @param keys receives the packed symbols of the range
+     * @param lo the index of the first stock of the range
+     * @param hi the index of the last stock of the range
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+     */
+    private static void encodeSorted(Stock[] sorted, long[] keys, int lo, int hi) {
+        for (int i = lo; i <= hi; i++) {
+            keys[i] = SymbolKey.encode(sorted[i].getSymbol());
+            if (i > 0) {
+                checkOrder(sorted, i, (i > lo) ? keys[i - 1] : SymbolKey.encode(sorted[i - 1].getSymbol()), keys[i]);
+            }
+        }
+    }
+    /**
+     * Checks that a stock comes strictly after the one before it in symbol order.
+     *
+     * @param sorted the sorted stocks
+     * @param i the index of the stock, at least 1
+     * @param previousKey the packed symbol of the stock at index i - 1
+     * @param key the packed symbol of the stock at index i
+     * @throws IllegalArgumentException if the two stocks are out of order or have the same symbol
+     */
+    private static void checkOrder(Stock[] sorted, int i, long previousKey, long key) {
+        if (SymbolKey.compare(previousKey, sorted[i - 1].getSymbol(), key, sorted[i].getSymbol()) >= 0) {
+            throw new IllegalArgumentException("Stocks are not in ascending symbol order at index " + i
+                    + ": " + sorted[i - 1].getSymbol() + ", " + sorted[i].getSymbol());
+        }
+    }
+    /**
+     * Builds a balanced subtree from a range of sorted stocks whose keys are already encoded.
+     *
+     * @param sorted the sorted stocks
+     * @param keys the packed symbols of the stocks
+     * @param lo the index of the first stock of the range
+     * @param hi the index of the last stock of the range
+     * @return the root of the subtree, or null if the range is empty
+     */
+    private Node build(Stock[] sorted, long[] keys, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+        int mid = (lo + hi) >>> 1;
+        Node node = new Node(sorted[mid], keys[mid]);
+        node.left = build(sorted, keys, lo, mid - 1);
+        node.right = build(sorted, keys, mid + 1, hi);
+        update(node);
+        return node;
+    }
+    /**
+     * BuildTask class builds a balanced subtree from a range of sorted stocks with fork/join.
+     * Ranges up to PARALLEL_BUILD_THRESHOLD stocks are encoded, checked, and built sequentially;
+     * larger ones build their middle node and fork the two halves. It is an inner class because it
+     * creates the Node objects of its tree; tasks are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class BuildTask extends RecursiveTask<Node> {
+        private final Stock[] sorted;
+        private final long[] keys;
+        private final int lo, hi;
+        /**
+         * Constructs a new BuildTask.
+         *
+         * @param sorted the sorted stocks
+         * @param keys receives the packed symbols of the stocks
+         * @param lo the index of the first stock of the range
+         * @param hi the index of the last stock of the range
+         */
+        BuildTask(Stock[] sorted, long[] keys, int lo, int hi) {
+            this.sorted = sorted;
+            this.keys = keys;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        /**
+         * Builds the subtree of the range.
+         *
+         * @return the root of the subtree, or null if the range is empty
+         */
+        @Override
+        protected Node compute() {
+            if (hi - lo < PARALLEL_BUILD_THRESHOLD) {
+                encodeSorted(sorted, keys, lo, hi);
+                return build(sorted, keys, lo, hi);
+            }
+            int mid = (lo + hi) >>> 1;
+            keys[mid] = SymbolKey.encode(sorted[mid].getSymbol());
+            checkOrder(sorted, mid, SymbolKey.encode(sorted[mid - 1].getSymbol()), keys[mid]);
+            BuildTask left = new BuildTask(sorted, keys, lo, mid - 1);
+            left.fork();
+            Node node = new Node(sorted[mid], keys[mid]);
+            node.right = new BuildTask(sorted, keys, mid + 1, hi).compute();
+            node.left = left.join();
+            update(node);
             return node;
         }
-
-        node.height = 1 + Math.max(height(node.left), height(node.right));
-
-        return rebalance(node);
     }
     /**
      * Deletes a stock from the AVL tree by its symbol.
      *
      * @param symbol the symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
      */
-    public void delete(String symbol) {
-        root = delete(root, symbol);
+    @Override
+    public Stock delete(String symbol) {
+        return delete(SymbolKey.encode(symbol), symbol);
+    }
+    /**
+     * Deletes a stock from the AVL tree by its packed symbol key.
+     *
+     * @param key the packed symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    @Override
+    public Stock delete(long key) {
+        return delete(requirePacked(key), null);
     }
-
     /**
-     * Helper method to delete a stock from the AVL tree starting from the given node.
-     * Rebalances the tree if necessary.
+     * Helper method to delete a stock given its packed key and symbol.
+     * The symbol is only used, and may only be null, when the key is not a fallback key.
      *
-     * @param root the current node
+     * @param key the packed symbol of the stock to be deleted
      * @param symbol the symbol of the stock to be deleted
-     * @return the updated node after deletion and rebalancing
+     * @return the removed stock, or null if no stock has the symbol
      */
-    private Node delete(Node root, String symbol) {
-        if (root == null) {
-            return root;
+    private Stock delete(long key, String symbol) {
+        Node node = root;
+        int depth = 0;
+
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp == 0) {
+                return unlink(node, depth);
+            }
+            path[depth] = node;
+            wentLeft[depth++] = cmp < 0;
+            node = (cmp < 0) ? node.left : node.right;
         }
 
-        if (symbol.compareTo(root.stock.getSymbol()) < 0) {
-            root.left = delete(root.left, symbol);
-        } else if (symbol.compareTo(root.stock.getSymbol()) > 0) {
-            root.right = delete(root.right, symbol);
-        } else {
-            if ((root.left == null) || (root.right == null)) {
-                Node temp = (root.left != null) ? root.left : root.right;
+        clearPath(depth);
+        return null;
+    }
+    /**
+     * Computes a new stock for the given symbol in a single descent, in the manner of
+     * {@link java.util.Map#compute}. The remapping function receives the symbol and the
+     * stored stock, or null if there is none. A non-null result is stored under the
+     * symbol, and a null result removes the existing stock.
+     * The function must not modify this tree.
+     *
+     * @param symbol the symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     * @throws IllegalArgumentException if the computed stock has a different symbol
+     */
+    @Override
+    public Stock compute(String symbol, BiFunction<String, Stock, Stock> remappingFunction) {
+        return compute(SymbolKey.encode(symbol), symbol, remappingFunction);
+    }
+    /**
+     * Computes a new stock for the given packed symbol key in a single descent,
+     * like {@link #compute(String, BiFunction)}. The symbol String is only created
+     * when a new stock has to be computed.
+     *
+     * @param key the packed symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     *         or the computed stock has a different symbol
+     */
+    @Override
+    public Stock compute(long key, BiFunction<String, Stock, Stock> remappingFunction) {
+        return compute(requirePacked(key), null, remappingFunction);
+    }
+    /**
+     * Helper method to compute a stock given its packed key and symbol.
+     * The symbol may only be null when the key is not a fallback key.
+     *
+     * @param key the packed symbol of the stock to compute
+     * @param symbol the symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     */
+    private Stock compute(long key, String symbol, BiFunction<String, Stock, Stock> remappingFunction) {
+        Node node = root;
+        int depth = 0;
 
-                if (temp == null) {
-                    temp = root;
-                    root = null;
-                } else {
-                    root = temp;
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp == 0) {
+                Stock updated = remappingFunction.apply(node.stock.getSymbol(), node.stock);
+                if (updated == null) {
+                    unlink(node, depth);
+                    return null;
                 }
-            } else {
-                Node temp = getMinValueNode(root.right);
-                root.stock = temp.stock;
-                root.right = delete(root.right, temp.stock.getSymbol());
+                checkSymbol(node.stock.getSymbol(), updated);
+                node.stock = updated;
+                update(node);
+                retrace(depth);
+                return updated;
             }
+            path[depth] = node;
+            wentLeft[depth++] = cmp < 0;
+            node = (cmp < 0) ? node.left : node.right;
         }
 
-        if (root == null) {
-            return root;
+        if (symbol == null) {
+            symbol = SymbolKey.decode(key);
+        }
+        Stock created = remappingFunction.apply(symbol, null);
+        if (created == null) {
+            clearPath(depth);
+            return null;
+        }
+        checkSymbol(symbol, created);
+        replaceChild(depth, new Node(created, key));
+        retrace(depth);
+        modCount++;
+        return created;
+    }
+    /**
+     * Moves the stock stored under one symbol to another symbol.
+     * The stock is detached from the tree before its symbol is changed and the
+     * updater runs, so the tree never holds a stock under the wrong key.
+     * A stock already stored under the new symbol is replaced.
+     *
+     * @param oldSymbol the current symbol of the stock
+     * @param newSymbol the symbol to move the stock to
+     * @param updater applied to the detached stock after its symbol is changed, or null
+     * @return the moved stock, or null if no stock has the old symbol
+     */
+    public Stock rekey(String oldSymbol, String newSymbol, Consumer<Stock> updater) {
+        Stock stock = delete(oldSymbol);
+        if (stock == null) {
+            return null;
+        }
+        stock.setSymbol(newSymbol);
+        if (updater != null) {
+            updater.accept(stock);
+        }
+        insert(stock);
+        return stock;
+    }
+    /**
+     * Checks that a key can be used without its symbol.
+     *
+     * @param key the packed symbol key
+     * @return the key
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    private static long requirePacked(long key) {
+        if (!SymbolKey.isPacked(key)) {
+            throw new IllegalArgumentException("Fallback keys cannot be used without their symbol");
+        }
+        return key;
+    }
+    /**
+     * Checks that a computed stock belongs under the given symbol.
+     *
+     * @param symbol the symbol the stock is stored under
+     * @param stock the computed stock
+     * @throws IllegalArgumentException if the symbols differ
+     */
+    private void checkSymbol(String symbol, Stock stock) {
+        if (!symbol.equals(stock.getSymbol())) {
+            throw new IllegalArgumentException("Computed stock " + stock.getSymbol() + " cannot be stored under " + symbol);
+        }
+    }
+    /**
+     * Removes the given node, whose ancestors are recorded in the first depth
+     * entries of the path stack, and rebalances the tree.
+     * A node with two children takes over the stock of its in-order successor,
+     * and the successor node is unlinked instead.
+     *
+     * @param target the node to be removed
+     * @param depth the number of ancestors recorded on the path stack
+     * @return the stock that was stored in the removed node
+     */
+    private Stock unlink(Node target, int depth) {
+        Stock removed = target.stock;
+        if (target.left != null && target.right != null) {
+            path[depth] = target;
+            wentLeft[depth++] = false;
+            Node successor = target.right;
+            while (successor.left != null) {
+                path[depth] = successor;
+                wentLeft[depth++] = true;
+                successor = successor.left;
+            }
+            target.stock = successor.stock;
+            target.key = successor.key;
+            target = successor;
         }
 
-        root.height = Math.max(height(root.left), height(root.right)) + 1;
-
-        return rebalance(root);
+        replaceChild(depth, (target.left != null) ? target.left : target.right);
+        retrace(depth);
+        modCount++;
+        return removed;
+    }
+    /**
+     * Walks the recorded path back up to the root, updating heights and subtree
+     * aggregates and rebalancing every node on it. The path stack is cleared as it is consumed.
+     *
+     * @param depth the number of nodes recorded on the path stack
+     */
+    private void retrace(int depth) {
+        for (int i = depth - 1; i >= 0; i--) {
+            Node node = path[i];
+            path[i] = null;
+            update(node);
+            Node balanced = rebalance(node);
+            if (balanced != node) {
+                replaceChild(i, balanced);
+            }
+        }
+    }
+    /**
+     * Links a child below the node recorded at the given depth of the path stack,
+     * on the side the descent took. A depth of 0 replaces the root.
+     *
+     * @param depth the depth of the child slot to replace
+     * @param child the new child, possibly null
+     */
+    private void replaceChild(int depth, Node child) {
+        if (depth == 0) {
+            root = child;
+        } else if (wentLeft[depth - 1]) {
+            path[depth - 1].left = child;
+        } else {
+            path[depth - 1].right = child;
+        }
+    }
+    /**
+     * Clears the first depth entries of the path stack so that it does not keep
+     * removed nodes reachable.
+     *
+     * @param depth the number of entries to clear
+     */
+    private void clearPath(int depth) {
+        for (int i = 0; i < depth; i++) {
+            path[i] = null;
+        }
     }
     /**
      * Rebalances the AVL tree starting from the given node.
@@ -139,46 +522,310 @@ public class AVLTree {
         return node;
     }
     /**
-     * Finds the node with the minimum value in the subtree rooted at the given node.
+     * Searches for a stock by its symbol.
      *
-     * @param node the root of the subtree
-     * @return the node with the minimum value
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found
      */
-    private Node getMinValueNode(Node node) {
-        Node current = node;
-        while (current.left != null) {
-            current = current.left;
-        }
-        return current;
+    @Override
+    public Stock search(String symbol) {
+        return search(SymbolKey.encode(symbol), symbol);
     }
     /**
-     * Searches for a stock by its symbol.
+     * Searches for a stock by its packed symbol key.
      *
+     * @param key the packed symbol of the stock to search for
+     * @return the found stock, or null if not found
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    @Override
+    public Stock search(long key) {
+        return search(requirePacked(key), null);
+    }
+    /**
+     * Helper method to search for a stock given its packed key and symbol.
+     * The symbol may only be null when the key is not a fallback key.
+     *
+     * @param key the packed symbol of the stock to search for
      * @param symbol the symbol of the stock to search for
      * @return the found stock, or null if not found
      */
-    public Stock search(String symbol) {
-        Node result = search(root, symbol);
-        return (result != null) ? result.stock : null;
+    private Stock search(long key, String symbol) {
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp == 0) {
+                return node.stock;
+            }
+            node = (cmp < 0) ? node.left : node.right;
+        }
+        return null;
     }
-
     /**
-     * Helper method to search for a stock starting from the given node.
+     * Searches for a stock while a writer may be modifying the tree at the same time.
+     * The descent gives up after MAX_HEIGHT levels, so a reader that observes a
+     * half-finished rotation cannot loop forever. The result may be wrong, and the
+     * caller must validate it, for example against a StampedLock stamp, before using it.
      *
-     * @param node the current node
      * @param symbol the symbol of the stock to search for
-     * @return the node containing the stock, or null if not found
+     * @return the found stock, or null if not found or the descent gave up
      */
-    private Node search(Node node, String symbol) {
-        if (node == null || node.stock.getSymbol().equals(symbol)) {
-            return node;
+    @Override
+    public Stock searchOptimistic(String symbol) {
+        return searchOptimistic(SymbolKey.encode(symbol), symbol);
+    }
+    /**
+     * Searches for a stock by its packed symbol key while a writer may be modifying
+     * the tree, like {@link #searchOptimistic(String)}.
+     *
+     * @param key the packed symbol of the stock to search for
+     * @return the found stock, or null if not found or the descent gave up
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    @Override
+    public Stock searchOptimistic(long key) {
+        return searchOptimistic(requirePacked(key), null);
+    }
+    /**
+     * Helper method for optimistic searches given a packed key and symbol.
+     * The symbol may only be null when the key is not a fallback key.
+     *
+     * @param key the packed symbol of the stock to search for
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found or the descent gave up
+     */
+    private Stock searchOptimistic(long key, String symbol) {
+        Node node = root;
+        for (int level = 0; node != null && level < MAX_HEIGHT; level++) {
+            int cmp = compare(key, symbol, node);
+            if (cmp == 0) {
+                return node.stock;
+            }
+            node = (cmp < 0) ? node.left : node.right;
         }
-
-        if (node.stock.getSymbol().compareTo(symbol) > 0) {
-            return search(node.left, symbol);
+        return null;
+    }
+    /**
+     * Gets the number of stocks in the tree.
+     *
+     * @return the number of stocks
+     */
+    @Override
+    public int size() {
+        return size(root);
+    }
+    /**
+     * Gets the rank of a symbol, which is the number of stored symbols ordered before it.
+     * The symbol itself does not have to be stored.
+     *
+     * @param symbol the symbol to rank
+     * @return the number of stocks with a smaller symbol
+     */
+    @Override
+    public int rank(String symbol) {
+        return countBelow(SymbolKey.encode(symbol), symbol, false);
+    }
+    /**
+     * Selects the stock with the given rank.
+     *
+     * @param k the zero-based rank of the stock in symbol order
+     * @return the stock with rank k, or null if k is not between 0 and size() - 1
+     */
+    @Override
+    public Stock select(int k) {
+        if (k < 0 || k >= size(root)) {
+            return null;
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.stock;
+            }
+        }
+    }
+    /**
+     * Counts the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the number of stocks in the range
+     */
+    @Override
+    public int countRange(String lo, String hi) {
+        long loKey = SymbolKey.encode(lo);
+        long hiKey = SymbolKey.encode(hi);
+        if (SymbolKey.compare(loKey, lo, hiKey, hi) > 0) {
+            return 0;
+        }
+        return countBelow(hiKey, hi, true) - countBelow(loKey, lo, false);
+    }
+    /**
+     * Sums the market capitalization of the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the total market capitalization of the range
+     */
+    @Override
+    public long sumMarketCap(String lo, String hi) {
+        long loKey = SymbolKey.encode(lo);
+        long hiKey = SymbolKey.encode(hi);
+        if (SymbolKey.compare(loKey, lo, hiKey, hi) > 0) {
+            return 0;
+        }
+        return marketCapBelow(hiKey, hi, true) - marketCapBelow(loKey, lo, false);
+    }
+    /**
+     * Finds the lowest price among the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the lowest price, or NaN if the range is empty
+     */
+    @Override
+    public double minPrice(String lo, String hi) {
+        return priceBound(lo, hi, false);
+    }
+    /**
+     * Finds the highest price among the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the highest price, or NaN if the range is empty
+     */
+    @Override
+    public double maxPrice(String lo, String hi) {
+        return priceBound(lo, hi, true);
+    }
+    /**
+     * Counts the stocks ordered before a symbol.
+     *
+     * @param key the packed key of the symbol
+     * @param symbol the symbol
+     * @param inclusive whether a stock with the symbol itself is counted
+     * @return the number of such stocks
+     */
+    private int countBelow(long key, String symbol, boolean inclusive) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp > 0 || (cmp == 0 && inclusive)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+    /**
+     * Sums the market capitalization of the stocks ordered before a symbol.
+     *
+     * @param key the packed key of the symbol
+     * @param symbol the symbol
+     * @param inclusive whether a stock with the symbol itself is included
+     * @return the market capitalization sum of such stocks
+     */
+    private long marketCapBelow(long key, String symbol, boolean inclusive) {
+        long sum = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp > 0 || (cmp == 0 && inclusive)) {
+                sum += marketCapSum(node.left) + node.stock.getMarketCap();
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return sum;
+    }
+    /**
+     * Finds the lowest or highest price in a symbol range.
+     * The search descends to the first node inside the range, then follows the
+     * paths towards both bounds, taking whole subtrees that lie inside the range
+     * from their cached price range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @param highest true for the highest price, false for the lowest
+     * @return the price bound, or NaN if the range is empty
+     */
+    private double priceBound(String lo, String hi, boolean highest) {
+        long loKey = SymbolKey.encode(lo);
+        long hiKey = SymbolKey.encode(hi);
+        Node split = root;
+        while (split != null) {
+            if (compare(loKey, lo, split) > 0) {
+                split = split.right;
+            } else if (compare(hiKey, hi, split) < 0) {
+                split = split.left;
+            } else {
+                break;
+            }
+        }
+        if (split == null) {
+            return Double.NaN;
         }
 
-        return search(node.right, symbol);
+        double bound = split.stock.getPrice();
+        for (Node node = split.left; node != null; ) {
+            if (compare(loKey, lo, node) <= 0) {
+                bound = pick(bound, node.stock.getPrice(), highest);
+                if (node.right != null) {
+                    bound = pick(bound, highest ? node.right.maxPrice : node.right.minPrice, highest);
+                }
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        for (Node node = split.right; node != null; ) {
+            if (compare(hiKey, hi, node) >= 0) {
+                bound = pick(bound, node.stock.getPrice(), highest);
+                if (node.left != null) {
+                    bound = pick(bound, highest ? node.left.maxPrice : node.left.minPrice, highest);
+                }
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return bound;
+    }
+    /**
+     * Picks the higher or the lower of two prices.
+     *
+     * @param a the first price
+     * @param b the second price
+     * @param highest true to pick the higher price, false for the lower one
+     * @return the picked price
+     */
+    private static double pick(double a, double b, boolean highest) {
+        return highest ? Math.max(a, b) : Math.min(a, b);
+    }
+    /**
+     * Compares a symbol and its packed key with the symbol stored in a node.
+     * The stock of the node is only dereferenced when both keys are fallback keys.
+     *
+     * @param key the packed key of the symbol
+     * @param symbol the symbol
+     * @param node the node to compare with
+     * @return a negative number, zero, or a positive number as the symbol is
+     *         ordered before, equal to, or after the symbol of the node
+     */
+    private static int compare(long key, String symbol, Node node) {
+        if (key != node.key) {
+            return (key < node.key) ? -1 : 1;
+        }
+        return (key == SymbolKey.FALLBACK) ? symbol.compareTo(node.stock.getSymbol()) : 0;
     }
     /**
      * Gets the height of the given node.
@@ -189,6 +836,39 @@ public class AVLTree {
     private int height(Node node) {
         return node == null ? 0 : node.height;
     }
+    /**
+     * Gets the number of nodes in the subtree rooted at the given node.
+     *
+     * @param node the root of the subtree
+     * @return the size of the subtree, or 0 if the node is null
+     */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+    /**
+     * Gets the total market capitalization of the subtree rooted at the given node.
+     *
+     * @param node the root of the subtree
+     * @return the market capitalization sum, or 0 if the node is null
+     */
+    private static long marketCapSum(Node node) {
+        return node == null ? 0 : node.marketCapSum;
+    }
+    /**
+     * Recomputes the height and the subtree aggregates of a node from its stock and its children.
+     *
+     * @param node the node to update
+     */
+    private void update(Node node) {
+        Node left = node.left;
+        Node right = node.right;
+        double price = node.stock.getPrice();
+        node.height = 1 + Math.max(height(left), height(right));
+        node.size = 1 + size(left) + size(right);
+        node.marketCapSum = node.stock.getMarketCap() + marketCapSum(left) + marketCapSum(right);
+        node.minPrice = Math.min(price, Math.min(left == null ? price : left.minPrice, right == null ? price : right.minPrice));
+        node.maxPrice = Math.max(price, Math.max(left == null ? price : left.maxPrice, right == null ? price : right.maxPrice));
+    }
     /**
      * Gets the balance factor of the given node.
      *
@@ -211,8 +891,8 @@ public class AVLTree {
         y.left = x;
         x.right = T2;
 
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
+        update(x);
+        update(y);
 
         return y;
     }
@@ -229,11 +909,346 @@ public class AVLTree {
         x.right = y;
         y.left = T2;
 
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
+        update(y);
+        update(x);
 
         return x;
     }
+    /**
+     * Passes every stock to the given action in symbol order.
+     *
+     * @param action the action to perform on each stock
+     */
+    @Override
+    public void forEach(Consumer<Stock> action) {
+        Node[] stack = new Node[MAX_HEIGHT];
+        int top = 0;
+        Node node = root;
+        while (node != null || top > 0) {
+            while (node != null) {
+                stack[top++] = node;
+                node = node.left;
+            }
+            node = stack[--top];
+            action.accept(node.stock);
+            node = node.right;
+        }
+    }
+    /**
+     * Passes every stock whose symbol lies in a range to the given action in symbol order.
+     * Only the nodes on the path to the lowest symbol and the nodes inside the range are visited.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @param action the action to perform on each stock in the range
+     */
+    @Override
+    public void forEachInRange(String lo, String hi, Consumer<Stock> action) {
+        long loKey = SymbolKey.encode(lo);
+        long hiKey = SymbolKey.encode(hi);
+        Node[] stack = new Node[MAX_HEIGHT];
+        int top = 0;
+        for (Node node = root; node != null; ) {
+            if (compare(loKey, lo, node) <= 0) {
+                stack[top++] = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        while (top > 0) {
+            Node node = stack[--top];
+            if (compare(hiKey, hi, node) < 0) {
+                return;
+            }
+            action.accept(node.stock);
+            for (Node next = node.right; next != null; next = next.left) {
+                stack[top++] = next;
+            }
+        }
+    }
+    /**
+     * Creates a lazy iterator over the stocks in symbol order.
+     * The iterator throws ConcurrentModificationException if a stock is inserted into or
+     * deleted from the tree after it was created, except through the iterator itself,
+     * which does not support removal.
+     *
+     * @return an iterator over every stock
+     */
+    public Iterator<Stock> iterator() {
+        return new Cursor(0, size(root));
+    }
+    /**
+     * Creates a lazy iterator over the stocks whose symbols lie in a range, in symbol order.
+     * Only the nodes on the path to the lowest symbol and the nodes inside the range are visited.
+     *
+     * @param from the lowest symbol of the range, inclusive
+     * @param to the highest symbol of the range, inclusive
+     * @return an iterator over the stocks in the range
+     */
+    public Iterator<Stock> iterator(String from, String to) {
+        return rangeCursor(from, to);
+    }
+    /**
+     * Creates a spliterator over the stocks in symbol order, which splits at subtree
+     * boundaries, so that parallel streams divide the tree between threads without
+     * copying it. Like {@link #iterator()}, it fails on concurrent insertions and deletions.
+     *
+     * @return a spliterator over every stock
+     */
+    @Override
+    public Spliterator<Stock> spliterator() {
+        return new Cursor(0, size(root));
+    }
+    /**
+     * Creates a spliterator over the stocks whose symbols lie in a range, in symbol order.
+     *
+     * @param from the lowest symbol of the range, inclusive
+     * @param to the highest symbol of the range, inclusive
+     * @return a spliterator over the stocks in the range
+     */
+    public Spliterator<Stock> spliterator(String from, String to) {
+        return rangeCursor(from, to);
+    }
+    /**
+     * Creates a sequential stream over the stocks in symbol order.
+     *
+     * @return a stream of every stock
+     */
+    public Stream<Stock> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    /**
+     * Creates a parallel stream over the stocks, for aggregations such as the total
+     * market capitalization or filters that should run on several cores.
+     *
+     * @return a parallel stream of every stock
+     */
+    public Stream<Stock> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    /**
+     * Creates a sequential stream over the stocks whose symbols lie in a range, in symbol order.
+     *
+     * @param from the lowest symbol of the range, inclusive
+     * @param to the highest symbol of the range, inclusive
+     * @return a stream of the stocks in the range
+     */
+    public Stream<Stock> stream(String from, String to) {
+        return StreamSupport.stream(spliterator(from, to), false);
+    }
+    /**
+     * Creates a cursor over the ranks of the stocks whose symbols lie in a range.
+     *
+     * @param from the lowest symbol of the range, inclusive
+     * @param to the highest symbol of the range, inclusive
+     * @return the cursor, which is empty if from is ordered after to
+     */
+    private Cursor rangeCursor(String from, String to) {
+        long fromKey = SymbolKey.encode(from);
+        long toKey = SymbolKey.encode(to);
+        int first = countBelow(fromKey, from, false);
+        if (SymbolKey.compare(fromKey, from, toKey, to) > 0) {
+            return new Cursor(first, first);
+        }
+        return new Cursor(first, countBelow(toKey, to, true));
+    }
+    /**
+     * Cursor class walks the stocks with ranks in a half-open range in symbol order, either
+     * as an iterator or as a spliterator. It descends to its first rank only when the first
+     * stock is requested, and then keeps the stack of an in-order traversal. It splits at the
+     * root of the smallest subtree that covers its range, so a cursor over the whole tree
+     * hands the left subtree of the root to the new cursor and keeps the root and its right
+     * subtree. Subtree sizes make every split and every estimate exact.
+     */
+    private class Cursor implements Iterator<Stock>, Spliterator<Stock> {
+        private int index; // Rank of the next stock
+        private final int fence; // Rank after the last stock
+        private Node[] stack; // Pending nodes of the traversal, or null before the descent
+        private int top;
+        private final int expectedModCount = modCount;
+        /**
+         * Constructs a new Cursor.
+         *
+         * @param index the rank of the first stock
+         * @param fence the rank after the last stock
+         */
+        Cursor(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+        /**
+         * Checks whether there are stocks left.
+         *
+         * @return true if the cursor has not reached the end of its range
+         */
+        @Override
+        public boolean hasNext() {
+            return index < fence;
+        }
+        /**
+         * Gets the next stock.
+         *
+         * @return the next stock in symbol order
+         * @throws NoSuchElementException if there are no stocks left
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        @Override
+        public Stock next() {
+            if (index >= fence) {
+                throw new NoSuchElementException();
+            }
+            return advance();
+        }
+        /**
+         * Passes the next stock to the given action, if there is one.
+         *
+         * @param action the action to perform on the stock
+         * @return false if there were no stocks left
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super Stock> action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(advance());
+            return true;
+        }
+        /**
+         * Passes every remaining stock to the given action.
+         *
+         * @param action the action to perform on each stock
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super Stock> action) {
+            while (index < fence) {
+                action.accept(advance());
+            }
+        }
+        /**
+         * Splits off the stocks before the root of the smallest subtree that covers the range,
+         * or before the middle rank if that root is the first stock of the range.
+         *
+         * @return a cursor over the first part of the range, or null if the range is too small
+         */
+        @Override
+        public Spliterator<Stock> trySplit() {
+            if (fence - index < 2) {
+                return null;
+            }
+            checkModCount();
+            int split = coveringRoot();
+            if (split <= index) {
+                split = (index + fence) >>> 1;
+            }
+            Cursor prefix = new Cursor(index, split);
+            prefix.stack = stack; // The traversal state is positioned at the start of the prefix
+            prefix.top = top;
+            stack = null;
+            top = 0;
+            index = split;
+            return prefix;
+        }
+        /**
+         * Gets the number of stocks left.
+         *
+         * @return the exact number of remaining stocks
+         */
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+        /**
+         * Gets the characteristics of the cursor.
+         *
+         * @return ORDERED, SORTED, DISTINCT, NONNULL, SIZED, and SUBSIZED
+         */
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+        /**
+         * Gets the order of the stocks, which is the order of their symbols' keys.
+         *
+         * @return the symbol order of stocks
+         */
+        @Override
+        public Comparator<? super Stock> getComparator() {
+            return SYMBOL_ORDER;
+        }
+        /**
+         * Returns the next stock and moves the traversal past it.
+         *
+         * @return the stock with rank index
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        private Stock advance() {
+            checkModCount();
+            if (stack == null) {
+                descend();
+            }
+            Node node = stack[--top];
+            for (Node next = node.right; next != null; next = next.left) {
+                stack[top++] = next;
+            }
+            index++;
+            return node.stock;
+        }
+        /**
+         * Fills the stack with the nodes on the path to the stock with rank index
+         * that come after it, so popping the stack continues the traversal from there.
+         */
+        private void descend() {
+            stack = new Node[MAX_HEIGHT];
+            int k = index;
+            Node node = root;
+            while (node != null) {
+                int leftSize = size(node.left);
+                if (k < leftSize) {
+                    stack[top++] = node;
+                    node = node.left;
+                } else if (k > leftSize) {
+                    k -= leftSize + 1;
+                    node = node.right;
+                } else {
+                    stack[top++] = node;
+                    return;
+                }
+            }
+        }
+        /**
+         * Finds the rank of the root of the smallest subtree holding the remaining range.
+         *
+         * @return the rank of the lowest common ancestor of the first and last stocks left
+         */
+        private int coveringRoot() {
+            int offset = 0;
+            Node node = root;
+            while (true) {
+                int rank = offset + size(node.left);
+                if (fence - 1 < rank) {
+                    node = node.left;
+                } else if (index > rank) {
+                    offset = rank + 1;
+                    node = node.right;
+                } else {
+                    return rank;
+                }
+            }
+        }
+        /**
+         * Checks that no stock was inserted into or deleted from the tree since the cursor was created.
+         *
+         * @throws ConcurrentModificationException if the tree was changed
+         */
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
     /**
      * Performs an in-order traversal of the AVL tree.
      * Prints the stock information for each node.
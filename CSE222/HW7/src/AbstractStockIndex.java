@@ -0,0 +1,256 @@
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+/**
+ * AbstractStockIndex class is the base of the StockIndex implementations that are keyed
+ * only by packed symbols. Subclasses store stocks under their packed {@link SymbolKey}
+ * as plain longs; the rare symbols that cannot be packed are kept here in a separate
+ * skip list ordered by String, which also keeps them after every packed symbol.
+ *
+ * This class turns the String and long overloads of StockIndex into calls of the
+ * packed-key methods, and checks that computed stocks belong under their symbol.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public abstract class AbstractStockIndex implements StockIndex {
+    private static final long LOWEST_KEY = Long.MIN_VALUE;
+    private static final long HIGHEST_KEY = SymbolKey.FALLBACK - 1;
+
+    private final ConcurrentSkipListMap<String, Stock> fallback = new ConcurrentSkipListMap<>();
+    private int fallbackSize; // Counted here, because the skip list counts its entries on every call
+    /**
+     * Searches for a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found
+     */
+    protected abstract Stock searchPacked(long key);
+    /**
+     * Searches for a stock by its packed key while a writer may be modifying the index.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found or the search gave up
+     */
+    protected abstract Stock searchPackedOptimistic(long key);
+    /**
+     * Computes a new stock for a packed key, like {@link StockIndex#compute(long, BiFunction)}.
+     *
+     * @param key a packed symbol
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the key, or null if there is none
+     */
+    protected abstract Stock computePacked(long key, BiFunction<String, Stock, Stock> remappingFunction);
+    /**
+     * Deletes a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the removed stock, or null if no stock has the key
+     */
+    protected abstract Stock deletePacked(long key);
+    /**
+     * Gets the number of stocks stored under packed keys.
+     *
+     * @return the number of stocks
+     */
+    protected abstract int packedSize();
+    /**
+     * Passes every stock whose packed key lies in a range to the given action,
+     * in key order if the index is ordered.
+     *
+     * @param lo the lowest key of the range, inclusive
+     * @param hi the highest key of the range, inclusive
+     * @param action the action to perform on each stock
+     */
+    protected abstract void forEachPacked(long lo, long hi, Consumer<Stock> action);
+    /**
+     * Inserts a stock, replacing any stock stored under its symbol.
+     *
+     * @param stock the stock to be inserted
+     */
+    @Override
+    public void insert(Stock stock) {
+        compute(stock.getSymbol(), (symbol, existing) -> stock);
+    }
+    /**
+     * Deletes a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
+     */
+    @Override
+    public Stock delete(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        if (SymbolKey.isPacked(key)) {
+            return deletePacked(key);
+        }
+        Stock removed = fallback.remove(symbol);
+        if (removed != null) {
+            fallbackSize--;
+        }
+        return removed;
+    }
+    /**
+     * Deletes a stock by its packed symbol key.
+     *
+     * @param key the packed symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    @Override
+    public Stock delete(long key) {
+        return deletePacked(requirePacked(key));
+    }
+    /**
+     * Computes a new stock for the given symbol.
+     *
+     * @param symbol the symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     * @throws IllegalArgumentException if the computed stock has a different symbol
+     */
+    @Override
+    public Stock compute(String symbol, BiFunction<String, Stock, Stock> remappingFunction) {
+        long key = SymbolKey.encode(symbol);
+        if (SymbolKey.isPacked(key)) {
+            return computePacked(key, checked(remappingFunction));
+        }
+        BiFunction<String, Stock, Stock> checkedFunction = checked(remappingFunction);
+        boolean[] existed = new boolean[1];
+        Stock computed = fallback.compute(symbol, (fallbackSymbol, stock) -> {
+            existed[0] = stock != null;
+            return checkedFunction.apply(fallbackSymbol, stock);
+        });
+        if (existed[0] != (computed != null)) {
+            fallbackSize += existed[0] ? -1 : 1;
+        }
+        return computed;
+    }
+    /**
+     * Computes a new stock for the given packed symbol key.
+     *
+     * @param key the packed symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     *         or the computed stock has a different symbol
+     */
+    @Override
+    public Stock compute(long key, BiFunction<String, Stock, Stock> remappingFunction) {
+        return computePacked(requirePacked(key), checked(remappingFunction));
+    }
+    /**
+     * Searches for a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found
+     */
+    @Override
+    public Stock search(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        return SymbolKey.isPacked(key) ? searchPacked(key) : fallback.get(symbol);
+    }
+    /**
+     * Searches for a stock by its packed symbol key.
+     *
+     * @param key the packed symbol of the stock to search for
+     * @return the found stock, or null if not found
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    @Override
+    public Stock search(long key) {
+        return searchPacked(requirePacked(key));
+    }
+    /**
+     * Searches for a stock by its symbol while a writer may be modifying the index.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found or the search gave up
+     */
+    @Override
+    public Stock searchOptimistic(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        return SymbolKey.isPacked(key) ? searchPackedOptimistic(key) : fallback.get(symbol);
+    }
+    /**
+     * Searches for a stock by its packed symbol key while a writer may be modifying the index.
+     *
+     * @param key the packed symbol of the stock to search for
+     * @return the found stock, or null if not found or the search gave up
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    @Override
+    public Stock searchOptimistic(long key) {
+        return searchPackedOptimistic(requirePacked(key));
+    }
+    /**
+     * Gets the number of stocks in the index.
+     *
+     * @return the number of stocks
+     */
+    @Override
+    public int size() {
+        return packedSize() + fallbackSize;
+    }
+    /**
+     * Passes every stock to the given action: the packed symbols first, then the others.
+     *
+     * @param action the action to perform on each stock
+     */
+    @Override
+    public void forEach(Consumer<Stock> action) {
+        forEachPacked(LOWEST_KEY, HIGHEST_KEY, action);
+        fallback.values().forEach(action);
+    }
+    /**
+     * Passes every stock whose symbol lies in a range to the given action, visiting only
+     * the packed keys of the range and, if the range reaches them, the symbols that cannot be packed.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @param action the action to perform on each stock in the range
+     */
+    @Override
+    public void forEachInRange(String lo, String hi, Consumer<Stock> action) {
+        long loKey = SymbolKey.encode(lo);
+        long hiKey = SymbolKey.encode(hi);
+        if (SymbolKey.compare(loKey, lo, hiKey, hi) > 0) {
+            return;
+        }
+        if (SymbolKey.isPacked(loKey)) {
+            forEachPacked(loKey, SymbolKey.isPacked(hiKey) ? hiKey : HIGHEST_KEY, action);
+        }
+        if (!SymbolKey.isPacked(hiKey)) {
+            (SymbolKey.isPacked(loKey) ? fallback.headMap(hi, true) : fallback.subMap(lo, true, hi, true))
+                    .values().forEach(action);
+        }
+    }
+    /**
+     * Wraps a remapping function so that it rejects stocks computed for another symbol.
+     *
+     * @param remappingFunction the function computing the new stock
+     * @return the checked function
+     */
+    private static BiFunction<String, Stock, Stock> checked(BiFunction<String, Stock, Stock> remappingFunction) {
+        return (symbol, stock) -> {
+            Stock computed = remappingFunction.apply(symbol, stock);
+            if (computed != null && !symbol.equals(computed.getSymbol())) {
+                throw new IllegalArgumentException("Computed stock " + computed.getSymbol() + " cannot be stored under " + symbol);
+            }
+            return computed;
+        };
+    }
+    /**
+     * Checks that a key can be used without its symbol.
+     *
+     * @param key the packed symbol key
+     * @return the key
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    private static long requirePacked(long key) {
+        if (!SymbolKey.isPacked(key)) {
+            throw new IllegalArgumentException("Fallback keys cannot be used without their symbol");
+        }
+        return key;
+    }
+}
@@ -0,0 +1,423 @@
+import java.util.Arrays;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+/**
+ * BPlusTreeIndex class stores stocks in a B+tree keyed by packed symbols.
+ * Every node holds up to 64 keys in a primitive long array, so a search reads a few
+ * contiguous arrays instead of following one pointer per comparison as in a binary tree.
+ * Stocks live only in the leaves, which are linked in key order, so ordered iteration and
+ * range scans walk the leaves sequentially after a single descent.
+ *
+ * Nodes are split when they overflow. Deleting does not rebalance: a node is only removed
+ * when it becomes empty, and an inner node left with a single child is replaced by that
+ * child. Every inner node therefore keeps at least two children, which bounds the height.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class BPlusTreeIndex extends AbstractStockIndex {
+    private static final int ORDER = 64; // Maximum number of keys per node
+    private static final int MAX_HEIGHT = 48; // Inner nodes have at least two children, so far fewer levels are reachable
+
+    /**
+     * Node class is the common part of leaves and inner nodes.
+     */
+    private abstract static class Node {
+        final long[] keys = new long[ORDER];
+        int count; // Number of keys in use
+    }
+    /**
+     * Leaf class holds the stocks of a sorted run of keys.
+     */
+    private static final class Leaf extends Node {
+        final Stock[] stocks = new Stock[ORDER];
+        Leaf previous, next; // Neighboring leaves in key order
+    }
+    /**
+     * Inner class routes searches: child i holds the keys below keys[i],
+     * and child i + 1 the keys from keys[i] on.
+     */
+    private static final class Inner extends Node {
+        final Node[] children = new Node[ORDER + 1];
+    }
+
+    private Node root = new Leaf();
+    private int size;
+    private final Inner[] path = new Inner[MAX_HEIGHT]; // Inner nodes visited on the way down
+    private final int[] childIndexes = new int[MAX_HEIGHT]; // Child taken from each visited node
+    /**
+     * Searches for a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found
+     */
+    @Override
+    protected Stock searchPacked(long key) {
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[childIndex(node.keys, node.count, key)];
+        }
+        int position = indexOf(node.keys, node.count, key);
+        return (position >= 0) ? ((Leaf) node).stocks[position] : null;
+    }
+    /**
+     * Searches for a stock by its packed key while a writer may be modifying the tree.
+     * Counts are clamped to the array lengths, the descent gives up after MAX_HEIGHT levels
+     * or at a missing child, so a torn read can give a wrong answer but never an exception.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found or the search gave up
+     */
+    @Override
+    protected Stock searchPackedOptimistic(long key) {
+        Node node = root;
+        for (int level = 0; node instanceof Inner; level++) {
+            if (level == MAX_HEIGHT) {
+                return null;
+            }
+            int count = Math.min(Math.max(node.count, 0), ORDER);
+            node = ((Inner) node).children[childIndex(node.keys, count, key)];
+        }
+        if (node == null) {
+            return null;
+        }
+        int position = indexOf(node.keys, Math.min(Math.max(node.count, 0), ORDER), key);
+        return (position >= 0) ? ((Leaf) node).stocks[position] : null;
+    }
+    /**
+     * Computes a new stock for a packed key in a single descent.
+     *
+     * @param key a packed symbol
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the key, or null if there is none
+     */
+    @Override
+    protected Stock computePacked(long key, BiFunction<String, Stock, Stock> remappingFunction) {
+        int depth = 0;
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = childIndex(inner.keys, inner.count, key);
+            path[depth] = inner;
+            childIndexes[depth++] = child;
+            node = inner.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int position = indexOf(leaf.keys, leaf.count, key);
+
+        if (position >= 0) {
+            Stock updated = remappingFunction.apply(leaf.stocks[position].getSymbol(), leaf.stocks[position]);
+            if (updated == null) {
+                removeAt(leaf, position, depth);
+            } else {
+                leaf.stocks[position] = updated;
+                clearPath(depth);
+            }
+            return updated;
+        }
+
+        Stock created = remappingFunction.apply(SymbolKey.decode(key), null);
+        if (created == null) {
+            clearPath(depth);
+            return null;
+        }
+        insertAt(leaf, -position - 1, key, created, depth);
+        size++;
+        return created;
+    }
+    /**
+     * Deletes a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the removed stock, or null if no stock has the key
+     */
+    @Override
+    protected Stock deletePacked(long key) {
+        int depth = 0;
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = childIndex(inner.keys, inner.count, key);
+            path[depth] = inner;
+            childIndexes[depth++] = child;
+            node = inner.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int position = indexOf(leaf.keys, leaf.count, key);
+        if (position < 0) {
+            clearPath(depth);
+            return null;
+        }
+        Stock removed = leaf.stocks[position];
+        removeAt(leaf, position, depth);
+        return removed;
+    }
+    /**
+     * Gets the number of stocks stored under packed keys.
+     *
+     * @return the number of stocks
+     */
+    @Override
+    protected int packedSize() {
+        return size;
+    }
+    /**
+     * Passes every stock whose key lies in a range to the given action in key order,
+     * walking the linked leaves from the leaf that holds the lowest key.
+     *
+     * @param lo the lowest key of the range, inclusive
+     * @param hi the highest key of the range, inclusive
+     * @param action the action to perform on each stock
+     */
+    @Override
+    protected void forEachPacked(long lo, long hi, Consumer<Stock> action) {
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[childIndex(node.keys, node.count, lo)];
+        }
+        Leaf leaf = (Leaf) node;
+        int position = indexOf(leaf.keys, leaf.count, lo);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        for (; leaf != null; leaf = leaf.next, position = 0) {
+            for (; position < leaf.count; position++) {
+                if (leaf.keys[position] > hi) {
+                    return;
+                }
+                action.accept(leaf.stocks[position]);
+            }
+        }
+    }
+    /**
+     * Inserts a key into a leaf, splitting the leaf and its ancestors as needed.
+     *
+     * @param leaf the leaf
+     * @param position the position of the key in the leaf
+     * @param key the key
+     * @param stock the stock
+     * @param depth the number of inner nodes recorded on the path
+     */
+    private void insertAt(Leaf leaf, int position, long key, Stock stock, int depth) {
+        if (leaf.count < ORDER) {
+            System.arraycopy(leaf.keys, position, leaf.keys, position + 1, leaf.count - position);
+            System.arraycopy(leaf.stocks, position, leaf.stocks, position + 1, leaf.count - position);
+            leaf.keys[position] = key;
+            leaf.stocks[position] = stock;
+            leaf.count++;
+            clearPath(depth);
+            return;
+        }
+
+        Leaf right = new Leaf();
+        int half = (ORDER + 1) / 2; // Entries kept on the left, counting the new one
+        if (position < half) {
+            moveEntries(leaf, half - 1, right, 0, ORDER - half + 1);
+            leaf.count = half - 1;
+            System.arraycopy(leaf.keys, position, leaf.keys, position + 1, leaf.count - position);
+            System.arraycopy(leaf.stocks, position, leaf.stocks, position + 1, leaf.count - position);
+            leaf.keys[position] = key;
+            leaf.stocks[position] = stock;
+            leaf.count++;
+        } else {
+            moveEntries(leaf, half, right, 0, ORDER - half);
+            leaf.count = half;
+            int rightPosition = position - half;
+            System.arraycopy(right.keys, rightPosition, right.keys, rightPosition + 1, right.count - rightPosition);
+            System.arraycopy(right.stocks, rightPosition, right.stocks, rightPosition + 1, right.count - rightPosition);
+            right.keys[rightPosition] = key;
+            right.stocks[rightPosition] = stock;
+            right.count++;
+        }
+        right.next = leaf.next;
+        right.previous = leaf;
+        if (leaf.next != null) {
+            leaf.next.previous = right;
+        }
+        leaf.next = right;
+        insertIntoParent(depth, right.keys[0], right);
+    }
+    /**
+     * Moves the entries of a leaf into an empty leaf and clears them in the source.
+     *
+     * @param source the leaf to move from
+     * @param from the first position to move
+     * @param target the empty leaf to move to
+     * @param to the first position in the target
+     * @param length the number of entries to move
+     */
+    private static void moveEntries(Leaf source, int from, Leaf target, int to, int length) {
+        System.arraycopy(source.keys, from, target.keys, to, length);
+        System.arraycopy(source.stocks, from, target.stocks, to, length);
+        for (int i = from; i < from + length; i++) {
+            source.stocks[i] = null;
+        }
+        target.count = to + length;
+    }
+    /**
+     * Adds a separator and the new right sibling of a split node to the parent recorded
+     * at the given depth, splitting the parent in turn if it is full. A depth of 0 grows a new root.
+     *
+     * @param depth the number of inner nodes on the path above the split node
+     * @param separator the lowest key of the right sibling
+     * @param right the right sibling
+     */
+    private void insertIntoParent(int depth, long separator, Node right) {
+        if (depth == 0) {
+            Inner newRoot = new Inner();
+            newRoot.keys[0] = separator;
+            newRoot.children[0] = root;
+            newRoot.children[1] = right;
+            newRoot.count = 1;
+            root = newRoot;
+            return;
+        }
+        Inner parent = path[depth - 1];
+        path[depth - 1] = null;
+        int position = childIndexes[depth - 1]; // The split child; the separator goes right after it
+
+        if (parent.count < ORDER) {
+            insertSeparator(parent, position, separator, right);
+            clearPath(depth - 1);
+            return;
+        }
+
+        // Split a full inner node: the middle of the ORDER + 1 keys moves up.
+        long[] keys = new long[ORDER + 1];
+        Node[] children = new Node[ORDER + 2];
+        System.arraycopy(parent.keys, 0, keys, 0, position);
+        keys[position] = separator;
+        System.arraycopy(parent.keys, position, keys, position + 1, ORDER - position);
+        System.arraycopy(parent.children, 0, children, 0, position + 1);
+        children[position + 1] = right;
+        System.arraycopy(parent.children, position + 1, children, position + 2, ORDER - position);
+
+        int middle = (ORDER + 1) / 2;
+        Inner sibling = new Inner();
+        System.arraycopy(keys, 0, parent.keys, 0, middle);
+        System.arraycopy(children, 0, parent.children, 0, middle + 1);
+        Arrays.fill(parent.children, middle + 1, ORDER + 1, null);
+        parent.count = middle;
+        System.arraycopy(keys, middle + 1, sibling.keys, 0, ORDER - middle);
+        System.arraycopy(children, middle + 1, sibling.children, 0, ORDER - middle + 1);
+        sibling.count = ORDER - middle;
+        insertIntoParent(depth - 1, keys[middle], sibling);
+    }
+    /**
+     * Inserts a separator and a child into an inner node that has room for them.
+     *
+     * @param parent the inner node
+     * @param position the index of the child that was split
+     * @param separator the separator key
+     * @param right the new child, placed right of the split child
+     */
+    private static void insertSeparator(Inner parent, int position, long separator, Node right) {
+        System.arraycopy(parent.keys, position, parent.keys, position + 1, parent.count - position);
+        System.arraycopy(parent.children, position + 1, parent.children, position + 2, parent.count - position);
+        parent.keys[position] = separator;
+        parent.children[position + 1] = right;
+        parent.count++;
+    }
+    /**
+     * Removes an entry from a leaf, and the leaf itself if it becomes empty.
+     *
+     * @param leaf the leaf
+     * @param position the position of the entry
+     * @param depth the number of inner nodes recorded on the path
+     */
+    private void removeAt(Leaf leaf, int position, int depth) {
+        System.arraycopy(leaf.keys, position + 1, leaf.keys, position, leaf.count - position - 1);
+        System.arraycopy(leaf.stocks, position + 1, leaf.stocks, position, leaf.count - position - 1);
+        leaf.stocks[--leaf.count] = null;
+        size--;
+        if (leaf.count == 0 && depth > 0) {
+            if (leaf.previous != null) {
+                leaf.previous.next = leaf.next;
+            }
+            if (leaf.next != null) {
+                leaf.next.previous = leaf.previous;
+            }
+            removeChild(depth);
+        }
+        clearPath(depth);
+    }
+    /**
+     * Removes the child taken from the inner node recorded at depth - 1. An inner node that
+     * is left with a single child is replaced by that child in its own parent.
+     *
+     * @param depth the number of inner nodes on the path above the removed child
+     */
+    private void removeChild(int depth) {
+        Inner parent = path[depth - 1];
+        int child = childIndexes[depth - 1];
+        int keyPosition = (child > 0) ? child - 1 : 0; // Merge the range of the removed child into a neighbor
+        System.arraycopy(parent.keys, keyPosition + 1, parent.keys, keyPosition, parent.count - keyPosition - 1);
+        System.arraycopy(parent.children, child + 1, parent.children, child, parent.count - child);
+        parent.children[parent.count--] = null;
+        if (parent.count > 0) {
+            return;
+        }
+
+        Node only = parent.children[0];
+        parent.children[0] = null;
+        if (depth == 1) {
+            root = only;
+        } else {
+            path[depth - 2].children[childIndexes[depth - 2]] = only;
+        }
+    }
+    /**
+     * Clears the first depth entries of the path so that it does not keep removed nodes reachable.
+     *
+     * @param depth the number of entries to clear
+     */
+    private void clearPath(int depth) {
+        for (int i = 0; i < depth; i++) {
+            path[i] = null;
+        }
+    }
+    /**
+     * Finds the child of an inner node that covers a key.
+     *
+     * @param keys the separator keys
+     * @param count the number of separator keys
+     * @param key the key
+     * @return the index of the child, which is the number of separators not above the key
+     */
+    private static int childIndex(long[] keys, int count, long key) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    /**
+     * Finds a key in the sorted keys of a leaf.
+     *
+     * @param keys the keys
+     * @param count the number of keys
+     * @param key the key to find
+     * @return the position of the key, or (-(insertion point) - 1) if it is not there
+     */
+    private static int indexOf(long[] keys, int count, long key) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else if (keys[mid] > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+/**
+ * BinaryCommandLog class reads stock management commands from a memory-mapped binary log,
+ * and converts text command files into that format, so a log that is replayed many times
+ * is parsed only once. The file is a 16-byte header followed by fixed-width records:
+ * <pre>
+ * header: int magic, int version, long record count
+ * record: long opcode and symbol, long new symbol, long price * 10^4, long volume, long marketCap
+ * </pre>
+ * The opcode is the command type plus one and occupies the top 4 bits of the first field,
+ * above the 60 bits of the packed {@link SymbolKey}. The new symbol is only meaningful for
+ * UPDATE. Prices are stored as integers scaled by {@link #PRICE_SCALE}, so a price with at
+ * most 4 decimal places is replayed as exactly the double it was parsed as; other prices are
+ * rounded to 4 decimal places.
+ *
+ * Only packed symbols can be stored, so lines with symbols of more than 12 letters or with
+ * other characters are skipped during conversion and reported. Because every record has the
+ * same size, a record is decoded with five loads and no parsing, and files larger than one
+ * mapping are read through a sliding window of whole records.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class BinaryCommandLog implements AutoCloseable {
+    public static final int MAGIC = 0x53544B42; // "STKB"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 40;
+    public static final long PRICE_SCALE = 10000;
+    private static final int OPCODE_SHIFT = 60;
+    private static final long KEY_MASK = (1L << OPCODE_SHIFT) - 1;
+    private static final double MAX_PRICE = (double) Long.MAX_VALUE / PRICE_SCALE;
+    private static final int WINDOW_RECORDS = (1 << 30) / RECORD_SIZE;
+    private static final int BUFFER_RECORDS = 1 << 12; // Records written per call during conversion
+    private static final StockCommand.Type[] TYPES = StockCommand.Type.values();
+
+    private final FileChannel channel;
+    private final long recordCount;
+    private MappedByteBuffer window;
+    private long windowFirst; // Index of the first record in the window
+    private long nextRecord; // Index of the next record to read
+    /**
+     * Opens a binary command log for reading.
+     *
+     * @param path the binary log
+     * @throws IOException if the file cannot be opened or mapped, or is not a binary command log
+     */
+    public BinaryCommandLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a binary command log: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary command log version " + version + ": " + path);
+            }
+            this.recordCount = header.getLong();
+            if (recordCount < 0 || HEADER_SIZE + recordCount * RECORD_SIZE > channel.size()) {
+                throw new IOException("Binary command log is truncated: " + path);
+            }
+            map(0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    /**
+     * Gets the number of commands in the log.
+     *
+     * @return the number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+    /**
+     * Decodes the next command into the given command object.
+     *
+     * @param command the command object to fill
+     * @return true if a command was decoded, false at the end of the log
+     * @throws IOException if the next window cannot be mapped or a record has an invalid opcode
+     */
+    public boolean next(StockCommand command) throws IOException {
+        if (nextRecord >= recordCount) {
+            return false;
+        }
+        if (nextRecord - windowFirst >= WINDOW_RECORDS) {
+            map(nextRecord);
+        }
+        int offset = (int) (nextRecord - windowFirst) * RECORD_SIZE;
+        long first = window.getLong(offset);
+        int opcode = (int) (first >>> OPCODE_SHIFT);
+        if (opcode < 1 || opcode > TYPES.length) {
+            throw new IOException("Invalid opcode " + opcode + " in record " + nextRecord);
+        }
+        command.set(TYPES[opcode - 1], first & KEY_MASK, null, window.getLong(offset + 8), null,
+                window.getLong(offset + 16) / (double) PRICE_SCALE, window.getLong(offset + 24), window.getLong(offset + 32));
+        nextRecord++;
+        return true;
+    }
+    /**
+     * Moves back to the first command, so the log can be replayed again.
+     *
+     * @throws IOException if the first window cannot be mapped
+     */
+    public void rewind() throws IOException {
+        if (windowFirst != 0) {
+            map(0);
+        }
+        nextRecord = 0;
+    }
+    /**
+     * Closes the file channel. The current window stays valid until it is garbage collected.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    /**
+     * Converts a text command file into a binary command log.
+     * Invalid lines are reported like {@link CommandFileParser} reports them, and lines with
+     * symbols that cannot be packed or prices out of range are reported and skipped as well.
+     *
+     * @param textFile the text command file
+     * @param binaryFile the binary log; it is replaced if it exists
+     * @return the number of commands written
+     * @throws IOException if a file cannot be read or written
+     */
+    public static long convert(Path textFile, Path binaryFile) throws IOException {
+        StockCommand command = new StockCommand();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE);
+        long count = 0;
+        try (CommandFileParser parser = new CommandFileParser(textFile);
+             FileChannel out = FileChannel.open(binaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(HEADER_SIZE);
+            while (parser.next(command)) {
+                if (!encodable(command)) {
+                    continue;
+                }
+                buffer.putLong(((long) (command.getType().ordinal() + 1) << OPCODE_SHIFT) | command.getSymbolKey());
+                buffer.putLong(command.getNewSymbolKey());
+                buffer.putLong(Math.round(command.getPrice() * PRICE_SCALE));
+                buffer.putLong(command.getVolume());
+                buffer.putLong(command.getMarketCap());
+                count++;
+                if (!buffer.hasRemaining()) {
+                    write(out, buffer);
+                }
+            }
+            write(out, buffer);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(count);
+            out.position(0);
+            write(out, buffer);
+            out.force(false);
+        }
+        return count;
+    }
+    /**
+     * Checks whether a parsed command fits into a record, and reports it if it does not.
+     *
+     * @param command the parsed command
+     * @return true if the symbols are packed and the price is in range
+     */
+    private static boolean encodable(StockCommand command) {
+        if (!SymbolKey.isPacked(command.getSymbolKey())) {
+            System.out.println("Symbol cannot be packed: " + command.getSymbol());
+            return false;
+        }
+        if (command.getType() == StockCommand.Type.UPDATE && !SymbolKey.isPacked(command.getNewSymbolKey())) {
+            System.out.println("Symbol cannot be packed: " + command.getNewSymbol());
+            return false;
+        }
+        if (!(Math.abs(command.getPrice()) < MAX_PRICE)) {
+            System.out.println("Price out of range: " + command.getPrice());
+            return false;
+        }
+        return true;
+    }
+    /**
+     * Writes the filled part of a buffer to a channel and clears the buffer.
+     *
+     * @param out the channel
+     * @param buffer the buffer
+     * @throws IOException if the buffer cannot be written
+     */
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+    /**
+     * Maps the window of records starting at the given record.
+     *
+     * @param firstRecord the index of the first record of the window
+     * @throws IOException if the window cannot be mapped
+     */
+    private void map(long firstRecord) throws IOException {
+        long records = Math.min(WINDOW_RECORDS, recordCount - firstRecord);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + firstRecord * RECORD_SIZE, records * RECORD_SIZE);
+        windowFirst = firstRecord;
+    }
+}
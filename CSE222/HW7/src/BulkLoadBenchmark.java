@@ -0,0 +1,87 @@
+import java.util.function.Supplier;
+/**
+ * BulkLoadBenchmark class for comparing ways of building an AVLTree from sorted stocks.
+ * For each size it times n calls to insert, the sequential linear-time build of
+ * AVLTree.fromSorted, and the fork/join build of AVLTree.fromSortedParallel.
+ * Large sizes need a larger heap, for example {@code java -Xmx4g BulkLoadBenchmark 10000000}.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class BulkLoadBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+    private static final int MEASURED_ROUNDS = 3;
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional tree sizes (default 100,000 and 1,000,000)
+     */
+    public static void main(String[] args) {
+        int[] sizes = {100000, 1000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("Fork/join parallelism: " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+    /**
+     * Creates sorted stocks of the given count and times the three ways of building a tree.
+     *
+     * @param size the number of stocks
+     */
+    private static void run(int size) {
+        Stock[] sorted = new Stock[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = new Stock(symbolOf(i), 10 + i % 990, 100000 + i, 1000000 + i);
+        }
+
+        System.out.println("Stocks: " + size);
+        report("insert one by one", () -> {
+            AVLTree tree = new AVLTree();
+            for (Stock stock : sorted) {
+                tree.insert(stock);
+            }
+            return tree;
+        });
+        report("fromSorted", () -> AVLTree.fromSorted(sorted));
+        report("fromSortedParallel", () -> AVLTree.fromSortedParallel(sorted));
+    }
+    /**
+     * Times a way of building a tree and prints its average build time.
+     *
+     * @param name the name of the build
+     * @param build builds a tree
+     */
+    private static void report(String name, Supplier<AVLTree> build) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += build.get().size();
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += build.get().size();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        System.out.printf("  %-20s %10.1f ms/build (checksum %d)%n", name, elapsed / 1e6 / MEASURED_ROUNDS, sink);
+    }
+    /**
+     * Creates the symbol with the given index. Symbols have five letters, so their
+     * order is the same as the order of the indexes for up to 26^5 symbols.
+     *
+     * @param index the index of the symbol
+     * @return the symbol
+     */
+    private static String symbolOf(int index) {
+        char[] letters = new char[5];
+        for (int i = letters.length - 1; i >= 0; i--) {
+            letters[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,383 @@
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * ClientSimulation class simulates many independent clients that share one ConcurrentStockDataManager,
+ * to see how the manager behaves under the load of a whole trading day before sizing a deployment.
+ *
+ * Every client runs on its own thread and issues its own random mix of ADD, REMOVE, SEARCH, and UPDATE
+ * commands, generated like those of RandomCommandGenerator, at a fixed rate. The schedules of the
+ * clients are staggered, and the manager is filled with every symbol before they start. A command is
+ * due at a fixed interval after the previous one, and its response time is measured from the time it
+ * was due, so a command delayed behind a slow one, a busy processor, or a held lock is counted with its
+ * waiting time; the service time is measured from when the command actually started. Without a rate,
+ * each client issues its next command as soon as the last one returns, and both times are the same.
+ *
+ * Clients run on virtual threads when the Java runtime has them (Java 21 or later), which makes tens
+ * of thousands of clients cheap. Older runtimes fall back to one platform thread per client, with a
+ * small stack. At the end the simulation prints the throughput of the clients, the percentiles of both
+ * latencies, and how contended the lock of the manager was.
+ *
+ * <pre>
+ * java ClientSimulation [--clients N] [--rate OPS] [--commands N] [--symbols N] [--mix ADD,REMOVE,SEARCH,UPDATE]
+ *                       [--zipf S] [--seed N] [--engine NAME] [--filter] [--platform]
+ * </pre>
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ClientSimulation {
+    private static final StockCommand.Type[] TYPES = {
+        StockCommand.Type.ADD, StockCommand.Type.REMOVE, StockCommand.Type.SEARCH, StockCommand.Type.UPDATE
+    };
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final int BATCH_SIZE = 256; // Latencies a client buffers before adding them to the histograms
+    private static final long STACK_SIZE = 1 << 18; // Stack of a platform thread per client
+
+    private int clientCount = 1000;
+    private double rate = 100; // Commands per second of each client; 0 issues commands back to back
+    private int commandsPerClient = 1000;
+    private int symbolCount = 10000;
+    private int[] mix = {5, 2, 2, 1};
+    private double zipfExponent = -1; // Negative chooses symbols uniformly
+    private long seed = 42;
+    private StockIndex.Engine engine = StockIndex.Engine.AVL;
+    private boolean filter;
+    private boolean platformThreads; // Uses platform threads even when virtual threads are available
+    private long[] symbolKeys;
+    private int[] mixLimits; // Cumulative weights of ADD, REMOVE, SEARCH, UPDATE
+    private ZipfDistribution zipf;
+    private ConcurrentStockDataManager manager;
+    private final LatencyHistogram responseTimes = new LatencyHistogram();
+    private final LatencyHistogram serviceTimes = new LatencyHistogram();
+    private volatile long startTime; // Set once every client is ready
+    /**
+     * Client class issues the commands of one simulated client on its own thread.
+     */
+    private final class Client implements Runnable {
+        final SplittableRandom random;
+        final CountDownLatch ready;
+        final CountDownLatch start;
+        final CountDownLatch done;
+        final StockCommand command = new StockCommand();
+        final long[] responses = new long[BATCH_SIZE];
+        final long[] services = new long[BATCH_SIZE];
+        int buffered;
+        long elapsed; // From the first due time to the return of the last command
+        /**
+         * Constructs a new Client.
+         *
+         * @param random the random stream of the client
+         * @param ready counted down when the client waits for the start
+         * @param start released when every client is ready
+         * @param done counted down when the client has issued every command
+         */
+        Client(SplittableRandom random, CountDownLatch ready, CountDownLatch start, CountDownLatch done) {
+            this.random = random;
+            this.ready = ready;
+            this.start = start;
+            this.done = done;
+        }
+        /**
+         * Waits for the start, then issues every command on schedule and records its latencies.
+         */
+        @Override
+        public void run() {
+            try {
+                ready.countDown();
+                start.await();
+                double interval = (rate > 0) ? 1e9 / rate : 0;
+                long firstDue = startTime + (long) (random.nextDouble() * interval); // Staggers the clients
+                long end = firstDue;
+                for (int i = 0; i < commandsPerClient; i++) {
+                    long dueTime = firstDue + (long) (i * interval);
+                    for (long wait = dueTime - System.nanoTime(); wait > 0; wait = dueTime - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    nextCommand();
+                    long begin = System.nanoTime();
+                    command.applyTo(manager);
+                    end = System.nanoTime();
+                    record(end - ((rate > 0) ? dueTime : begin), end - begin);
+                }
+                elapsed = end - firstDue;
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+        /**
+         * Sets the command to the next random command of the mix.
+         */
+        void nextCommand() {
+            int value = random.nextInt(mixLimits[mixLimits.length - 1]);
+            int type = 0;
+            while (value >= mixLimits[type]) {
+                type++;
+            }
+            long symbolKey = symbolKeys[chooseRank(random)];
+            long newSymbolKey = (TYPES[type] == StockCommand.Type.UPDATE)
+                    ? symbolKeys[chooseRank(random)] : SymbolKey.FALLBACK;
+            command.set(TYPES[type], symbolKey, null, newSymbolKey, null, (1000 + random.nextInt(99000)) / 100.0,
+                    100000 + random.nextInt(900000), 1000000 + random.nextInt(9000000));
+        }
+        /**
+         * Buffers the latencies of one command, adding the buffer to the histograms when it is full.
+         *
+         * @param response the response time in nanoseconds
+         * @param service the service time in nanoseconds
+         */
+        void record(long response, long service) {
+            responses[buffered] = response;
+            services[buffered] = service;
+            if (++buffered == BATCH_SIZE) {
+                flush();
+            }
+        }
+        /**
+         * Adds the buffered latencies to the shared histograms.
+         */
+        void flush() {
+            synchronized (responseTimes) {
+                for (int i = 0; i < buffered; i++) {
+                    responseTimes.record(responses[i]);
+                    serviceTimes.record(services[i]);
+                }
+            }
+            buffered = 0;
+        }
+    }
+    /**
+     * Runs the simulation with the given options.
+     *
+     * @param args optional flags: --clients, --rate, --commands, --symbols, --mix, --zipf, --seed,
+     *             --engine, --filter, and --platform
+     */
+    public static void main(String[] args) {
+        ClientSimulation simulation = parse(args);
+        if (simulation == null) {
+            System.out.println("Usage: java ClientSimulation [--clients N] [--rate OPS] [--commands N] [--symbols N] "
+                    + "[--mix ADD,REMOVE,SEARCH,UPDATE] [--zipf S] [--seed N] [--engine NAME] [--filter] [--platform]");
+            return;
+        }
+        try {
+            simulation.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * Parses the command-line options.
+     *
+     * @param args the command-line arguments
+     * @return the configured simulation, or null if the arguments are invalid
+     */
+    private static ClientSimulation parse(String[] args) {
+        ClientSimulation simulation = new ClientSimulation();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                boolean hasValue = i + 1 < args.length;
+                if (args[i].equals("--clients") && hasValue) {
+                    simulation.clientCount = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--rate") && hasValue) {
+                    simulation.rate = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--commands") && hasValue) {
+                    simulation.commandsPerClient = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--symbols") && hasValue) {
+                    simulation.symbolCount = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--mix") && hasValue) {
+                    String[] weights = args[++i].split(",");
+                    simulation.mix = new int[weights.length];
+                    for (int j = 0; j < weights.length; j++) {
+                        simulation.mix[j] = Integer.parseInt(weights[j]);
+                    }
+                } else if (args[i].equals("--zipf") && hasValue) {
+                    simulation.zipfExponent = Double.parseDouble(args[++i]);
+                    if (!(simulation.zipfExponent >= 0)) {
+                        return null;
+                    }
+                } else if (args[i].equals("--seed") && hasValue) {
+                    simulation.seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--engine") && hasValue) {
+                    simulation.engine = StockIndex.Engine.of(args[++i]);
+                } else if (args[i].equals("--filter")) {
+                    simulation.filter = true;
+                } else if (args[i].equals("--platform")) {
+                    simulation.platformThreads = true;
+                } else {
+                    return null;
+                }
+            }
+        } catch (IllegalArgumentException e) { // Also thrown for a bad number or an unknown engine
+            return null;
+        }
+        if (simulation.clientCount <= 0 || !(simulation.rate >= 0) || simulation.commandsPerClient <= 0
+                || simulation.symbolCount <= 0 || simulation.mix.length != TYPES.length) {
+            return null;
+        }
+        int total = 0;
+        for (int weight : simulation.mix) {
+            if (weight < 0) {
+                return null;
+            }
+            total += weight;
+        }
+        return (total > 0) ? simulation : null;
+    }
+    /**
+     * Fills the manager, runs every client to the end, and prints the results.
+     *
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    private void run() throws InterruptedException {
+        mixLimits = new int[mix.length];
+        for (int i = 0, total = 0; i < mix.length; i++) {
+            total += mix[i];
+            mixLimits[i] = total;
+        }
+        if (zipfExponent >= 0) {
+            zipf = new ZipfDistribution(symbolCount, zipfExponent);
+        }
+        manager = new ConcurrentStockDataManager(engine, false, filter);
+        symbolKeys = new long[symbolCount];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < symbolCount; i++) {
+            symbolKeys[i] = keyOf(i);
+            manager.addOrUpdateStock(symbolKeys[i], (1000 + random.nextInt(99000)) / 100.0,
+                    100000 + random.nextInt(900000), 1000000 + random.nextInt(9000000));
+        }
+        manager.resetLockStatistics();
+
+        ThreadFactory factory = platformThreads ? null : virtualThreadFactory();
+        System.out.printf("%d clients on %s threads, %d commands each at %s, %d symbols, %s engine%n", clientCount,
+                (factory != null) ? "virtual" : "platform", commandsPerClient,
+                (rate > 0) ? String.format("%.0f commands/s", rate) : "the maximum rate", symbolCount, engine);
+        CountDownLatch ready = new CountDownLatch(clientCount);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clientCount);
+        Client[] clients = new Client[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            clients[i] = new Client(random.split(), ready, start, done);
+            Thread thread = (factory != null) ? factory.newThread(clients[i])
+                    : new Thread(null, clients[i], "client-" + i, STACK_SIZE);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+
+        printThroughput(clients, elapsed);
+        printLatencies();
+        printContention(elapsed);
+    }
+    /**
+     * Prints the total throughput and the lowest, median, and highest throughput of a single client.
+     *
+     * @param clients the clients, which have all finished
+     * @param elapsed the time from the start to the end of the last client, in nanoseconds
+     */
+    private void printThroughput(Client[] clients, long elapsed) {
+        double[] rates = new double[clients.length];
+        for (int i = 0; i < clients.length; i++) {
+            rates[i] = commandsPerClient * 1e9 / Math.max(1, clients[i].elapsed);
+        }
+        Arrays.sort(rates);
+        long total = (long) clientCount * commandsPerClient;
+        System.out.printf("%d commands in %.3f ms, %.0f commands/s, %d stocks%n", total, elapsed / 1e6,
+                total * 1e9 / elapsed, manager.size());
+        System.out.printf("Per client: min %.1f, median %.1f, max %.1f commands/s%n", rates[0],
+                rates[rates.length / 2], rates[rates.length - 1]);
+    }
+    /**
+     * Prints the percentiles and the maximum of the response and service times in microseconds.
+     */
+    private void printLatencies() {
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "Latency", "Count", "p50 us", "p90 us", "p99 us",
+                "p99.9 us", "max us");
+        LatencyHistogram[] histograms = {responseTimes, serviceTimes};
+        String[] names = {"Response", "Service"};
+        for (int i = 0; i < histograms.length; i++) {
+            System.out.printf("%-8s %10d", names[i], histograms[i].getTotalCount());
+            for (double percentile : PERCENTILES) {
+                System.out.printf(" %10.3f", histograms[i].getValueAtPercentile(percentile) / 1e3);
+            }
+            System.out.printf(" %10.3f%n", histograms[i].getMax() / 1e3);
+        }
+    }
+    /**
+     * Prints how often the read and write locks of the manager had to be waited for, and for how long.
+     *
+     * @param elapsed the duration of the simulation in nanoseconds
+     */
+    private void printContention(long elapsed) {
+        System.out.printf("%-8s %10s %10s %10s %12s %12s%n", "Lock", "Acquired", "Contended", "Percent", "Mean wait us",
+                "Avg waiters");
+        printLock("Write", manager.getWriteLockCount(), manager.getContendedWriteLockCount(),
+                manager.getWriteWaitNanos(), elapsed);
+        printLock("Read", manager.getReadLockCount(), manager.getContendedReadLockCount(),
+                manager.getReadWaitNanos(), elapsed);
+        System.out.printf("Optimistic searches retried: %d%n", manager.getOptimisticRetryCount());
+    }
+    /**
+     * Prints one row of the lock contention table: the acquisitions, the share of them that had to wait,
+     * the mean wait of those, and the average number of threads waiting at any time.
+     *
+     * @param name the name of the lock mode
+     * @param acquired the number of acquisitions
+     * @param contended the number of acquisitions that had to wait
+     * @param waitNanos the total waiting time in nanoseconds
+     * @param elapsed the duration of the simulation in nanoseconds
+     */
+    private static void printLock(String name, long acquired, long contended, long waitNanos, long elapsed) {
+        System.out.printf("%-8s %10d %10d %9.2f%% %12.3f %12.2f%n", name, acquired, contended,
+                100.0 * contended / Math.max(1, acquired), waitNanos / 1e3 / Math.max(1, contended),
+                (double) waitNanos / elapsed);
+    }
+    /**
+     * Chooses the popularity rank of a symbol, uniformly or from the Zipf distribution.
+     *
+     * @param random the random stream of the client
+     * @return a rank between 0 and symbolCount - 1; smaller ranks are more popular
+     */
+    private int chooseRank(SplittableRandom random) {
+        return (zipf != null) ? zipf.sample(random) : random.nextInt(symbolCount);
+    }
+    /**
+     * Gets a factory of virtual threads, found by reflection so that the simulation also compiles
+     * and runs on Java versions without them.
+     *
+     * @return the factory, or null if this runtime has no virtual threads
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+    /**
+     * Creates the packed key of the symbol with the given index. Symbols have six letters,
+     * which is enough for more than 300 million distinct symbols.
+     *
+     * @param index the index of the symbol
+     * @return the packed symbol
+     */
+    private static long keyOf(int index) {
+        char[] letters = new char[6];
+        for (int i = letters.length - 1; i >= 0; i--) {
+            letters[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return SymbolKey.encode(new String(letters));
+    }
+}
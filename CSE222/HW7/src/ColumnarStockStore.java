@@ -0,0 +1,503 @@
+import java.util.Arrays;
+/**
+ * ColumnarStockStore class keeps stocks in primitive columns instead of objects, for
+ * universes of tens of millions of instruments. Every stock occupies one slot, and
+ * the slot's entries in the key, price, volume, and market capitalization columns
+ * hold its data. An AVL tree ordered by packed symbol links the slots by their int
+ * indexes in two more columns, with a byte column for the heights.
+ *
+ * A stock therefore takes 41 bytes of columns, without any object headers, references,
+ * or Strings, where a StockDataManager needs a Stock, its symbol String, and a tree node
+ * for each, about 170 bytes spread over four objects. The garbage collector only sees
+ * the seven column arrays, however many stocks are stored. Freed slots are linked into
+ * a free list through the left column and reused before the columns grow.
+ *
+ * Only symbols that can be packed into a {@link SymbolKey} can be stored, because the
+ * key column is the only copy of the symbol. Searches return new Stock objects with
+ * the stored values, so changing them does not change the store.
+ * The store is not thread-safe.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ColumnarStockStore {
+    public static final int BYTES_PER_SLOT = 4 * 8 + 2 * 4 + 1; // Four 8-byte columns, two int columns, and the heights
+    private static final int NIL = 0; // Slot 0 is never used, so it stands for a missing child
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final int MAX_HEIGHT = 64;
+
+    private long[] keys; // Packed symbol of each slot
+    private double[] prices;
+    private long[] volumes;
+    private long[] marketCaps;
+    private int[] left; // Left child of each slot, or the next free slot for free slots
+    private int[] right; // Right child of each slot
+    private byte[] heights; // Height of the subtree of each slot; 0 for NIL
+    private int root = NIL;
+    private int used = 1; // Slots taken at least once, counting slot 0
+    private int freeHead = NIL; // First slot of the free list
+    private int size;
+    private boolean found; // Set by insert and delete when the key was stored
+    /**
+     * StockConsumer interface receives the stocks of a store without creating objects.
+     */
+    public interface StockConsumer {
+        /**
+         * Receives one stock.
+         *
+         * @param symbolKey the packed symbol of the stock
+         * @param price the price of the stock
+         * @param volume the volume of the stock
+         * @param marketCap the market capitalization of the stock
+         */
+        void accept(long symbolKey, double price, long volume, long marketCap);
+    }
+    /**
+     * Constructs a new, empty ColumnarStockStore.
+     */
+    public ColumnarStockStore() {
+        this(DEFAULT_CAPACITY);
+    }
+    /**
+     * Constructs a new, empty ColumnarStockStore with room for a given number of stocks,
+     * so that loading that many stocks never copies the columns.
+     *
+     * @param capacity the number of stocks the columns can hold before they grow
+     * @throws IllegalArgumentException if capacity is negative or too large
+     */
+    public ColumnarStockStore(int capacity) {
+        if (capacity < 0 || capacity >= MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        allocate(capacity + 1);
+    }
+    /**
+     * Adds a stock or updates the stock stored under its symbol.
+     *
+     * @param symbol the stock symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @throws IllegalArgumentException if the symbol cannot be packed
+     */
+    public void put(String symbol, double price, long volume, long marketCap) {
+        put(requirePacked(symbol), price, volume, marketCap);
+    }
+    /**
+     * Adds a stock or updates the stock stored under a packed symbol.
+     *
+     * @param symbolKey the packed symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    public void put(long symbolKey, double price, long volume, long marketCap) {
+        checkPacked(symbolKey);
+        if (freeHead == NIL && used == keys.length) {
+            grow(); // Before the descent, which stores into the child columns on its way back up
+        }
+        found = false;
+        root = insert(root, symbolKey, price, volume, marketCap);
+        if (!found) {
+            size++;
+        }
+    }
+    /**
+     * Removes the stock stored under a symbol.
+     *
+     * @param symbol the stock symbol
+     * @return true if a stock was removed
+     */
+    public boolean remove(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        return SymbolKey.isPacked(key) && remove(key);
+    }
+    /**
+     * Removes the stock stored under a packed symbol.
+     *
+     * @param symbolKey the packed symbol
+     * @return true if a stock was removed
+     */
+    public boolean remove(long symbolKey) {
+        found = false;
+        root = delete(root, symbolKey);
+        if (found) {
+            size--;
+        }
+        return found;
+    }
+    /**
+     * Updates a stock and moves it to a new symbol, replacing any stock stored under the new symbol.
+     *
+     * @param symbolKey the packed current symbol
+     * @param newSymbolKey the packed new symbol, which may equal the current one
+     * @param newPrice the new price
+     * @param newVolume the new volume
+     * @param newMarketCap the new market capitalization
+     * @return true if a stock was stored under the current symbol and was updated
+     * @throws IllegalArgumentException if the new key is {@link SymbolKey#FALLBACK}
+     */
+    public boolean update(long symbolKey, long newSymbolKey, double newPrice, long newVolume, long newMarketCap) {
+        checkPacked(newSymbolKey);
+        if (symbolKey == newSymbolKey) {
+            int slot = find(symbolKey);
+            if (slot == NIL) {
+                return false;
+            }
+            prices[slot] = newPrice;
+            volumes[slot] = newVolume;
+            marketCaps[slot] = newMarketCap;
+            return true;
+        }
+        if (!remove(symbolKey)) {
+            return false;
+        }
+        put(newSymbolKey, newPrice, newVolume, newMarketCap);
+        return true;
+    }
+    /**
+     * Searches for the stock stored under a symbol.
+     *
+     * @param symbol the stock symbol
+     * @return a new Stock with the stored values, or null if no stock has the symbol
+     */
+    public Stock search(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        return SymbolKey.isPacked(key) ? search(key) : null;
+    }
+    /**
+     * Searches for the stock stored under a packed symbol.
+     *
+     * @param symbolKey the packed symbol
+     * @return a new Stock with the stored values, or null if no stock has the symbol
+     */
+    public Stock search(long symbolKey) {
+        int slot = find(symbolKey);
+        return (slot == NIL) ? null : toStock(slot);
+    }
+    /**
+     * Checks whether a stock is stored under a packed symbol.
+     *
+     * @param symbolKey the packed symbol
+     * @return true if a stock has the symbol
+     */
+    public boolean contains(long symbolKey) {
+        return find(symbolKey) != NIL;
+    }
+    /**
+     * Gets the price of the stock stored under a packed symbol, without creating a Stock.
+     *
+     * @param symbolKey the packed symbol
+     * @return the price, or NaN if no stock has the symbol
+     */
+    public double getPrice(long symbolKey) {
+        int slot = find(symbolKey);
+        return (slot == NIL) ? Double.NaN : prices[slot];
+    }
+    /**
+     * Passes every stock to the given consumer in symbol order.
+     *
+     * @param consumer the consumer of the stocks
+     */
+    public void forEach(StockConsumer consumer) {
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0;
+        int slot = root;
+        while (slot != NIL || top > 0) {
+            while (slot != NIL) {
+                stack[top++] = slot;
+                slot = left[slot];
+            }
+            slot = stack[--top];
+            consumer.accept(keys[slot], prices[slot], volumes[slot], marketCaps[slot]);
+            slot = right[slot];
+        }
+    }
+    /**
+     * Gets the number of stocks in the store.
+     *
+     * @return the number of stocks
+     */
+    public int size() {
+        return size;
+    }
+    /**
+     * Gets the number of stocks the columns can hold before they grow.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return keys.length - 1;
+    }
+    /**
+     * Gets the memory taken by the columns, including free and not yet used slots.
+     *
+     * @return the size of the columns in bytes, without the array headers
+     */
+    public long getFootprint() {
+        return (long) keys.length * BYTES_PER_SLOT;
+    }
+    /**
+     * Shrinks the columns to the slots in use, when the free list is empty.
+     * With free slots the columns are left as they are, because their slots are spread over the columns.
+     */
+    public void trimToSize() {
+        if (freeHead == NIL && used < keys.length) {
+            allocate(used);
+        }
+    }
+    /**
+     * Returns a summary of the store.
+     *
+     * @return a string with the size, capacity, and footprint
+     */
+    @Override
+    public String toString() {
+        return String.format("ColumnarStockStore [stocks=%d, capacity=%d, footprint=%d bytes]", size, getCapacity(),
+                getFootprint());
+    }
+    /**
+     * Inserts or updates a stock in a subtree and rebalances it.
+     * The columns must have a free slot.
+     *
+     * @param slot the root of the subtree
+     * @param key the packed symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @return the new root of the subtree
+     */
+    private int insert(int slot, long key, double price, long volume, long marketCap) {
+        if (slot == NIL) {
+            return newSlot(key, price, volume, marketCap);
+        }
+        if (key < keys[slot]) {
+            left[slot] = insert(left[slot], key, price, volume, marketCap);
+        } else if (key > keys[slot]) {
+            right[slot] = insert(right[slot], key, price, volume, marketCap);
+        } else {
+            prices[slot] = price;
+            volumes[slot] = volume;
+            marketCaps[slot] = marketCap;
+            found = true;
+            return slot;
+        }
+        return rebalance(slot);
+    }
+    /**
+     * Deletes a stock from a subtree and rebalances it.
+     * A slot with two children takes over the columns of its in-order successor,
+     * whose slot is freed instead.
+     *
+     * @param slot the root of the subtree
+     * @param key the packed symbol
+     * @return the new root of the subtree
+     */
+    private int delete(int slot, long key) {
+        if (slot == NIL) {
+            return NIL;
+        }
+        if (key < keys[slot]) {
+            left[slot] = delete(left[slot], key);
+        } else if (key > keys[slot]) {
+            right[slot] = delete(right[slot], key);
+        } else {
+            found = true;
+            if (left[slot] == NIL || right[slot] == NIL) {
+                int child = (left[slot] != NIL) ? left[slot] : right[slot];
+                free(slot);
+                return child;
+            }
+            int successor = right[slot];
+            while (left[successor] != NIL) {
+                successor = left[successor];
+            }
+            keys[slot] = keys[successor];
+            prices[slot] = prices[successor];
+            volumes[slot] = volumes[successor];
+            marketCaps[slot] = marketCaps[successor];
+            right[slot] = delete(right[slot], keys[successor]);
+        }
+        return rebalance(slot);
+    }
+    /**
+     * Finds the slot of a packed symbol.
+     *
+     * @param key the packed symbol
+     * @return the slot, or NIL if the symbol is not stored
+     */
+    private int find(long key) {
+        int slot = root;
+        while (slot != NIL && keys[slot] != key) {
+            slot = (key < keys[slot]) ? left[slot] : right[slot];
+        }
+        return slot;
+    }
+    /**
+     * Updates the height of a slot and restores the AVL balance of its subtree.
+     *
+     * @param slot the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rebalance(int slot) {
+        updateHeight(slot);
+        int balance = heights[left[slot]] - heights[right[slot]];
+        if (balance > 1) {
+            if (heights[left[left[slot]]] < heights[right[left[slot]]]) {
+                left[slot] = rotateLeft(left[slot]);
+            }
+            return rotateRight(slot);
+        }
+        if (balance < -1) {
+            if (heights[right[right[slot]]] < heights[left[right[slot]]]) {
+                right[slot] = rotateRight(right[slot]);
+            }
+            return rotateLeft(slot);
+        }
+        return slot;
+    }
+    /**
+     * Performs a left rotation.
+     *
+     * @param x the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rotateLeft(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        left[y] = x;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+    /**
+     * Performs a right rotation.
+     *
+     * @param y the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rotateRight(int y) {
+        int x = left[y];
+        left[y] = right[x];
+        right[x] = y;
+        updateHeight(y);
+        updateHeight(x);
+        return x;
+    }
+    /**
+     * Sets the height of a slot from the heights of its children.
+     *
+     * @param slot the slot
+     */
+    private void updateHeight(int slot) {
+        heights[slot] = (byte) (Math.max(heights[left[slot]], heights[right[slot]]) + 1);
+    }
+    /**
+     * Takes a slot from the free list, or the next unused slot, and fills it with a new leaf.
+     *
+     * @param key the packed symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @return the slot
+     */
+    private int newSlot(long key, double price, long volume, long marketCap) {
+        int slot;
+        if (freeHead != NIL) {
+            slot = freeHead;
+            freeHead = left[slot];
+        } else {
+            slot = used++;
+        }
+        keys[slot] = key;
+        prices[slot] = price;
+        volumes[slot] = volume;
+        marketCaps[slot] = marketCap;
+        left[slot] = NIL;
+        right[slot] = NIL;
+        heights[slot] = 1;
+        return slot;
+    }
+    /**
+     * Puts a slot on the free list.
+     *
+     * @param slot the slot to free
+     */
+    private void free(int slot) {
+        left[slot] = freeHead;
+        right[slot] = NIL;
+        heights[slot] = 0;
+        freeHead = slot;
+    }
+    /**
+     * Grows the columns by half of their length.
+     *
+     * @throws IllegalStateException if the columns cannot grow any further
+     */
+    private void grow() {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Columnar store is full");
+        }
+        allocate((int) Math.min(MAX_CAPACITY, (long) keys.length + Math.max(keys.length >> 1, DEFAULT_CAPACITY)));
+    }
+    /**
+     * Creates the columns with a given length, keeping the slots in use.
+     *
+     * @param length the new number of slots, including slot 0
+     */
+    private void allocate(int length) {
+        if (keys == null) {
+            keys = new long[length];
+            prices = new double[length];
+            volumes = new long[length];
+            marketCaps = new long[length];
+            left = new int[length];
+            right = new int[length];
+            heights = new byte[length];
+            return;
+        }
+        keys = Arrays.copyOf(keys, length);
+        prices = Arrays.copyOf(prices, length);
+        volumes = Arrays.copyOf(volumes, length);
+        marketCaps = Arrays.copyOf(marketCaps, length);
+        left = Arrays.copyOf(left, length);
+        right = Arrays.copyOf(right, length);
+        heights = Arrays.copyOf(heights, length);
+    }
+    /**
+     * Creates a Stock with the values of a slot.
+     *
+     * @param slot the slot
+     * @return the new stock
+     */
+    private Stock toStock(int slot) {
+        return new Stock(SymbolKey.decode(keys[slot]), prices[slot], volumes[slot], marketCaps[slot]);
+    }
+    /**
+     * Packs a symbol that must be stored in the key column.
+     *
+     * @param symbol the stock symbol
+     * @return the packed symbol
+     * @throws IllegalArgumentException if the symbol cannot be packed
+     */
+    private static long requirePacked(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        if (!SymbolKey.isPacked(key)) {
+            throw new IllegalArgumentException("Symbol cannot be packed: " + symbol);
+        }
+        return key;
+    }
+    /**
+     * Checks that a key is a packed symbol.
+     *
+     * @param key the packed symbol
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    private static void checkPacked(long key) {
+        if (!SymbolKey.isPacked(key)) {
+            throw new IllegalArgumentException("Fallback keys cannot be stored in a columnar store");
+        }
+    }
+}
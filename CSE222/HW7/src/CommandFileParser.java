@@ -0,0 +1,402 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+/**
+ * CommandFileParser class reads stock management commands from a memory-mapped file.
+ * Lines are tokenized in place in the mapped bytes, symbols are packed straight into
+ * {@link SymbolKey} keys, and prices, volumes, and market capitalizations are parsed
+ * from the bytes, so a valid line with packable symbols creates no objects at all.
+ * Each parsed command is written into a caller-supplied StockCommand, which can be
+ * reused for every line.
+ *
+ * Files larger than one mapping are read through a sliding window that always starts
+ * at a line boundary. Lines are validated like {@link StockCommand#parse(String)} and
+ * invalid lines are reported with the same messages and skipped.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class CommandFileParser implements AutoCloseable {
+    private static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+    private static final int MAX_TOKENS = 7; // One more than any valid command, to detect extra parameters
+    private static final int MAX_FAST_DIGITS = 15; // Any 15-digit mantissa is exactly representable as a double
+    private static final double[] POWERS_OF_TEN = new double[23]; // Powers of ten that are exact doubles
+    private static final byte[] ADD = {'A', 'D', 'D'};
+    private static final byte[] REMOVE = {'R', 'E', 'M', 'O', 'V', 'E'};
+    private static final byte[] SEARCH = {'S', 'E', 'A', 'R', 'C', 'H'};
+    private static final byte[] UPDATE = {'U', 'P', 'D', 'A', 'T', 'E'};
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final boolean reportErrors;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position; // Start of the next line within the window
+    private final int[] tokenStart = new int[MAX_TOKENS];
+    private final int[] tokenEnd = new int[MAX_TOKENS];
+    private int tokenCount;
+    private boolean numberValid; // Cleared by the number parsers when a token is not a number
+    private String error; // Message for the last invalid line
+    /**
+     * Opens a command file for parsing and reports invalid lines on standard output.
+     *
+     * @param path the command file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public CommandFileParser(Path path) throws IOException {
+        this(path, true, DEFAULT_WINDOW_SIZE);
+    }
+    /**
+     * Opens a command file for parsing.
+     *
+     * @param path the command file
+     * @param reportErrors whether invalid lines are reported on standard output
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public CommandFileParser(Path path, boolean reportErrors) throws IOException {
+        this(path, reportErrors, DEFAULT_WINDOW_SIZE);
+    }
+    /**
+     * Opens a command file for parsing with a given mapping window size.
+     *
+     * @param path the command file
+     * @param reportErrors whether invalid lines are reported on standard output
+     * @param windowSize the number of bytes mapped at a time, at most Integer.MAX_VALUE
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public CommandFileParser(Path path, boolean reportErrors, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+        this.reportErrors = reportErrors;
+        map(0);
+    }
+    /**
+     * Parses the next valid command into the given command object.
+     * Invalid lines are skipped.
+     *
+     * @param command the command object to fill
+     * @return true if a command was parsed, false at the end of the file
+     * @throws IOException if the next window cannot be mapped or a line does not fit into a window
+     */
+    public boolean next(StockCommand command) throws IOException {
+        return next(command, false);
+    }
+    /**
+     * Parses the next line into the given command object. An invalid line is not reported
+     * but yields an invalid command carrying its message (see {@link StockCommand#getError()}),
+     * so that a later stage can report it in file order.
+     *
+     * @param command the command object to fill
+     * @return true if a line was parsed, false at the end of the file
+     * @throws IOException if the next window cannot be mapped or a line does not fit into a window
+     */
+    public boolean nextLine(StockCommand command) throws IOException {
+        return next(command, true);
+    }
+    /**
+     * Parses the next line into the given command object, skipping or keeping invalid lines.
+     *
+     * @param command the command object to fill
+     * @param keepInvalid whether an invalid line yields an invalid command instead of being skipped
+     * @return true if a line was parsed, false at the end of the file
+     * @throws IOException if the next window cannot be mapped or a line does not fit into a window
+     */
+    private boolean next(StockCommand command, boolean keepInvalid) throws IOException {
+        while (true) {
+            int limit = window.limit();
+            if (position >= limit) {
+                if (windowStart + limit >= fileSize) {
+                    return false;
+                }
+                map(windowStart + position);
+                continue;
+            }
+
+            int end = position;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && windowStart + limit < fileSize) {
+                if (position == 0) {
+                    throw new IOException("Line at offset " + windowStart + " is longer than the mapping window");
+                }
+                map(windowStart + position);
+                continue;
+            }
+
+            int start = position;
+            position = end + 1;
+            if (end > start && window.get(end - 1) == '\r') {
+                end--;
+            }
+            if (parseLine(start, end, command)) {
+                return true;
+            }
+            if (keepInvalid) {
+                command.setInvalid(error);
+                return true;
+            }
+            if (reportErrors) {
+                System.out.println(error);
+            }
+        }
+    }
+    /**
+     * Closes the file channel. The current window stays valid until it is garbage collected.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    /**
+     * Maps the window starting at the given file offset.
+     *
+     * @param offset the file offset of the window
+     * @throws IOException if the window cannot be mapped
+     */
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, fileSize - offset));
+        position = 0;
+    }
+    /**
+     * Parses one line into a command.
+     *
+     * @param start the index of the first byte of the line in the window
+     * @param end the index just past the last byte of the line
+     * @param command the command object to fill
+     * @return true if the line is a valid command
+     */
+    private boolean parseLine(int start, int end, StockCommand command) {
+        tokenize(start, end);
+        if (tokenCount == 0) {
+            return invalid("Unknown command: ");
+        }
+
+        StockCommand.Type type;
+        int expectedTokens;
+        if (tokenIs(0, ADD)) {
+            type = StockCommand.Type.ADD;
+            expectedTokens = 5;
+        } else if (tokenIs(0, REMOVE)) {
+            type = StockCommand.Type.REMOVE;
+            expectedTokens = 2;
+        } else if (tokenIs(0, SEARCH)) {
+            type = StockCommand.Type.SEARCH;
+            expectedTokens = 2;
+        } else if (tokenIs(0, UPDATE)) {
+            type = StockCommand.Type.UPDATE;
+            expectedTokens = 6;
+        } else {
+            return invalid("Unknown command: " + tokenString(0));
+        }
+        if (tokenCount != expectedTokens) {
+            return invalid(StockCommand.usageMessage(type));
+        }
+
+        long symbolKey = SymbolKey.encode(window, tokenStart[1], tokenEnd[1]);
+        String symbol = SymbolKey.isPacked(symbolKey) ? null : tokenString(1);
+        switch (type) {
+            case ADD:
+                return setNumbers(command, type, symbolKey, symbol, SymbolKey.FALLBACK, null, 2);
+            case UPDATE:
+                long newSymbolKey = SymbolKey.encode(window, tokenStart[2], tokenEnd[2]);
+                String newSymbol = SymbolKey.isPacked(newSymbolKey) ? null : tokenString(2);
+                return setNumbers(command, type, symbolKey, symbol, newSymbolKey, newSymbol, 3);
+            default:
+                command.set(type, symbolKey, symbol, SymbolKey.FALLBACK, null, 0, 0, 0);
+                return true;
+        }
+    }
+    /**
+     * Parses the price, volume, and market capitalization tokens and fills the command.
+     *
+     * @param command the command object to fill
+     * @param type the command type
+     * @param symbolKey the packed symbol
+     * @param symbol the symbol String for a fallback key, or null
+     * @param newSymbolKey the packed new symbol
+     * @param newSymbol the new symbol String for a fallback key, or null
+     * @param firstNumber the index of the price token
+     * @return true if all three numbers are valid
+     */
+    private boolean setNumbers(StockCommand command, StockCommand.Type type, long symbolKey, String symbol,
+                               long newSymbolKey, String newSymbol, int firstNumber) {
+        numberValid = true;
+        double price = parseDouble(firstNumber);
+        long volume = parseLong(firstNumber + 1);
+        long marketCap = parseLong(firstNumber + 2);
+        if (!numberValid) {
+            return invalid(StockCommand.invalidNumberMessage(type));
+        }
+        command.set(type, symbolKey, symbol, newSymbolKey, newSymbol, price, volume, marketCap);
+        return true;
+    }
+    /**
+     * Splits a line into tokens at single spaces, with the same result as
+     * {@code line.split(" ")}: empty tokens between spaces are kept, trailing ones are dropped.
+     *
+     * @param start the index of the first byte of the line
+     * @param end the index just past the last byte of the line
+     */
+    private void tokenize(int start, int end) {
+        tokenCount = 0;
+        int count = 0; // Tokens seen, including any beyond MAX_TOKENS
+        int lastNonEmpty = 0;
+        int tokenBegin = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || window.get(i) == ' ') {
+                if (count < MAX_TOKENS) {
+                    tokenStart[count] = tokenBegin;
+                    tokenEnd[count] = i;
+                }
+                count++;
+                if (i > tokenBegin) {
+                    lastNonEmpty = count;
+                }
+                tokenBegin = i + 1;
+            }
+        }
+        tokenCount = (end == start) ? 1 : Math.min(lastNonEmpty, MAX_TOKENS);
+    }
+    /**
+     * Checks whether a token consists of exactly the given bytes.
+     *
+     * @param index the index of the token
+     * @param expected the expected bytes
+     * @return true if the token matches
+     */
+    private boolean tokenIs(int index, byte[] expected) {
+        int start = tokenStart[index];
+        if (tokenEnd[index] - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (window.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Creates a String from a token. Only used for fallback symbols and error messages.
+     *
+     * @param index the index of the token
+     * @return the token as a String
+     */
+    private String tokenString(int index) {
+        byte[] bytes = new byte[tokenEnd[index] - tokenStart[index]];
+        window.get(tokenStart[index], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    /**
+     * Parses a decimal token such as "512.80" as a double.
+     * Tokens with at most 15 significant digits and no exponent are converted as
+     * mantissa / 10^fractionDigits; both values are exact doubles, so the division
+     * gives the same correctly rounded result as Double.parseDouble. Anything else
+     * falls back to Double.parseDouble.
+     *
+     * @param index the index of the token
+     * @return the parsed value; numberValid is cleared if the token is not a number
+     */
+    private double parseDouble(int index) {
+        int i = tokenStart[index];
+        int end = tokenEnd[index];
+        boolean negative = false;
+        if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+            negative = window.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte c = window.get(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= MAX_FAST_DIGITS) {
+            double value = mantissa / POWERS_OF_TEN[Math.max(fractionDigits, 0)];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(tokenString(index));
+        } catch (NumberFormatException e) {
+            numberValid = false;
+            return 0;
+        }
+    }
+    /**
+     * Parses an integer token as a long.
+     * Tokens of at most 18 digits cannot overflow and are converted directly;
+     * longer ones fall back to Long.parseLong.
+     *
+     * @param index the index of the token
+     * @return the parsed value; numberValid is cleared if the token is not a number
+     */
+    private long parseLong(int index) {
+        int i = tokenStart[index];
+        int end = tokenEnd[index];
+        boolean negative = false;
+        if (i < end && (window.get(i) == '-' || window.get(i) == '+')) {
+            negative = window.get(i) == '-';
+            i++;
+        }
+        int length = end - i;
+        if (length == 0) {
+            numberValid = false;
+            return 0;
+        }
+        if (length > 18) {
+            try {
+                return Long.parseLong(tokenString(index));
+            } catch (NumberFormatException e) {
+                numberValid = false;
+                return 0;
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            byte c = window.get(i);
+            if (c < '0' || c > '9') {
+                numberValid = false;
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+    /**
+     * Stores the message for an invalid line, to be reported or kept by the caller.
+     *
+     * @param message the message describing the line
+     * @return false, so callers can return the result directly
+     */
+    private boolean invalid(String message) {
+        error = message;
+        return false;
+    }
+}
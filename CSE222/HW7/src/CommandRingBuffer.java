@@ -0,0 +1,207 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * CommandRingBuffer class is a bounded single-producer, single-consumer queue of StockCommand slots.
+ * All slots are allocated up front and reused, so the producer fills a slot in place instead of
+ * creating a command per line. Sequences only ever grow; a sequence maps to the slot
+ * {@code sequence & (capacity - 1)}.
+ *
+ * The producer claims and commits slots one at a time, but only publishes them to the consumer
+ * once a batch is complete or it flushes, and the consumer takes everything published at once
+ * and releases it in one step. Each side therefore touches the shared sequences once per batch.
+ * A full ring makes the producer wait (backpressure), an empty one makes the consumer wait, and
+ * both waits are counted so a pipeline can tell which side is the bottleneck.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class CommandRingBuffer {
+    private static final int SPIN_WAITS = 100;
+    private static final int YIELD_WAITS = 200;
+    private static final long PARK_NANOS = 20_000;
+
+    private final StockCommand[] slots;
+    private final int mask;
+    private final int batchSize;
+    private final AtomicLong published = new AtomicLong(); // Sequences below this are readable, written by the producer
+    private final AtomicLong released = new AtomicLong(); // Sequences below this are free again, written by the consumer
+    private volatile boolean closed;
+
+    private long claimed; // Producer: the sequence of the next slot to fill
+    private long releasedCache; // Producer: last value read from released
+    private long producerStalls, producerStallNanos;
+
+    private long readPosition; // Consumer: the sequence of the next slot to read
+    private long consumerStalls, consumerStallNanos;
+    /**
+     * Constructs a new CommandRingBuffer.
+     *
+     * @param capacity the number of slots, a power of two
+     * @param batchSize the number of committed commands after which they are published, at most capacity
+     * @throws IllegalArgumentException if capacity is not a power of two or batchSize is out of range
+     */
+    public CommandRingBuffer(int capacity, int batchSize) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (batchSize <= 0 || batchSize > capacity) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + capacity + ": " + batchSize);
+        }
+        this.slots = new StockCommand[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new StockCommand();
+        }
+        this.mask = capacity - 1;
+        this.batchSize = batchSize;
+    }
+    /**
+     * Gets the slot the producer fills next, waiting while the ring is full.
+     * The slot only becomes part of the queue once {@link #commit()} is called,
+     * so a slot that could not be filled can simply be left uncommitted.
+     * Producer only.
+     *
+     * @return the slot to fill
+     */
+    public StockCommand claim() {
+        if (claimed - releasedCache == slots.length) {
+            releasedCache = released.get();
+            if (claimed - releasedCache == slots.length) {
+                flush(); // The consumer can only make room if it sees what is already committed
+                long start = System.nanoTime();
+                producerStalls++;
+                for (int attempt = 0; claimed - (releasedCache = released.get()) == slots.length; attempt++) {
+                    idle(attempt);
+                }
+                producerStallNanos += System.nanoTime() - start;
+            }
+        }
+        return slots[(int) claimed & mask];
+    }
+    /**
+     * Adds the claimed slot to the queue, publishing the pending batch when it is complete.
+     * Producer only.
+     */
+    public void commit() {
+        claimed++;
+        if (claimed - published.get() >= batchSize) {
+            flush();
+        }
+    }
+    /**
+     * Publishes every committed slot to the consumer, even if the batch is not complete.
+     * Producer only.
+     */
+    public void flush() {
+        published.lazySet(claimed);
+    }
+    /**
+     * Publishes every committed slot and tells the consumer that no more will follow.
+     * Producer only.
+     */
+    public void close() {
+        flush();
+        closed = true;
+    }
+    /**
+     * Waits until published slots are available to the consumer.
+     * Consumer only.
+     *
+     * @return the number of slots that can be read with {@link #get(int)}, or 0 if the ring
+     *         is closed and every slot has been read
+     */
+    public int await() {
+        int available = (int) (published.get() - readPosition);
+        if (available > 0) {
+            return available;
+        }
+        long start = System.nanoTime();
+        consumerStalls++;
+        for (int attempt = 0; ; attempt++) {
+            boolean wasClosed = closed; // Read before published, so nothing closed after it can be missed
+            available = (int) (published.get() - readPosition);
+            if (available > 0 || wasClosed) {
+                consumerStallNanos += System.nanoTime() - start;
+                return available;
+            }
+            idle(attempt);
+        }
+    }
+    /**
+     * Gets one of the slots returned by the last {@link #await()}.
+     * The slot stays valid until it is released. Consumer only.
+     *
+     * @param index the index of the slot, from 0 to the available count minus one
+     * @return the slot
+     */
+    public StockCommand get(int index) {
+        return slots[(int) (readPosition + index) & mask];
+    }
+    /**
+     * Hands the first slots returned by the last {@link #await()} back to the producer.
+     * Consumer only.
+     *
+     * @param count the number of slots that have been processed
+     */
+    public void release(int count) {
+        readPosition += count;
+        released.lazySet(readPosition);
+    }
+    /**
+     * Gets the number of slots.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+    /**
+     * Gets the number of times the producer waited for a full ring.
+     * Only meaningful once the producer has stopped.
+     *
+     * @return the number of producer waits
+     */
+    public long getProducerStalls() {
+        return producerStalls;
+    }
+    /**
+     * Gets the total time the producer waited for a full ring.
+     * Only meaningful once the producer has stopped.
+     *
+     * @return the waiting time in nanoseconds
+     */
+    public long getProducerStallNanos() {
+        return producerStallNanos;
+    }
+    /**
+     * Gets the number of times the consumer waited for an empty ring.
+     * Only meaningful once the consumer has stopped.
+     *
+     * @return the number of consumer waits
+     */
+    public long getConsumerStalls() {
+        return consumerStalls;
+    }
+    /**
+     * Gets the total time the consumer waited for an empty ring.
+     * Only meaningful once the consumer has stopped.
+     *
+     * @return the waiting time in nanoseconds
+     */
+    public long getConsumerStallNanos() {
+        return consumerStallNanos;
+    }
+    /**
+     * Waits briefly before checking the ring again: spins first, then yields, then parks.
+     *
+     * @param attempt the number of checks made so far
+     */
+    private static void idle(int attempt) {
+        if (attempt < SPIN_WAITS) {
+            Thread.onSpinWait();
+        } else if (attempt < YIELD_WAITS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * ConcurrencyBenchmark class for measuring how SEARCH throughput of ConcurrentStockDataManager
+ * scales with the number of reader threads while a writer keeps updating stocks.
+ * The reader count doubles from 1 up to the number of available processors.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ConcurrencyBenchmark {
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of stocks (default 100,000), seconds per run (default 2),
+     *             writer updates per second (default 10,000), and maximum reader threads
+     *             (default: available processors)
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+        int writesPerSecond = (args.length > 2) ? Integer.parseInt(args[2]) : 10000;
+        int maxThreads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        String[] symbols = new String[size];
+        ConcurrentStockDataManager manager = new ConcurrentStockDataManager();
+        for (int i = 0; i < size; i++) {
+            symbols[i] = symbolOf(i);
+            manager.addOrUpdateStock(symbols[i], 100.0, 1000, 1000000);
+        }
+
+        System.out.println("Stocks: " + size + ", writer: " + writesPerSecond + " updates/s, " + seconds + " s per run");
+        double baseline = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            double opsPerSecond = run(manager, symbols, threads, seconds, writesPerSecond);
+            if (threads == 1) {
+                baseline = opsPerSecond;
+            }
+            System.out.printf("  %3d readers: %,14.0f searches/s  (x%.2f)%n", threads, opsPerSecond, opsPerSecond / baseline);
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+    /**
+     * Runs the given number of reader threads and one writer thread for a fixed time.
+     *
+     * @param manager the manager to query
+     * @param symbols the symbols stored in the manager
+     * @param threads the number of reader threads
+     * @param seconds how long to run
+     * @param writesPerSecond the update rate of the writer thread
+     * @return the total number of searches per second
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static double run(ConcurrentStockDataManager manager, String[] symbols, int threads, int seconds, int writesPerSecond)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder searches = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads + 1);
+
+        Thread writer = new Thread(() -> {
+            long interval = 1000000000L / Math.max(1, writesPerSecond);
+            long next = System.nanoTime();
+            while (running.get()) {
+                String symbol = symbols[ThreadLocalRandom.current().nextInt(symbols.length)];
+                manager.addOrUpdateStock(symbol, 10 + ThreadLocalRandom.current().nextInt(990), 1000, 1000000);
+                next += interval;
+                long delay = next - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            done.countDown();
+        });
+        writer.start();
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (running.get()) {
+                    for (int i = 0; i < 1024; i++) {
+                        manager.searchStock(symbols[random.nextInt(symbols.length)]);
+                    }
+                    count += 1024;
+                }
+                searches.add(count);
+                done.countDown();
+            }).start();
+        }
+
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        return searches.sum() / (double) seconds;
+    }
+    /**
+     * Builds a distinct symbol for an index by writing it in base 26.
+     *
+     * @param index the index of the stock
+     * @return a symbol of uppercase letters
+     */
+    private static String symbolOf(int index) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('A' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return sb.reverse().toString();
+    }
+}
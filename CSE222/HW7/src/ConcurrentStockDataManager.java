@@ -0,0 +1,571 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+/**
+ * ConcurrentStockDataManager class is a thread-safe StockDataManager.
+ * Writers are serialized by the write lock of a StampedLock. Searches first try an
+ * optimistic read, which takes no lock and never blocks, and only fall back to the
+ * read lock after repeated interference from writers. Other queries share the read lock.
+ * Every stock handed out is a copy, so callers never see or change the stocks
+ * that writers are modifying.
+ *
+ * The manager counts how often its lock is acquired, how often a thread had to wait for it,
+ * and for how long, so that lock contention can be measured under load. A thread only reads
+ * the clock when it could not take the lock at once, so uncontended acquisitions stay cheap.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ConcurrentStockDataManager extends StockDataManager {
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    private final StampedLock lock = new StampedLock();
+    private final LongAdder writeLocks = new LongAdder();
+    private final LongAdder contendedWriteLocks = new LongAdder(); // Write locks that were not free at once
+    private final LongAdder writeWaitNanos = new LongAdder();
+    private final LongAdder readLocks = new LongAdder();
+    private final LongAdder contendedReadLocks = new LongAdder(); // Read locks that were not free at once
+    private final LongAdder readWaitNanos = new LongAdder();
+    private final LongAdder optimisticRetries = new LongAdder(); // Optimistic reads discarded because of a writer
+    /**
+     * Constructs a new ConcurrentStockDataManager with an empty AVL tree.
+     */
+    public ConcurrentStockDataManager() {
+        this(false);
+    }
+    /**
+     * Constructs a new ConcurrentStockDataManager with an empty AVL tree and, if requested,
+     * secondary indexes on every {@link StockAttribute}.
+     *
+     * @param secondaryIndexes whether to maintain secondary indexes
+     */
+    public ConcurrentStockDataManager(boolean secondaryIndexes) {
+        super(secondaryIndexes);
+    }
+    /**
+     * Constructs a new ConcurrentStockDataManager that keeps its stocks in an empty index
+     * of the given engine and, if requested, secondary indexes on every {@link StockAttribute}.
+     *
+     * @param engine the index implementation that holds the stocks
+     * @param secondaryIndexes whether to maintain secondary indexes
+     */
+    public ConcurrentStockDataManager(StockIndex.Engine engine, boolean secondaryIndexes) {
+        super(engine, secondaryIndexes);
+    }
+    /**
+     * Constructs a new ConcurrentStockDataManager that keeps its stocks in an empty index
+     * of the given engine and, if requested, secondary indexes and a {@link SymbolFilter}.
+     * Optimistic searches also consult the filter; a check that races with a writer is
+     * discarded like any other optimistic read.
+     *
+     * @param engine the index implementation that holds the stocks
+     * @param secondaryIndexes whether to maintain secondary indexes
+     * @param symbolFilter whether to check symbols against a filter before searching the index
+     */
+    public ConcurrentStockDataManager(StockIndex.Engine engine, boolean secondaryIndexes, boolean symbolFilter) {
+        super(engine, secondaryIndexes, symbolFilter);
+    }
+    /**
+     * Adds a new stock or updates an existing stock while holding the write lock.
+     *
+     * @param symbol the stock symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     */
+    @Override
+    public void addOrUpdateStock(String symbol, double price, long volume, long marketCap) {
+        long stamp = writeLock();
+        try {
+            super.addOrUpdateStock(symbol, price, volume, marketCap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Adds a new stock or updates an existing stock by its packed symbol key while holding the write lock.
+     *
+     * @param symbolKey the packed stock symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     */
+    @Override
+    public void addOrUpdateStock(long symbolKey, double price, long volume, long marketCap) {
+        long stamp = writeLock();
+        try {
+            super.addOrUpdateStock(symbolKey, price, volume, marketCap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Removes a stock while holding the write lock.
+     *
+     * @param symbol the symbol of the stock to be removed
+     */
+    @Override
+    public void removeStock(String symbol) {
+        long stamp = writeLock();
+        try {
+            super.removeStock(symbol);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Removes a stock by its packed symbol key while holding the write lock.
+     *
+     * @param symbolKey the packed symbol of the stock to be removed
+     */
+    @Override
+    public void removeStock(long symbolKey) {
+        long stamp = writeLock();
+        try {
+            super.removeStock(symbolKey);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Updates an existing stock while holding the write lock.
+     *
+     * @param symbol the current symbol of the stock
+     * @param newSymbol the new symbol of the stock
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     */
+    @Override
+    public void updateStock(String symbol, String newSymbol, double newPrice, long newVolume, long newMarketCap) {
+        long stamp = writeLock();
+        try {
+            super.updateStock(symbol, newSymbol, newPrice, newVolume, newMarketCap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Updates an existing stock by its packed symbol keys while holding the write lock.
+     *
+     * @param symbolKey the current packed symbol of the stock
+     * @param newSymbolKey the new packed symbol of the stock
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     */
+    @Override
+    public void updateStock(long symbolKey, long newSymbolKey, double newPrice, long newVolume, long newMarketCap) {
+        long stamp = writeLock();
+        try {
+            super.updateStock(symbolKey, newSymbolKey, newPrice, newVolume, newMarketCap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Searches for a stock by its symbol.
+     * The search copies the stock under an optimistic read stamp and keeps the copy
+     * only if no writer ran in the meantime. After OPTIMISTIC_ATTEMPTS failed
+     * attempts it takes the read lock instead.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return a copy of the found stock, or null if not found
+     */
+    @Override
+    public Stock searchStock(String symbol) {
+        return search(symbol, 0);
+    }
+    /**
+     * Searches for a stock by its packed symbol key, like {@link #searchStock(String)}.
+     *
+     * @param symbolKey the packed symbol of the stock to search for
+     * @return a copy of the found stock, or null if not found
+     */
+    @Override
+    public Stock searchStock(long symbolKey) {
+        return search(null, symbolKey);
+    }
+    /**
+     * Searches for a stock by its symbol or, if the symbol is null, by its packed key.
+     *
+     * @param symbol the symbol of the stock to search for, or null
+     * @param symbolKey the packed symbol, used when symbol is null
+     * @return a copy of the found stock, or null if not found
+     */
+    private Stock search(String symbol, long symbolKey) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                optimisticRetries.increment();
+                Thread.onSpinWait();
+                continue;
+            }
+            Stock found = (symbol != null) ? searchStockOptimistic(symbol) : searchStockOptimistic(symbolKey);
+            Stock copy = (found != null) ? new Stock(found) : null;
+            if (lock.validate(stamp)) {
+                return copy;
+            }
+            optimisticRetries.increment();
+        }
+
+        long stamp = readLock();
+        try {
+            Stock found = (symbol != null) ? super.searchStock(symbol) : super.searchStock(symbolKey);
+            return (found != null) ? new Stock(found) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Gets the number of stocks being managed.
+     *
+     * @return the number of stocks
+     */
+    @Override
+    public int size() {
+        long stamp = readLock();
+        try {
+            return super.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Replaces every managed stock with the given stocks.
+     *
+     * @param sorted the stocks in strictly ascending symbol order
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+     */
+    @Override
+    protected void load(Stock[] sorted) {
+        long stamp = writeLock();
+        try {
+            super.load(sorted);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Passes a copy of every stock to the given action in symbol order.
+     * The read lock is held for the whole traversal, so writers wait until it ends.
+     *
+     * @param action the action to perform on each stock
+     */
+    @Override
+    public void forEach(Consumer<Stock> action) {
+        long stamp = readLock();
+        try {
+            super.forEach(stock -> action.accept(new Stock(stock)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Passes a copy of every stock whose symbol lies between lo and hi, both inclusive,
+     * to the given action while holding the read lock.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @param action the action to perform on each stock in the range
+     */
+    @Override
+    public void forEachInRange(String lo, String hi, Consumer<Stock> action) {
+        long stamp = readLock();
+        try {
+            super.forEachInRange(lo, hi, stock -> action.accept(new Stock(stock)));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Creates a stream over copies of every stock, taken in symbol order while holding
+     * the read lock. The stream is consumed after the lock is released, so writers do not
+     * wait for it, and it does not see their changes.
+     *
+     * @param parallel whether the stream is parallel
+     * @return a stream of copies of the stocks
+     */
+    @Override
+    public Stream<Stock> stream(boolean parallel) {
+        List<Stock> copies = new ArrayList<>();
+        forEach(copies::add);
+        return parallel ? copies.parallelStream() : copies.stream();
+    }
+    /**
+     * Starts keeping the recent ticks of every stock while holding the write lock.
+     *
+     * @param capacity the number of ticks kept per stock
+     * @param smoothing the weight of a new tick in the exponential moving average, in (0, 1]
+     * @throws IllegalArgumentException if capacity is not positive or smoothing is out of range
+     */
+    @Override
+    public void enableTickHistory(int capacity, double smoothing) {
+        long stamp = writeLock();
+        try {
+            super.enableTickHistory(capacity, smoothing);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    /**
+     * Gets a copy of the tick history of a stock, taken while holding the read lock.
+     *
+     * @param symbol the symbol of the stock
+     * @return a copy of the tick history, or null if the stock is not found or has no ticks yet
+     */
+    @Override
+    public TickHistory getTickHistory(String symbol) {
+        long stamp = readLock();
+        try {
+            TickHistory history = super.getTickHistory(symbol);
+            return (history != null) ? new TickHistory(history) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Gets the number of stocks whose symbols are ordered before the given symbol.
+     *
+     * @param symbol the symbol to rank
+     * @return the rank of the symbol
+     */
+    @Override
+    public int rank(String symbol) {
+        long stamp = readLock();
+        try {
+            return super.rank(symbol);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Selects the stock with the given rank in symbol order.
+     *
+     * @param k the zero-based rank
+     * @return a copy of the stock with rank k, or null if k is out of range
+     */
+    @Override
+    public Stock select(int k) {
+        long stamp = readLock();
+        try {
+            Stock found = super.select(k);
+            return (found != null) ? new Stock(found) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Counts the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the number of stocks in the range
+     */
+    @Override
+    public int countRange(String lo, String hi) {
+        long stamp = readLock();
+        try {
+            return super.countRange(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Sums the market capitalization of the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the total market capitalization of the range
+     */
+    @Override
+    public long sumMarketCap(String lo, String hi) {
+        long stamp = readLock();
+        try {
+            return super.sumMarketCap(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Finds the lowest price of the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the lowest price, or NaN if the range is empty
+     */
+    @Override
+    public double minPrice(String lo, String hi) {
+        long stamp = readLock();
+        try {
+            return super.minPrice(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Finds the highest price of the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the highest price, or NaN if the range is empty
+     */
+    @Override
+    public double maxPrice(String lo, String hi) {
+        long stamp = readLock();
+        try {
+            return super.maxPrice(lo, hi);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Gets the k stocks with the highest values of an attribute, highest first.
+     *
+     * @param attribute the attribute to rank stocks by
+     * @param k the number of stocks to return
+     * @return copies of up to k stocks in descending attribute order
+     */
+    @Override
+    public List<Stock> topStocks(StockAttribute attribute, int k) {
+        long stamp = readLock();
+        try {
+            return copyOf(super.topStocks(attribute, k));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Gets the stocks whose values of an attribute lie between lo and hi, both inclusive.
+     *
+     * @param attribute the attribute to filter stocks by
+     * @param lo the lowest value of the range
+     * @param hi the highest value of the range
+     * @return copies of the stocks in the range, in ascending attribute order
+     */
+    @Override
+    public List<Stock> stocksInRange(StockAttribute attribute, double lo, double hi) {
+        long stamp = readLock();
+        try {
+            return copyOf(super.stocksInRange(attribute, lo, hi));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+    /**
+     * Gets the number of write locks taken so far.
+     *
+     * @return the number of write locks
+     */
+    public long getWriteLockCount() {
+        return writeLocks.sum();
+    }
+    /**
+     * Gets the number of write locks that were not free at once, so the writer had to wait.
+     *
+     * @return the number of contended write locks
+     */
+    public long getContendedWriteLockCount() {
+        return contendedWriteLocks.sum();
+    }
+    /**
+     * Gets the total time writers waited for the write lock.
+     *
+     * @return the waiting time in nanoseconds
+     */
+    public long getWriteWaitNanos() {
+        return writeWaitNanos.sum();
+    }
+    /**
+     * Gets the number of read locks taken so far, including the fallbacks of searches.
+     *
+     * @return the number of read locks
+     */
+    public long getReadLockCount() {
+        return readLocks.sum();
+    }
+    /**
+     * Gets the number of read locks that were not free at once, because a writer held or awaited the lock.
+     *
+     * @return the number of contended read locks
+     */
+    public long getContendedReadLockCount() {
+        return contendedReadLocks.sum();
+    }
+    /**
+     * Gets the total time readers waited for the read lock.
+     *
+     * @return the waiting time in nanoseconds
+     */
+    public long getReadWaitNanos() {
+        return readWaitNanos.sum();
+    }
+    /**
+     * Gets the number of optimistic searches that were discarded and retried because a writer held the lock
+     * or ran during the search.
+     *
+     * @return the number of optimistic retries
+     */
+    public long getOptimisticRetryCount() {
+        return optimisticRetries.sum();
+    }
+    /**
+     * Sets every lock counter back to 0, for example after a warm-up.
+     */
+    public void resetLockStatistics() {
+        writeLocks.reset();
+        contendedWriteLocks.reset();
+        writeWaitNanos.reset();
+        readLocks.reset();
+        contendedReadLocks.reset();
+        readWaitNanos.reset();
+        optimisticRetries.reset();
+    }
+    /**
+     * Takes the write lock and counts the acquisition, and the waiting time if the lock was not free.
+     *
+     * @return the stamp of the write lock
+     */
+    private long writeLock() {
+        writeLocks.increment();
+        long stamp = lock.tryWriteLock();
+        if (stamp == 0) {
+            long startTime = System.nanoTime();
+            stamp = lock.writeLock();
+            writeWaitNanos.add(System.nanoTime() - startTime);
+            contendedWriteLocks.increment();
+        }
+        return stamp;
+    }
+    /**
+     * Takes the read lock and counts the acquisition, and the waiting time if the lock was not free.
+     *
+     * @return the stamp of the read lock
+     */
+    private long readLock() {
+        readLocks.increment();
+        long stamp = lock.tryReadLock();
+        if (stamp == 0) {
+            long startTime = System.nanoTime();
+            stamp = lock.readLock();
+            readWaitNanos.add(System.nanoTime() - startTime);
+            contendedReadLocks.increment();
+        }
+        return stamp;
+    }
+    /**
+     * Copies every stock of a list.
+     *
+     * @param stocks the stocks to copy
+     * @return a new list holding copies of the stocks
+     */
+    private static List<Stock> copyOf(List<Stock> stocks) {
+        List<Stock> copies = new ArrayList<>(stocks.size());
+        for (Stock stock : stocks) {
+            copies.add(new Stock(stock));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+/**
+ * DurableStockDataManager class is a StockDataManager whose state survives restarts.
+ * Every add, update, and remove is appended to a write-ahead log (StockWal) before it is
+ * applied, and every so many modifications the whole tree is written to a snapshot
+ * (StockSnapshot) and the log is emptied. Both files live in one data directory.
+ *
+ * On startup the latest snapshot is loaded into a balanced tree in linear time and only the
+ * log records written after it are replayed, so restart time depends on the length of the
+ * log tail and not on the whole history. Log records are committed in groups; call
+ * {@link #sync()} to make every modification so far durable, and {@link #close()} when done.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class DurableStockDataManager extends StockDataManager implements AutoCloseable {
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String LOG_FILE = "wal.log";
+    private static final int DEFAULT_GROUP_SIZE = 256;
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 1_000_000;
+
+    private final Path snapshotFile;
+    private final StockWal wal;
+    private final long checkpointInterval;
+    private final StockCommand logged = new StockCommand(); // Reused for every log record
+    private long sequence; // Sequence number of the last logged modification
+    private long sinceCheckpoint;
+    private boolean replaying;
+    private final int recoveredStocks;
+    private long replayedRecords;
+    private final long recoveryNanos;
+    /**
+     * Opens the data directory and recovers the stocks stored in it,
+     * with the default group size and checkpoint interval.
+     *
+     * @param directory the data directory; it is created if it does not exist
+     * @throws IOException if the stored state cannot be read
+     */
+    public DurableStockDataManager(Path directory) throws IOException {
+        this(directory, false, DEFAULT_GROUP_SIZE, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+    /**
+     * Opens the data directory and recovers the stocks stored in it.
+     *
+     * @param directory the data directory; it is created if it does not exist
+     * @param secondaryIndexes whether to maintain secondary indexes
+     * @param groupSize the number of log records that are committed together
+     * @param checkpointInterval the number of modifications after which a snapshot is taken; 0 disables snapshots
+     * @throws IOException if the stored state cannot be read
+     * @throws IllegalArgumentException if groupSize is not positive or checkpointInterval is negative
+     */
+    public DurableStockDataManager(Path directory, boolean secondaryIndexes, int groupSize, long checkpointInterval) throws IOException {
+        super(secondaryIndexes);
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval must not be negative: " + checkpointInterval);
+        }
+        long startTime = System.nanoTime();
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.checkpointInterval = checkpointInterval;
+
+        if (Files.exists(snapshotFile)) {
+            StockSnapshot snapshot = StockSnapshot.read(snapshotFile);
+            load(snapshot.getStocks());
+            sequence = snapshot.getLastSequence();
+            recoveredStocks = snapshot.getStocks().length;
+        } else {
+            recoveredStocks = 0;
+        }
+
+        wal = new StockWal(directory.resolve(LOG_FILE), groupSize);
+        replaying = true;
+        try {
+            sequence = wal.replay(sequence, command -> {
+                command.applyTo(this);
+                replayedRecords++;
+            });
+        } catch (IOException | RuntimeException e) {
+            wal.close();
+            throw e;
+        } finally {
+            replaying = false;
+        }
+        sinceCheckpoint = replayedRecords;
+        recoveryNanos = System.nanoTime() - startTime;
+    }
+    /**
+     * Logs and then adds a new stock or updates an existing stock.
+     *
+     * @param symbol the stock symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public void addOrUpdateStock(String symbol, double price, long volume, long marketCap) {
+        log(StockCommand.Type.ADD, SymbolKey.encode(symbol), symbol, SymbolKey.FALLBACK, null, price, volume, marketCap);
+        super.addOrUpdateStock(symbol, price, volume, marketCap);
+        checkpointIfDue();
+    }
+    /**
+     * Logs and then adds a new stock or updates an existing stock by its packed symbol key.
+     *
+     * @param symbolKey the packed stock symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public void addOrUpdateStock(long symbolKey, double price, long volume, long marketCap) {
+        log(StockCommand.Type.ADD, symbolKey, null, SymbolKey.FALLBACK, null, price, volume, marketCap);
+        super.addOrUpdateStock(symbolKey, price, volume, marketCap);
+        checkpointIfDue();
+    }
+    /**
+     * Logs and then removes a stock.
+     *
+     * @param symbol the symbol of the stock to be removed
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public void removeStock(String symbol) {
+        log(StockCommand.Type.REMOVE, SymbolKey.encode(symbol), symbol, SymbolKey.FALLBACK, null, 0, 0, 0);
+        super.removeStock(symbol);
+        checkpointIfDue();
+    }
+    /**
+     * Logs and then removes a stock by its packed symbol key.
+     *
+     * @param symbolKey the packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public void removeStock(long symbolKey) {
+        log(StockCommand.Type.REMOVE, symbolKey, null, SymbolKey.FALLBACK, null, 0, 0, 0);
+        super.removeStock(symbolKey);
+        checkpointIfDue();
+    }
+    /**
+     * Logs and then updates an existing stock.
+     *
+     * @param symbol the current symbol of the stock
+     * @param newSymbol the new symbol of the stock
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public void updateStock(String symbol, String newSymbol, double newPrice, long newVolume, long newMarketCap) {
+        log(StockCommand.Type.UPDATE, SymbolKey.encode(symbol), symbol, SymbolKey.encode(newSymbol), newSymbol,
+                newPrice, newVolume, newMarketCap);
+        super.updateStock(symbol, newSymbol, newPrice, newVolume, newMarketCap);
+        checkpointIfDue();
+    }
+    /**
+     * Logs and then updates an existing stock by its packed symbol keys.
+     *
+     * @param symbolKey the current packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @param newSymbolKey the new packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public void updateStock(long symbolKey, long newSymbolKey, double newPrice, long newVolume, long newMarketCap) {
+        log(StockCommand.Type.UPDATE, symbolKey, null, newSymbolKey, null, newPrice, newVolume, newMarketCap);
+        super.updateStock(symbolKey, newSymbolKey, newPrice, newVolume, newMarketCap);
+        checkpointIfDue();
+    }
+    /**
+     * Replaces every stock with stocks that are already sorted by symbol and saves them
+     * as a new snapshot, instead of logging one record per stock.
+     *
+     * @param sorted an iterator over the stocks in strictly ascending symbol order
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+     * @throws UncheckedIOException if the snapshot cannot be written
+     */
+    @Override
+    public void bulkLoad(Iterator<Stock> sorted) {
+        super.bulkLoad(sorted);
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    /**
+     * Makes every modification so far durable by committing the pending log records.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void sync() throws IOException {
+        wal.commit();
+    }
+    /**
+     * Writes every stock to a new snapshot and empties the log.
+     *
+     * @throws IOException if the snapshot or the log cannot be written
+     */
+    public void checkpoint() throws IOException {
+        StockSnapshot.write(snapshotFile, sequence, this);
+        wal.reset();
+        sinceCheckpoint = 0;
+    }
+    /**
+     * Gets the number of stocks loaded from the snapshot at startup.
+     *
+     * @return the number of recovered stocks
+     */
+    public int getRecoveredStocks() {
+        return recoveredStocks;
+    }
+    /**
+     * Gets the number of log records replayed on top of the snapshot at startup.
+     *
+     * @return the number of replayed records
+     */
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+    /**
+     * Gets the time the recovery at startup took.
+     *
+     * @return the recovery time in nanoseconds
+     */
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+    /**
+     * Gets the sequence number of the last logged modification.
+     *
+     * @return the last sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    /**
+     * Gets the number of times the log has been forced to disk.
+     *
+     * @return the number of log commits
+     */
+    public long getSyncCount() {
+        return wal.getSyncCount();
+    }
+    /**
+     * Commits the pending log records and closes the log.
+     *
+     * @throws IOException if the log cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        wal.close();
+    }
+    /**
+     * Appends a modification to the log, unless it is being replayed from the log.
+     *
+     * @param type the command type
+     * @param symbolKey the packed (current) symbol
+     * @param symbol the (current) symbol, required if symbolKey is {@link SymbolKey#FALLBACK}
+     * @param newSymbolKey the packed new symbol for UPDATE
+     * @param newSymbol the new symbol, required if newSymbolKey is {@link SymbolKey#FALLBACK} for UPDATE
+     * @param price the (new) price
+     * @param volume the (new) volume
+     * @param marketCap the (new) market capitalization
+     * @throws IllegalArgumentException if a fallback key is given without its symbol
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    private void log(StockCommand.Type type, long symbolKey, String symbol, long newSymbolKey, String newSymbol,
+                     double price, long volume, long marketCap) {
+        if (replaying) {
+            return;
+        }
+        boolean packed = SymbolKey.isPacked(symbolKey);
+        boolean newPacked = type != StockCommand.Type.UPDATE || SymbolKey.isPacked(newSymbolKey);
+        if ((!packed && symbol == null) || (!newPacked && newSymbol == null)) {
+            throw new IllegalArgumentException("Fallback keys cannot be used without their symbol");
+        }
+        logged.set(type, symbolKey, packed ? null : symbol, newSymbolKey, newPacked ? null : newSymbol, price, volume, marketCap);
+        try {
+            wal.append(sequence + 1, logged);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        sequence++;
+    }
+    /**
+     * Takes a snapshot once checkpointInterval modifications have been logged since the last one.
+     *
+     * @throws UncheckedIOException if the snapshot cannot be written
+     */
+    private void checkpointIfDue() {
+        if (replaying || checkpointInterval == 0 || ++sinceCheckpoint < checkpointInterval) {
+            return;
+        }
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
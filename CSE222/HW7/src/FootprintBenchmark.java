@@ -0,0 +1,126 @@
+import java.util.Random;
+/**
+ * FootprintBenchmark class for comparing the heap taken by a StockDataManager on the AVL engine
+ * with the heap taken by a ColumnarStockStore holding the same stocks. For each size it loads
+ * the stocks in random order, measures the used heap after garbage collection, and prints the
+ * bytes per stock and the load time of both. The collector is asked to run several times, so
+ * the measurement is approximate but stable for large sizes.
+ * Large sizes need a larger heap, for example {@code java -Xmx12g FootprintBenchmark 50000000}.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class FootprintBenchmark {
+    private static final int GC_ROUNDS = 5;
+    private static final long SEED = 42;
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional store sizes (default 1,000,000)
+     */
+    public static void main(String[] args) {
+        int[] sizes = {1000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+    /**
+     * Creates shuffled symbol keys of the given count and measures both stores holding them.
+     *
+     * @param size the number of stocks
+     */
+    private static void run(int size) {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = keyOf(i);
+        }
+        Random random = new Random(SEED);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+
+        System.out.println("Stocks: " + size);
+        measureManager(keys);
+        measureColumnar(keys);
+    }
+    /**
+     * Loads the stocks into a StockDataManager and prints its footprint and load time.
+     * The manager is unreachable once this method returns, so it does not distort the next measurement.
+     *
+     * @param keys the packed symbols of the stocks
+     */
+    private static void measureManager(long[] keys) {
+        long baseline = usedHeap();
+        long startTime = System.nanoTime();
+        StockDataManager manager = new StockDataManager();
+        for (int i = 0; i < keys.length; i++) {
+            manager.addOrUpdateStock(keys[i], 10 + i % 990, 100000 + i, 1000000 + i);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        report("StockDataManager", usedHeap() - baseline, keys.length, elapsed, manager.size());
+    }
+    /**
+     * Loads the stocks into a ColumnarStockStore and prints its footprint and load time.
+     *
+     * @param keys the packed symbols of the stocks
+     */
+    private static void measureColumnar(long[] keys) {
+        long baseline = usedHeap();
+        long startTime = System.nanoTime();
+        ColumnarStockStore store = new ColumnarStockStore(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            store.put(keys[i], 10 + i % 990, 100000 + i, 1000000 + i);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        report("ColumnarStockStore", usedHeap() - baseline, keys.length, elapsed, store.size());
+    }
+    /**
+     * Prints the footprint and load time of one store.
+     *
+     * @param name the name of the store
+     * @param bytes the heap taken by the store
+     * @param size the number of stocks loaded
+     * @param elapsed the load time, in nanoseconds
+     * @param stored the number of stocks the store reports, which keeps it reachable until it is measured
+     */
+    private static void report(String name, long bytes, int size, long elapsed, int stored) {
+        System.out.printf("  %-20s %8.1f MB %7.1f bytes/stock %10.1f ms to load %d stocks%n", name, bytes / 1e6,
+                (double) bytes / size, elapsed / 1e6, stored);
+    }
+    /**
+     * Runs the garbage collector a few times and measures the used heap.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    /**
+     * Creates the packed key of the symbol with the given index. Symbols have six letters,
+     * which is enough for more than 300 million distinct symbols.
+     *
+     * @param index the index of the symbol
+     * @return the packed symbol
+     */
+    private static long keyOf(int index) {
+        char[] letters = new char[6];
+        for (int i = letters.length - 1; i >= 0; i--) {
+            letters[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return SymbolKey.encode(new String(letters));
+    }
+}
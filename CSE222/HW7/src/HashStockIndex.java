@@ -0,0 +1,216 @@
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+/**
+ * HashStockIndex class stores stocks in an open-addressing hash table keyed by packed symbols.
+ * Keys and stocks live in two parallel arrays and collisions are resolved by linear probing,
+ * so a lookup usually reads one or two adjacent slots and never allocates. Deleted entries are
+ * removed by shifting later entries of the probe run back, so no tombstones accumulate.
+ *
+ * The table is unordered: iteration and range queries visit every slot, so this index suits
+ * workloads of lookups and updates that do not need symbol order.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class HashStockIndex extends AbstractStockIndex {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L; // Multiplier for Fibonacci hashing
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Stock[] stocks = new Stock[INITIAL_CAPACITY]; // A slot is in use when its stock is not null
+    private int size;
+    /**
+     * Searches for a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found
+     */
+    @Override
+    protected Stock searchPacked(long key) {
+        int slot = find(key);
+        return (slot >= 0) ? stocks[slot] : null;
+    }
+    /**
+     * Searches for a stock by its packed key while a writer may be modifying the table.
+     * The arrays are read once, the probe is limited to the shorter of them, and it gives up
+     * after visiting every slot, so a torn read can give a wrong answer but never an exception.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found or the search gave up
+     */
+    @Override
+    protected Stock searchPackedOptimistic(long key) {
+        long[] keys = this.keys;
+        Stock[] stocks = this.stocks;
+        int length = Math.min(keys.length, stocks.length);
+        int mask = length - 1;
+        int slot = home(key, length);
+        for (int probes = 0; probes < length; probes++) {
+            Stock stock = stocks[slot];
+            if (stock == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                return stock;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+    /**
+     * Computes a new stock for a packed key.
+     *
+     * @param key a packed symbol
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the key, or null if there is none
+     */
+    @Override
+    protected Stock computePacked(long key, BiFunction<String, Stock, Stock> remappingFunction) {
+        int slot = find(key);
+        if (slot >= 0) {
+            Stock updated = remappingFunction.apply(stocks[slot].getSymbol(), stocks[slot]);
+            if (updated == null) {
+                removeAt(slot);
+            } else {
+                stocks[slot] = updated;
+            }
+            return updated;
+        }
+
+        Stock created = remappingFunction.apply(SymbolKey.decode(key), null);
+        if (created == null) {
+            return null;
+        }
+        if (size + 1 > stocks.length / 2) {
+            resize(stocks.length * 2);
+            slot = find(key);
+        }
+        slot = -slot - 1;
+        keys[slot] = key;
+        stocks[slot] = created;
+        size++;
+        return created;
+    }
+    /**
+     * Deletes a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the removed stock, or null if no stock has the key
+     */
+    @Override
+    protected Stock deletePacked(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        Stock removed = stocks[slot];
+        removeAt(slot);
+        return removed;
+    }
+    /**
+     * Gets the number of stocks stored under packed keys.
+     *
+     * @return the number of stocks
+     */
+    @Override
+    protected int packedSize() {
+        return size;
+    }
+    /**
+     * Passes every stock whose key lies in a range to the given action, in slot order.
+     *
+     * @param lo the lowest key of the range, inclusive
+     * @param hi the highest key of the range, inclusive
+     * @param action the action to perform on each stock
+     */
+    @Override
+    protected void forEachPacked(long lo, long hi, Consumer<Stock> action) {
+        for (int slot = 0; slot < stocks.length; slot++) {
+            if (stocks[slot] != null && keys[slot] >= lo && keys[slot] <= hi) {
+                action.accept(stocks[slot]);
+            }
+        }
+    }
+    /**
+     * Reports that the stocks are not visited in symbol order.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isOrdered() {
+        return false;
+    }
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key a packed symbol
+     * @return the slot holding the key, or (-(free slot) - 1) for the free slot where the probe ended
+     */
+    private int find(long key) {
+        int mask = stocks.length - 1;
+        int slot = home(key, stocks.length);
+        while (stocks[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+    /**
+     * Removes the entry of a slot and shifts back the later entries of its probe run
+     * that would otherwise no longer be found.
+     *
+     * @param slot the slot to empty
+     */
+    private void removeAt(int slot) {
+        int mask = stocks.length - 1;
+        int hole = slot;
+        stocks[hole] = null;
+        size--;
+        for (int next = (hole + 1) & mask; stocks[next] != null; next = (next + 1) & mask) {
+            int home = home(keys[next], stocks.length);
+            if (((next - home) & mask) >= ((next - hole) & mask)) { // The hole lies on the probe path of the entry
+                keys[hole] = keys[next];
+                stocks[hole] = stocks[next];
+                stocks[next] = null;
+                hole = next;
+            }
+        }
+    }
+    /**
+     * Moves every entry into new arrays of the given capacity.
+     *
+     * @param capacity the new capacity, a power of two
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Stock[] oldStocks = stocks;
+        long[] newKeys = new long[capacity];
+        Stock[] newStocks = new Stock[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldStocks.length; i++) {
+            if (oldStocks[i] != null) {
+                int slot = home(oldKeys[i], capacity);
+                while (newStocks[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[slot] = oldKeys[i];
+                newStocks[slot] = oldStocks[i];
+            }
+        }
+        keys = newKeys;
+        stocks = newStocks;
+    }
+    /**
+     * Gets the first slot probed for a key. Fibonacci hashing spreads the packed keys,
+     * whose low bits are often 0 for short symbols, over the whole table.
+     *
+     * @param key a packed symbol
+     * @param capacity the capacity of the table, a power of two
+     * @return the home slot of the key
+     */
+    private static int home(long key, int capacity) {
+        return (int) ((key * GOLDEN_RATIO) >>> (64 - Integer.numberOfTrailingZeros(capacity)));
+    }
+}
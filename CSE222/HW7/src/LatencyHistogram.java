@@ -0,0 +1,152 @@
+import java.util.Arrays;
+/**
+ * LatencyHistogram class counts recorded latencies in a fixed array of log-linear buckets.
+ * Values below 128 get a bucket each; above that, every power of two is split into 64
+ * buckets, so any value is reported with a relative error below 1/64 (about 1.6%).
+ * The whole range of long values fits into 3712 buckets, so recording never allocates,
+ * and memory does not grow with the number of samples.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Buckets per power of two
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; // Values below this have a bucket each
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    /**
+     * Records one latency.
+     *
+     * @param value the latency, usually in nanoseconds; negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+    /**
+     * Adds every latency recorded by another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+    /**
+     * Removes every recorded latency.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+    /**
+     * Gets the value below or at which the given percentage of the recorded latencies lie.
+     * The result is the upper end of the bucket holding that latency, but never more than the maximum.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the latency at the percentile, or 0 if nothing was recorded
+     * @throws IllegalArgumentException if percentile is outside 0 to 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(Math.max(highestValueOf(i), min), max);
+            }
+        }
+        return max;
+    }
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return the count
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+    /**
+     * Gets the smallest recorded latency.
+     *
+     * @return the minimum, or 0 if nothing was recorded
+     */
+    public long getMin() {
+        return (totalCount == 0) ? 0 : min;
+    }
+    /**
+     * Gets the largest recorded latency.
+     *
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return (totalCount == 0) ? 0 : max;
+    }
+    /**
+     * Gets the mean of the recorded latencies.
+     *
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        return (totalCount == 0) ? 0 : (double) sum / totalCount;
+    }
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value a non-negative value
+     * @return the index of its bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS; // Keeps the top 7 bits
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+    /**
+     * Gets the largest value that falls into a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the upper end of the bucket
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long mantissa = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        long highest = ((mantissa + 1) << shift) - 1;
+        return (highest < 0) ? Long.MAX_VALUE : highest;
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+/**
+ * LatencyRecorder class records the latency of every applied command into one LatencyHistogram
+ * per command type, so recording millions of commands needs no more memory than recording a few.
+ * It prints the 50th, 90th, 99th, and 99.9th percentiles and the maximum of each type.
+ *
+ * It can also write a time series to a CSV file: after every window of commands, one row per
+ * command type seen in that window, with the tree size and the percentiles of that window only.
+ * The rows are written as the commands are recorded, so no samples are kept for the file either.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class LatencyRecorder implements AutoCloseable {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String CSV_HEADER = "commands,type,size,count,p50_ns,p90_ns,p99_ns,p999_ns,max_ns";
+    private static final int DEFAULT_WINDOW_SIZE = 1000;
+
+    private final StockCommand.Type[] types = StockCommand.Type.values();
+    private final LatencyHistogram[] totals = new LatencyHistogram[types.length];
+    private final LatencyHistogram[] windows;
+    private final BufferedWriter csv;
+    private final int windowSize;
+    private long commandCount;
+    private int size;
+    /**
+     * Constructs a new LatencyRecorder that only keeps the totals.
+     */
+    public LatencyRecorder() {
+        for (int i = 0; i < types.length; i++) {
+            totals[i] = new LatencyHistogram();
+        }
+        this.windows = null;
+        this.csv = null;
+        this.windowSize = 0;
+    }
+    /**
+     * Constructs a new LatencyRecorder that also writes a time series to a CSV file,
+     * with one window per 1000 commands.
+     *
+     * @param csvFile the CSV file; it is replaced if it exists
+     * @throws IOException if the file cannot be created
+     */
+    public LatencyRecorder(Path csvFile) throws IOException {
+        this(csvFile, DEFAULT_WINDOW_SIZE);
+    }
+    /**
+     * Constructs a new LatencyRecorder that also writes a time series to a CSV file.
+     *
+     * @param csvFile the CSV file; it is replaced if it exists
+     * @param windowSize the number of commands summarized by each group of rows
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if windowSize is not positive
+     */
+    public LatencyRecorder(Path csvFile, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        for (int i = 0; i < types.length; i++) {
+            totals[i] = new LatencyHistogram();
+        }
+        this.windows = new LatencyHistogram[types.length];
+        for (int i = 0; i < types.length; i++) {
+            windows[i] = new LatencyHistogram();
+        }
+        this.windowSize = windowSize;
+        this.csv = Files.newBufferedWriter(csvFile, StandardCharsets.US_ASCII);
+        csv.write(CSV_HEADER);
+        csv.newLine();
+    }
+    /**
+     * Records the latency of one applied command.
+     *
+     * @param type the type of the command
+     * @param nanos the time the command took, in nanoseconds
+     * @param size the number of stocks after the command
+     * @throws IOException if a row of the time series cannot be written
+     */
+    public void record(StockCommand.Type type, long nanos, int size) throws IOException {
+        totals[type.ordinal()].record(nanos);
+        this.size = size;
+        commandCount++;
+        if (csv != null) {
+            windows[type.ordinal()].record(nanos);
+            if (commandCount % windowSize == 0) {
+                writeWindow();
+            }
+        }
+    }
+    /**
+     * Gets the histogram of every latency recorded for a command type.
+     *
+     * @param type the command type
+     * @return the histogram of the type
+     */
+    public LatencyHistogram getHistogram(StockCommand.Type type) {
+        return totals[type.ordinal()];
+    }
+    /**
+     * Gets the number of recorded commands.
+     *
+     * @return the number of commands
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+    /**
+     * Prints a table with the count, the percentiles, and the maximum of each command type in microseconds.
+     *
+     * @param out the stream to print to
+     */
+    public void printReport(PrintStream out) {
+        out.printf("%-8s %10s %10s %10s %10s %10s %10s%n", "Type", "Count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (int i = 0; i < types.length; i++) {
+            LatencyHistogram histogram = totals[i];
+            out.printf("%-8s %10d", types[i], histogram.getTotalCount());
+            for (double percentile : PERCENTILES) {
+                out.printf(" %10.3f", histogram.getValueAtPercentile(percentile) / 1e3);
+            }
+            out.printf(" %10.3f%n", histogram.getMax() / 1e3);
+        }
+    }
+    /**
+     * Writes the rows of the last, possibly incomplete, window and closes the CSV file.
+     *
+     * @throws IOException if the file cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (csv != null) {
+            if (commandCount % windowSize != 0) {
+                writeWindow();
+            }
+            csv.close();
+        }
+    }
+    /**
+     * Writes one row for every command type recorded in the current window and starts a new window.
+     *
+     * @throws IOException if the rows cannot be written
+     */
+    private void writeWindow() throws IOException {
+        for (int i = 0; i < types.length; i++) {
+            LatencyHistogram window = windows[i];
+            if (window.getTotalCount() == 0) {
+                continue;
+            }
+            StringBuilder row = new StringBuilder(64);
+            row.append(commandCount).append(',').append(types[i]).append(',').append(size)
+                    .append(',').append(window.getTotalCount());
+            for (double percentile : PERCENTILES) {
+                row.append(',').append(window.getValueAtPercentile(percentile));
+            }
+            row.append(',').append(window.getMax());
+            csv.write(row.toString());
+            csv.newLine();
+            window.reset();
+        }
+    }
+}
@@ -1,9 +1,9 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 /**
  * Main class for the Stock Data Management System.
  * It reads commands from an input file, processes them, and performs performance analysis.
@@ -12,201 +12,356 @@ import java.util.List;
  * @version 1.0
  */
 public class Main {
+    private static final int PNG_WIDTH = 800;
+    private static final int PNG_HEIGHT = 600;
     /**
      *
-     * This method checks for the correct number of arguments and initializes the StockDataManager.
+     * This method checks the arguments and initializes the StockDataManager.
      * It reads commands from the specified input file, processes each command, and performs performance analysis.
+     * With --shards N, the commands are instead replayed in parallel on N shards and only a summary is printed.
+     * With --pipeline, parsing and applying run on separate threads and a summary of both stages is printed
+     * after the usual output.
+     * With --data DIR, the stocks are recovered from DIR before the commands are applied and saved there afterwards.
+     * With --report, the performance analysis prints latency percentiles instead of opening graph windows,
+     * so it also runs without a display; --csv FILE additionally writes a latency time series to FILE.
+     * With --png DIR, the graphs are written to PNG files in DIR instead of being shown in windows.
+     * With --engine NAME, the stocks are kept in the named {@link StockIndex.Engine} (avl, bplus, skiplist,
+     * or hash) instead of the AVL tree; this works with every mode except --shards and --data.
+     * With --filter, a {@link SymbolFilter} rejects commands on unknown symbols before the index is searched,
+     * and its counters are printed after the commands; this also works with every mode except --shards and --data.
+     * With --cache N, up to N found stocks are kept in a {@link StockCache} in front of the index, and its hit ratio
+     * is printed after the commands, in the same modes.
      *
-     * @param args the input file containing stock management commands.
+     * @param args optional flags followed by the input file containing stock management commands.
      */
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java Main <input_file>");
+        Options options = Options.parse(args);
+        if (options == null) {
+            System.out.println("Usage: java Main [--shards N | --pipeline | --data DIR | [--report] [--csv FILE] [--png DIR]] [--engine NAME] [--filter] [--cache N] <input_file>");
             return;
         }
 
-        String inputFile = args[0];
-        StockDataManager manager = new StockDataManager();
-        List<String> commands = new ArrayList<>();
+        if (options.shards > 0) {
+            replaySharded(options.inputFile, options.shards);
+            return;
+        }
+        if (options.pipeline) {
+            replayPipelined(options.inputFile, options);
+            return;
+        }
+        if (options.dataDirectory != null) {
+            replayDurable(options.inputFile, options.dataDirectory);
+            return;
+        }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                commands.add(line);
-                processCommand(line, manager);
+        String inputFile = options.inputFile;
+        StockDataManager manager = options.createManager();
+        StockCommand command = new StockCommand();
+
+        try (CommandFileParser parser = new CommandFileParser(Paths.get(inputFile))) {
+            while (parser.next(command)) {
+                processCommand(command, manager);
             }
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
+        printCounters(manager);
 
-        performPerformanceAnalysis(commands);
+        performPerformanceAnalysis(options);
+    }
+    /**
+     * Replays a command file in parallel on a ShardedStockDataManager and prints a summary.
+     * Commands for the same symbol keep their file order. SEARCH results are counted instead of printed,
+     * because the shards finish in no particular order.
+     *
+     * @param inputFile the file containing stock management commands.
+     * @param shardCount the number of shards to use.
+     */
+    private static void replaySharded(String inputFile, int shardCount) {
+        long commandCount = 0;
+        long startTime = System.nanoTime();
+        StockCommand command = new StockCommand();
+        try (ShardedStockDataManager manager = new ShardedStockDataManager(shardCount);
+             CommandFileParser parser = new CommandFileParser(Paths.get(inputFile))) {
+            while (parser.next(command)) {
+                manager.submit(command.copy());
+                commandCount++;
+            }
+            manager.awaitCompletion();
+            long elapsed = System.nanoTime() - startTime;
+            System.out.printf("Applied %d commands on %d shards in %.1f ms (%.0f commands/s)%n",
+                    commandCount, shardCount, elapsed / 1e6, commandCount / (elapsed / 1e9));
+            System.out.println("Stocks: " + manager.size() + ", SEARCH found: " + manager.getSearchHits()
+                    + ", not found: " + manager.getSearchMisses());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Replays a command file with a PipelinedIngest, printing SEARCH results as usual,
+     * and prints the throughput of the parse and apply stages.
+     *
+     * @param inputFile the file containing stock management commands.
+     * @param options the parsed options, which configure the manager.
+     */
+    private static void replayPipelined(String inputFile, Options options) {
+        StockDataManager manager = options.createManager();
+        PipelinedIngest ingest = new PipelinedIngest(manager);
+        long startTime = System.nanoTime();
+        try {
+            long commandCount = ingest.replay(Paths.get(inputFile), Main::printResult);
+            long elapsed = System.nanoTime() - startTime;
+            System.out.printf("Applied %d commands in a pipeline in %.1f ms (%.0f commands/s)%n",
+                    commandCount, elapsed / 1e6, commandCount / (elapsed / 1e9));
+            System.out.println(ingest.getParseStage());
+            System.out.println(ingest.getApplyStage());
+            printCounters(manager);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Recovers the stocks saved in a data directory, applies a command file on top of them,
+     * printing SEARCH results as usual. The modifications are kept in the write-ahead log
+     * of the directory, so the next run only has to replay them on top of the last snapshot.
+     *
+     * @param inputFile the file containing stock management commands.
+     * @param dataDirectory the directory holding the snapshot and the write-ahead log.
+     */
+    private static void replayDurable(String inputFile, String dataDirectory) {
+        StockCommand command = new StockCommand();
+        try (DurableStockDataManager manager = new DurableStockDataManager(Paths.get(dataDirectory));
+             CommandFileParser parser = new CommandFileParser(Paths.get(inputFile))) {
+            System.out.printf("Recovered %d stocks from the snapshot and %d log records in %.1f ms%n",
+                    manager.getRecoveredStocks(), manager.getReplayedRecords(), manager.getRecoveryNanos() / 1e6);
+            while (parser.next(command)) {
+                processCommand(command, manager);
+            }
+            manager.sync();
+            System.out.println("Saved " + manager.size() + " stocks to " + dataDirectory);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Prints the counters of the symbol filter and the search cache of a manager, if they are enabled.
+     *
+     * @param manager the manager whose counters to print.
+     */
+    private static void printCounters(StockDataManager manager) {
+        if (manager.getSymbolFilter() != null) {
+            System.out.println(manager.getSymbolFilter());
+        }
+        if (manager.getSearchCache() != null) {
+            System.out.println(manager.getSearchCache());
+        }
     }
     /**
-     * Processes a single command line.
-     * This method parses the command line to determine the type of operation (ADD, REMOVE, SEARCH, UPDATE)
-     * and calls the appropriate method on the StockDataManager instance to perform the operation.
+     * Processes a single parsed command.
+     * This method calls the appropriate method on the StockDataManager instance for the
+     * type of operation (ADD, REMOVE, SEARCH, UPDATE) and prints the result of a SEARCH.
      *
-     * @param line the command line to process.
+     * @param command the command to process.
      * @param manager the StockDataManager instance to manage stocks.
      */
-    private static void processCommand(String line, StockDataManager manager) {
-        String[] tokens = line.split(" ");
-        String command = tokens[0];
-
-        switch (command) {
-            case "ADD":
-                if (tokens.length != 5) {
-                    System.out.println("ADD command requires symbol, price, volume, and marketCap parameters.");
-                    return;
-                }
-                try {
-                    double price = Double.parseDouble(tokens[2]);
-                    long volume = Long.parseLong(tokens[3]);
-                    long marketCap = Long.parseLong(tokens[4]);
-                    manager.addOrUpdateStock(tokens[1], price, volume, marketCap);
-                } catch (NumberFormatException e) {
-                    System.out.println("Invalid parameters for ADD command. Price, volume, and marketCap must be numbers.");
-                }
-                break;
-            case "REMOVE":
-                if (tokens.length != 2) {
-                    System.out.println("REMOVE command requires symbol parameter.");
-                    return;
-                }
-                manager.removeStock(tokens[1]);
-                break;
-            case "SEARCH":
-                if (tokens.length != 2) {
-                    System.out.println("SEARCH command requires symbol parameter.");
-                    return;
-                }
-                Stock stock = manager.searchStock(tokens[1]);
-                if (stock != null) {
-                    System.out.println(stock);
-                } else {
-                    System.out.println("Stock not found: " + tokens[1]);
-                }
-                break;
-            case "UPDATE":
-                if (tokens.length != 6) {
-                    System.out.println("UPDATE command requires old symbol, new symbol, new price, new volume, and new marketCap parameters.");
-                    return;
-                }
-                try {
-                    double newPrice = Double.parseDouble(tokens[3]);
-                    long newVolume = Long.parseLong(tokens[4]);
-                    long newMarketCap = Long.parseLong(tokens[5]);
-                    manager.updateStock(tokens[1], tokens[2], newPrice, newVolume, newMarketCap);
-                } catch (NumberFormatException e) {
-                    System.out.println("Invalid parameters for UPDATE command. New price, new volume, and new marketCap must be numbers.");
-                }
-                break;
-            default:
-                System.out.println("Unknown command: " + command);
-                break;
+    private static void processCommand(StockCommand command, StockDataManager manager) {
+        printResult(command, command.applyTo(manager));
+    }
+    /**
+     * Prints the result of a SEARCH command. Other commands print nothing.
+     *
+     * @param command the applied command.
+     * @param stock the stock found by a SEARCH, or null.
+     */
+    private static void printResult(StockCommand command, Stock stock) {
+        if (command.getType() == StockCommand.Type.SEARCH) {
+            if (stock != null) {
+                System.out.println(stock);
+            } else {
+                System.out.println("Stock not found: " + command.getSymbol());
+            }
         }
     }
     /**
      * Performs performance analysis for each operation.
-     * This method measures the time taken for ADD, REMOVE, SEARCH, and UPDATE operations.
-     * It collects the time taken for each operation and the size of the AVL tree.
-     * The collected data is then visualized using GUIVisualization for each operation type.
+     * This method measures the time taken for ADD, REMOVE, SEARCH, and UPDATE operations
+     * and records it in one latency histogram per operation type.
+     * Unless only a headless report is requested, it also collects the time taken for each operation
+     * and the size of the AVL tree in primitive arrays, and plots them for each operation type,
+     * either in GUIVisualization windows or, with a PNG directory, into PNG files.
+     *
+     * The command file is parsed a second time, without reporting invalid lines again,
+     * so the commands do not have to be kept in memory.
      *
-     * @param commands the list of commands to process.
+     * @param options the parsed options, with the file containing the commands to process.
      */
-    private static void performPerformanceAnalysis(List<String> commands) {
-        List<Integer> addDataPointsX = new ArrayList<>();
-        List<Long> addTimes = new ArrayList<>();
-
-        List<Integer> searchDataPointsX = new ArrayList<>();
-        List<Long> searchTimes = new ArrayList<>();
-
-        List<Integer> removeDataPointsX = new ArrayList<>();
-        List<Long> removeTimes = new ArrayList<>();
-
-        List<Integer> updateDataPointsX = new ArrayList<>();
-        List<Long> updateTimes = new ArrayList<>();
+    private static void performPerformanceAnalysis(Options options) {
+        StockCommand.Type[] types = StockCommand.Type.values();
+        boolean plot = !options.report || options.pngDirectory != null;
+        Samples[] samples = new Samples[types.length];
+        for (int i = 0; i < types.length; i++) {
+            samples[i] = new Samples();
+        }
 
-        StockDataManager manager = new StockDataManager();
+        StockDataManager manager = options.createManager();
+        StockCommand command = new StockCommand();
         long startTime, endTime;
         int currentSize = 0;
 
-        for (String command : commands) {
-            String[] tokens = command.split(" ");
-            if (tokens.length < 2) {
-                System.out.println("Invalid command: " + command);
-                continue;
-            }
-            switch (tokens[0]) {
-                case "ADD":
-                    if (tokens.length != 5) {
-                        System.out.println("Invalid ADD command: " + command);
-                        continue;
-                    }
-                    startTime = System.nanoTime();
-                    manager.addOrUpdateStock(tokens[1], Double.parseDouble(tokens[2]), Long.parseLong(tokens[3]), Long.parseLong(tokens[4]));
-                    endTime = System.nanoTime();
-                    addTimes.add(endTime - startTime);
-                    currentSize++;
-                    addDataPointsX.add(currentSize);
-                    break;
-
-                case "SEARCH":
-                    if (tokens.length != 2) {
-                        System.out.println("Invalid REMOVE command: " + command);
-                        continue;
-                    }
-                    startTime = System.nanoTime();
-                    manager.searchStock(tokens[1]);
-                    endTime = System.nanoTime();
-                    searchTimes.add(endTime - startTime);
-                    searchDataPointsX.add(currentSize);
-                    break;
+        try (LatencyRecorder recorder = (options.csvFile != null) ? new LatencyRecorder(Paths.get(options.csvFile)) : new LatencyRecorder();
+             CommandFileParser parser = new CommandFileParser(Paths.get(options.inputFile), false)) {
+            while (parser.next(command)) {
+                startTime = System.nanoTime();
+                command.applyTo(manager);
+                endTime = System.nanoTime();
 
-                case "REMOVE":
-                    if (tokens.length != 2) {
-                        System.out.println("Invalid SEARCH command: " + command);
-                        continue;
-                    }
-                    startTime = System.nanoTime();
-                    manager.removeStock(tokens[1]);
-                    endTime = System.nanoTime();
-                    removeTimes.add(endTime - startTime);
-                    if (currentSize > 0) {
-                        currentSize--;
-                    }
-                    removeDataPointsX.add(currentSize);
-                    break;
+                if (command.getType() == StockCommand.Type.ADD) {
+                    currentSize++;
+                } else if (command.getType() == StockCommand.Type.REMOVE && currentSize > 0) {
+                    currentSize--;
+                }
+                recorder.record(command.getType(), endTime - startTime, currentSize);
+                if (plot) {
+                    samples[command.getType().ordinal()].add(currentSize, endTime - startTime);
+                }
+            }
+            if (options.report) {
+                recorder.printReport(System.out);
+            }
+            if (options.csvFile != null) {
+                System.out.println("Latency time series written to " + options.csvFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!plot) {
+            return;
+        }
 
-                case "UPDATE":
-                    if (tokens.length != 6) {
-                        System.out.println("Invalid UPDATE command: " + command);
-                        continue;
-                    }
-                    startTime = System.nanoTime();
-                    manager.updateStock(tokens[1], tokens[2], Double.parseDouble(tokens[3]), Long.parseLong(tokens[4]), Long.parseLong(tokens[5]));
-                    endTime = System.nanoTime();
-                    updateTimes.add(endTime - startTime);
-                    updateDataPointsX.add(currentSize);
-                    break;
-                default:
-                    System.out.println("Unknown command: " + command);
-                    break;
+        PlotRenderer[] renderers = new PlotRenderer[types.length];
+        for (int i = 0; i < types.length; i++) {
+            renderers[i] = new PlotRenderer("line", types[i] + " Operation Performance",
+                    samples[i].dataPointsX, samples[i].times, samples[i].size);
+        }
+        if (options.pngDirectory != null) {
+            try {
+                Path directory = Files.createDirectories(Paths.get(options.pngDirectory));
+                for (int i = 0; i < types.length; i++) {
+                    Path file = directory.resolve(types[i].name().toLowerCase() + ".png");
+                    renderers[i].writePng(file, PNG_WIDTH, PNG_HEIGHT);
+                    System.out.println("Plot written to " + file);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+            return;
         }
 
         SwingUtilities.invokeLater(() -> {
-            GUIVisualization addGraph = new GUIVisualization("line", "ADD Operation Performance", addDataPointsX, addTimes);
-            addGraph.setVisible(true);
-
-            GUIVisualization searchGraph = new GUIVisualization("line", "SEARCH Operation Performance", searchDataPointsX, searchTimes);
-            searchGraph.setVisible(true);
-
-            GUIVisualization removeGraph = new GUIVisualization("line", "REMOVE Operation Performance", removeDataPointsX, removeTimes);
-            removeGraph.setVisible(true);
-
-            GUIVisualization updateGraph = new GUIVisualization("line", "UPDATE Operation Performance", updateDataPointsX, updateTimes);
-            updateGraph.setVisible(true);
+            for (StockCommand.Type type : new StockCommand.Type[] {StockCommand.Type.ADD, StockCommand.Type.SEARCH,
+                    StockCommand.Type.REMOVE, StockCommand.Type.UPDATE}) {
+                GUIVisualization graph = new GUIVisualization(renderers[type.ordinal()]);
+                graph.setVisible(true);
+            }
         });
     }
+    /**
+     * Samples class collects the tree sizes and times of one operation type in growing primitive arrays.
+     */
+    private static final class Samples {
+        int[] dataPointsX = new int[1024];
+        long[] times = new long[1024];
+        int size;
+        /**
+         * Adds a sample.
+         *
+         * @param treeSize the size of the tree after the operation
+         * @param time the time the operation took, in nanoseconds
+         */
+        void add(int treeSize, long time) {
+            if (size == times.length) {
+                dataPointsX = Arrays.copyOf(dataPointsX, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            dataPointsX[size] = treeSize;
+            times[size] = time;
+            size++;
+        }
+    }
+    /**
+     * Options class holds the parsed command-line arguments of Main.
+     */
+    private static final class Options {
+        String inputFile;
+        int shards; // 0 replays sequentially
+        boolean pipeline;
+        String dataDirectory; // Null keeps the stocks in memory only
+        boolean report; // Prints latency percentiles instead of opening graph windows
+        String csvFile; // Null writes no latency time series
+        String pngDirectory; // Null shows the graphs in windows unless report is set
+        StockIndex.Engine engine = StockIndex.Engine.AVL;
+        boolean filter; // Rejects unknown symbols with a SymbolFilter
+        int cacheCapacity; // 0 disables the search cache
+        /**
+         * Parses the command-line arguments.
+         *
+         * @param args the command-line arguments
+         * @return the parsed options, or null if the arguments are invalid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    if (args[i].equals("--shards") && i + 1 < args.length) {
+                        options.shards = Integer.parseInt(args[++i]);
+                        if (options.shards <= 0) {
+                            return null;
+                        }
+                    } else if (args[i].equals("--data") && i + 1 < args.length) {
+                        options.dataDirectory = args[++i];
+                    } else if (args[i].equals("--csv") && i + 1 < args.length) {
+                        options.csvFile = args[++i];
+                    } else if (args[i].equals("--png") && i + 1 < args.length) {
+                        options.pngDirectory = args[++i];
+                    } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                        options.engine = StockIndex.Engine.of(args[++i]);
+                    } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                        options.cacheCapacity = Integer.parseInt(args[++i]);
+                        if (options.cacheCapacity <= 0) {
+                            return null;
+                        }
+                    } else if (args[i].equals("--filter")) {
+                        options.filter = true;
+                    } else if (args[i].equals("--report")) {
+                        options.report = true;
+                    } else if (args[i].equals("--pipeline")) {
+                        options.pipeline = true;
+                    } else if (!args[i].startsWith("--") && options.inputFile == null) {
+                        options.inputFile = args[i];
+                    } else {
+                        return null;
+                    }
+                }
+            } catch (IllegalArgumentException e) { // Also thrown for a bad number or an unknown engine
+                return null;
+            }
+            int modes = (options.shards > 0 ? 1 : 0) + (options.pipeline ? 1 : 0) + (options.dataDirectory != null ? 1 : 0);
+            boolean analysis = options.report || options.csvFile != null || options.pngDirectory != null;
+            boolean ownEngine = options.shards > 0 || options.dataDirectory != null; // These modes create their own managers
+            if (modes > 1 || (modes == 1 && analysis) || (ownEngine && (options.engine != StockIndex.Engine.AVL || options.filter || options.cacheCapacity > 0))) {
+                return null;
+            }
+            return (options.inputFile != null) ? options : null;
+        }
+        /**
+         * Creates an empty StockDataManager with the engine, symbol filter, and search cache of these options.
+         *
+         * @return the new manager
+         */
+        StockDataManager createManager() {
+            return new StockDataManager(engine, false, filter, cacheCapacity);
+        }
+    }
 }
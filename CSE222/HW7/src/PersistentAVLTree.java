@@ -0,0 +1,311 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+/**
+ * PersistentAVLTree class is an AVL tree of stocks whose nodes are never modified.
+ * Insertion and deletion copy the O(log n) nodes on the path from the root and share
+ * every other node with the previous version. The current root is published through
+ * a volatile field, so taking a snapshot is a single read, and a snapshot stays
+ * consistent and readable while writers keep publishing new versions.
+ * Writers are serialized; readers never take a lock.
+ * The tree stores its own copy of every stock it is given, and the stocks it hands
+ * out are shared by all snapshots, so they must not be modified.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class PersistentAVLTree {
+    private static final int MAX_HEIGHT = 64;
+
+    private static final class Node {
+        final Stock stock;
+        final long key; // Packed symbol of the stock
+        final Node left, right;
+        final int height;
+        final int size; // Number of nodes in the subtree
+        /**
+         * Constructs a new immutable Node.
+         *
+         * @param stock the stock associated with the node
+         * @param key the packed symbol of the stock
+         * @param left the left child
+         * @param right the right child
+         */
+        Node(Stock stock, long key, Node left, Node right) {
+            this.stock = stock;
+            this.key = key;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private volatile Node root;
+    /**
+     * Inserts a copy of a stock, replacing any stock with the same symbol.
+     *
+     * @param stock the stock to be inserted
+     */
+    public synchronized void insert(Stock stock) {
+        Stock copy = new Stock(stock);
+        root = insert(root, copy, SymbolKey.encode(copy.getSymbol()));
+    }
+    /**
+     * Deletes a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
+     */
+    public synchronized Stock delete(String symbol) {
+        Node current = root;
+        Stock removed = search(current, symbol);
+        if (removed != null) {
+            root = delete(current, SymbolKey.encode(symbol), symbol);
+        }
+        return removed;
+    }
+    /**
+     * Deletes the stock stored under one symbol and inserts a copy of a replacement
+     * stock, publishing both changes as a single new version. Readers and snapshots
+     * see either the old stock or the replacement, never neither or both.
+     * Nothing changes if no stock has the old symbol.
+     *
+     * @param oldSymbol the symbol of the stock to replace
+     * @param replacement the stock to insert in its place, possibly under another symbol
+     * @return true if a stock was replaced
+     */
+    public synchronized boolean replace(String oldSymbol, Stock replacement) {
+        Node current = root;
+        if (search(current, oldSymbol) == null) {
+            return false;
+        }
+        Stock copy = new Stock(replacement);
+        Node next = delete(current, SymbolKey.encode(oldSymbol), oldSymbol);
+        root = insert(next, copy, SymbolKey.encode(copy.getSymbol()));
+        return true;
+    }
+    /**
+     * Searches the current version for a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found
+     */
+    public Stock search(String symbol) {
+        return search(root, symbol);
+    }
+    /**
+     * Gets the number of stocks in the current version.
+     *
+     * @return the number of stocks
+     */
+    public int size() {
+        return size(root);
+    }
+    /**
+     * Takes a snapshot of the current version. This is a single volatile read.
+     *
+     * @return a snapshot that never changes
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(root);
+    }
+    /**
+     * Snapshot class is a read-only view of one version of a PersistentAVLTree.
+     */
+    public static final class Snapshot implements Iterable<Stock> {
+        private final Node root;
+        /**
+         * Constructs a snapshot of the version rooted at the given node.
+         *
+         * @param root the root of the version
+         */
+        private Snapshot(Node root) {
+            this.root = root;
+        }
+        /**
+         * Searches the snapshot for a stock by its symbol.
+         *
+         * @param symbol the symbol of the stock to search for
+         * @return the found stock, or null if not found
+         */
+        public Stock search(String symbol) {
+            return PersistentAVLTree.search(root, symbol);
+        }
+        /**
+         * Gets the number of stocks in the snapshot.
+         *
+         * @return the number of stocks
+         */
+        public int size() {
+            return PersistentAVLTree.size(root);
+        }
+        /**
+         * Returns an iterator over the stocks of the snapshot in symbol order.
+         *
+         * @return the iterator
+         */
+        @Override
+        public Iterator<Stock> iterator() {
+            return new Iterator<Stock>() {
+                private final Node[] stack = new Node[MAX_HEIGHT];
+                private int top = pushLeft(root, 0);
+
+                @Override
+                public boolean hasNext() {
+                    return top > 0;
+                }
+
+                @Override
+                public Stock next() {
+                    if (top == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    Node node = stack[--top];
+                    top = pushLeft(node.right, top);
+                    return node.stock;
+                }
+
+                private int pushLeft(Node node, int top) {
+                    while (node != null) {
+                        stack[top++] = node;
+                        node = node.left;
+                    }
+                    return top;
+                }
+            };
+        }
+    }
+    /**
+     * Helper method that returns a new version of a subtree with a stock inserted.
+     *
+     * @param node the root of the subtree
+     * @param stock the stock to be inserted
+     * @param key the packed symbol of the stock
+     * @return the root of the new version of the subtree
+     */
+    private static Node insert(Node node, Stock stock, long key) {
+        if (node == null) {
+            return new Node(stock, key, null, null);
+        }
+        int cmp = compare(key, stock.getSymbol(), node);
+        if (cmp < 0) {
+            return rebalance(node.stock, node.key, insert(node.left, stock, key), node.right);
+        } else if (cmp > 0) {
+            return rebalance(node.stock, node.key, node.left, insert(node.right, stock, key));
+        }
+        return new Node(stock, key, node.left, node.right);
+    }
+    /**
+     * Helper method that returns a new version of a subtree with a stock deleted.
+     *
+     * @param node the root of the subtree
+     * @param key the packed symbol of the stock to be deleted
+     * @param symbol the symbol of the stock to be deleted
+     * @return the root of the new version of the subtree
+     */
+    private static Node delete(Node node, long key, String symbol) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(key, symbol, node);
+        if (cmp < 0) {
+            return rebalance(node.stock, node.key, delete(node.left, key, symbol), node.right);
+        } else if (cmp > 0) {
+            return rebalance(node.stock, node.key, node.left, delete(node.right, key, symbol));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return rebalance(successor.stock, successor.key, node.left, delete(node.right, successor.key, successor.stock.getSymbol()));
+    }
+    /**
+     * Builds a balanced node from a stock and two subtrees whose heights differ by at most two.
+     * Rotations create new nodes instead of relinking existing ones.
+     *
+     * @param stock the stock of the node
+     * @param key the packed symbol of the stock
+     * @param left the left subtree
+     * @param right the right subtree
+     * @return the root of the balanced subtree
+     */
+    private static Node rebalance(Stock stock, long key, Node left, Node right) {
+        int balance = height(left) - height(right);
+        if (balance > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.stock, left.key, left.left, new Node(stock, key, left.right, right));
+            }
+            Node pivot = left.right;
+            return new Node(pivot.stock, pivot.key,
+                    new Node(left.stock, left.key, left.left, pivot.left),
+                    new Node(stock, key, pivot.right, right));
+        }
+        if (balance < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.stock, right.key, new Node(stock, key, left, right.left), right.right);
+            }
+            Node pivot = right.left;
+            return new Node(pivot.stock, pivot.key,
+                    new Node(stock, key, left, pivot.left),
+                    new Node(right.stock, right.key, pivot.right, right.right));
+        }
+        return new Node(stock, key, left, right);
+    }
+    /**
+     * Searches a version for a stock by its symbol.
+     *
+     * @param node the root of the version
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found
+     */
+    private static Stock search(Node node, String symbol) {
+        long key = SymbolKey.encode(symbol);
+        while (node != null) {
+            int cmp = compare(key, symbol, node);
+            if (cmp == 0) {
+                return node.stock;
+            }
+            node = (cmp < 0) ? node.left : node.right;
+        }
+        return null;
+    }
+    /**
+     * Compares a symbol and its packed key with the symbol stored in a node.
+     *
+     * @param key the packed key of the symbol
+     * @param symbol the symbol
+     * @param node the node to compare with
+     * @return a negative number, zero, or a positive number as the symbol is
+     *         ordered before, equal to, or after the symbol of the node
+     */
+    private static int compare(long key, String symbol, Node node) {
+        if (key != node.key) {
+            return (key < node.key) ? -1 : 1;
+        }
+        return (key == SymbolKey.FALLBACK) ? symbol.compareTo(node.stock.getSymbol()) : 0;
+    }
+    /**
+     * Gets the height of the given node.
+     *
+     * @param node the node to get the height of
+     * @return the height of the node, or 0 if the node is null
+     */
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+    /**
+     * Gets the number of nodes in the subtree rooted at the given node.
+     *
+     * @param node the root of the subtree
+     * @return the size of the subtree, or 0 if the node is null
+     */
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
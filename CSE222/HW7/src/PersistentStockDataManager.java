@@ -0,0 +1,70 @@
+/**
+ * PersistentStockDataManager class manages stocks in a PersistentAVLTree.
+ * It supports the same operations as StockDataManager, and additionally hands out
+ * snapshots that stay consistent while updates keep flowing, for example for
+ * end-of-interval reports. Every operation publishes at most one new version,
+ * so a snapshot never shows half of an UPDATE.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class PersistentStockDataManager {
+    private final PersistentAVLTree tree = new PersistentAVLTree();
+    /**
+     * Adds a new stock or replaces the details of an existing stock.
+     *
+     * @param symbol the stock symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     */
+    public void addOrUpdateStock(String symbol, double price, long volume, long marketCap) {
+        tree.insert(new Stock(symbol, price, volume, marketCap));
+    }
+    /**
+     * Removes a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to be removed
+     */
+    public void removeStock(String symbol) {
+        tree.delete(symbol);
+    }
+    /**
+     * Searches the current version for a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, which must not be modified, or null if not found
+     */
+    public Stock searchStock(String symbol) {
+        return tree.search(symbol);
+    }
+    /**
+     * Updates the details of an existing stock, moving it to a new symbol if needed.
+     * Nothing changes if no stock has the current symbol.
+     *
+     * @param symbol the current symbol of the stock
+     * @param newSymbol the new symbol of the stock
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     */
+    public void updateStock(String symbol, String newSymbol, double newPrice, long newVolume, long newMarketCap) {
+        tree.replace(symbol, new Stock(newSymbol, newPrice, newVolume, newMarketCap));
+    }
+    /**
+     * Gets the number of stocks in the current version.
+     *
+     * @return the number of stocks
+     */
+    public int size() {
+        return tree.size();
+    }
+    /**
+     * Takes a consistent snapshot of all stocks in O(1).
+     *
+     * @return the snapshot
+     */
+    public PersistentAVLTree.Snapshot snapshot() {
+        return tree.snapshot();
+    }
+}
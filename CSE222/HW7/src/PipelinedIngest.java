@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+/**
+ * PipelinedIngest class replays a command file in two stages that run on different threads.
+ * A parser thread reads the file with a CommandFileParser straight into the preallocated slots
+ * of a CommandRingBuffer, and the calling thread applies the commands to a StockDataManager in
+ * file order. Invalid lines travel through the ring as invalid commands and are reported by the
+ * applying thread, so the output is the same as for a sequential replay.
+ *
+ * Both stages count their commands, their running time, and how long they waited on the ring.
+ * The stage that waits less is the bottleneck: a parser that keeps finding the ring full is
+ * ahead of the apply stage, and an apply stage that keeps finding it empty is starved.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class PipelinedIngest {
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final StockDataManager manager;
+    private final int capacity;
+    private final int batchSize;
+    private final Stage parseStage = new Stage("parse");
+    private final Stage applyStage = new Stage("apply");
+    /**
+     * Constructs a new PipelinedIngest with the default ring capacity and batch size.
+     *
+     * @param manager the manager the commands are applied to
+     */
+    public PipelinedIngest(StockDataManager manager) {
+        this(manager, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+    /**
+     * Constructs a new PipelinedIngest.
+     *
+     * @param manager the manager the commands are applied to
+     * @param capacity the number of command slots in the ring, a power of two
+     * @param batchSize the number of commands the parser publishes at once
+     * @throws IllegalArgumentException if capacity or batchSize is invalid
+     */
+    public PipelinedIngest(StockDataManager manager, int capacity, int batchSize) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (batchSize <= 0 || batchSize > capacity) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + capacity + ": " + batchSize);
+        }
+        this.manager = manager;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+    /**
+     * Replays a command file. Invalid lines are reported on standard output in file order and skipped.
+     * The listener is called on the calling thread after each command is applied; the
+     * command object is a reused slot and is only valid during the call.
+     *
+     * @param file the command file
+     * @param listener receives each applied command and, for SEARCH, the found stock or null; may be null
+     * @return the number of applied commands, without the invalid lines
+     * @throws IOException if the file cannot be read
+     * @throws IllegalStateException if a command failed; the remaining commands are still applied
+     */
+    public long replay(Path file, BiConsumer<StockCommand, Stock> listener) throws IOException {
+        CommandRingBuffer ring = new CommandRingBuffer(capacity, batchSize);
+        CommandFileParser parser = new CommandFileParser(file);
+        IOException[] readFailure = new IOException[1];
+        Thread parserThread = new Thread(() -> parse(parser, ring, readFailure), "stock-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+
+        RuntimeException failure = null;
+        long applied = 0;
+        long start = System.nanoTime();
+        int available;
+        while ((available = ring.await()) > 0) {
+            for (int i = 0; i < available; i++) {
+                StockCommand command = ring.get(i);
+                if (command.getError() != null) {
+                    System.out.println(command.getError());
+                    continue;
+                }
+                applied++;
+                try {
+                    Stock stock = command.applyTo(manager);
+                    if (listener != null) {
+                        listener.accept(command, stock);
+                    }
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            ring.release(available);
+        }
+        applyStage.record(applied, System.nanoTime() - start, ring.getConsumerStalls(), ring.getConsumerStallNanos());
+
+        try {
+            parserThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the parser", e);
+        }
+        if (readFailure[0] != null) {
+            throw readFailure[0];
+        }
+        if (failure != null) {
+            throw new IllegalStateException("A command failed during the replay", failure);
+        }
+        return applied;
+    }
+    /**
+     * Gets the statistics of the parser stage of the last replay.
+     *
+     * @return the parser stage
+     */
+    public Stage getParseStage() {
+        return parseStage;
+    }
+    /**
+     * Gets the statistics of the apply stage of the last replay.
+     *
+     * @return the apply stage
+     */
+    public Stage getApplyStage() {
+        return applyStage;
+    }
+    /**
+     * Runs the parser stage: fills ring slots until the end of the file and closes the ring.
+     *
+     * @param parser the parser to read from
+     * @param ring the ring to fill
+     * @param readFailure receives an IOException if reading fails
+     */
+    private void parse(CommandFileParser parser, CommandRingBuffer ring, IOException[] readFailure) {
+        long parsed = 0;
+        long start = System.nanoTime();
+        try (parser) {
+            while (parser.nextLine(ring.claim())) {
+                ring.commit();
+                parsed++;
+            }
+        } catch (IOException e) {
+            readFailure[0] = e;
+        } finally {
+            ring.close();
+            parseStage.record(parsed, System.nanoTime() - start, ring.getProducerStalls(), ring.getProducerStallNanos());
+        }
+    }
+    /**
+     * Stage class holds the counters of one pipeline stage.
+     */
+    public static final class Stage {
+        private final String name;
+        private long commands;
+        private long elapsedNanos;
+        private long stallCount;
+        private long stallNanos;
+        /**
+         * Constructs a new Stage.
+         *
+         * @param name the name of the stage
+         */
+        Stage(String name) {
+            this.name = name;
+        }
+        /**
+         * Stores the counters of a finished stage.
+         *
+         * @param commands the number of commands the stage handled
+         * @param elapsedNanos the running time of the stage
+         * @param stallCount the number of times the stage waited on the ring
+         * @param stallNanos the time the stage waited on the ring
+         */
+        void record(long commands, long elapsedNanos, long stallCount, long stallNanos) {
+            this.commands = commands;
+            this.elapsedNanos = elapsedNanos;
+            this.stallCount = stallCount;
+            this.stallNanos = stallNanos;
+        }
+        /**
+         * Gets the name of the stage.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+        /**
+         * Gets the number of commands the stage handled.
+         *
+         * @return the number of commands
+         */
+        public long getCommands() {
+            return commands;
+        }
+        /**
+         * Gets the running time of the stage.
+         *
+         * @return the running time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        /**
+         * Gets the number of times the stage waited on the ring.
+         *
+         * @return the number of waits
+         */
+        public long getStallCount() {
+            return stallCount;
+        }
+        /**
+         * Gets the time the stage waited on the ring.
+         *
+         * @return the waiting time in nanoseconds
+         */
+        public long getStallNanos() {
+            return stallNanos;
+        }
+        /**
+         * Gets the throughput of the stage while it was not waiting, which is
+         * what the stage could sustain on its own.
+         *
+         * @return the commands per second of busy time
+         */
+        public double getBusyThroughput() {
+            long busyNanos = Math.max(elapsedNanos - stallNanos, 1);
+            return commands / (busyNanos / 1e9);
+        }
+        /**
+         * Returns a one-line summary of the stage.
+         *
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %d commands in %.1f ms, waited %d times for %.1f ms, %.0f commands/s busy",
+                    name, commands, elapsedNanos / 1e6, stallCount, stallNanos / 1e6, getBusyThroughput());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+/**
+ * PlotRenderer class draws the performance plots of GUIVisualization into images.
+ * The bounds of the data are computed once, and the rendered image is kept until a
+ * different size is requested, so repainting a window does not walk the data again.
+ *
+ * Series with more points than the plot has pixel columns are downsampled before drawing:
+ * for every column only the first, the smallest, the largest, and the last point are kept.
+ * A line through these points reaches the same highest and lowest pixel in every column as a
+ * line through all of them, so spikes are preserved while at most four points per column are drawn.
+ *
+ * Rendering only uses a BufferedImage, so plots can also be written to PNG files on
+ * machines without a display.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class PlotRenderer {
+    private static final int PADDING = 60; // Padding around the graph
+    private static final int LABEL_PADDING = 20; // Padding for labels
+    private static final int DIVISIONS = 10; // Number of divisions for each axis
+    private static final Color BACKGROUND = new Color(238, 238, 238);
+
+    private final String plotType;
+    private final String title;
+    private final int[] dataPointsX;
+    private final long[] dataPointsY;
+    private final int count;
+    private final int maxXValue;
+    private final long maxYValue;
+    private BufferedImage image; // Last rendered image
+    /**
+     * Constructs a new PlotRenderer.
+     *
+     * @param plotType the type of plot ("line" or "scatter")
+     * @param title the title of the graph
+     * @param dataPointsX the x-axis data points; only the first count are used
+     * @param dataPointsY the y-axis data points; only the first count are used
+     * @param count the number of data points
+     * @throws IllegalArgumentException if count is negative or larger than one of the arrays
+     */
+    public PlotRenderer(String plotType, String title, int[] dataPointsX, long[] dataPointsY, int count) {
+        if (count < 0 || count > dataPointsX.length || count > dataPointsY.length) {
+            throw new IllegalArgumentException("Invalid number of data points: " + count);
+        }
+        this.plotType = plotType;
+        this.title = title;
+        this.dataPointsX = dataPointsX;
+        this.dataPointsY = dataPointsY;
+        this.count = count;
+
+        int maxX = Integer.MIN_VALUE;
+        long maxY = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            maxX = Math.max(maxX, dataPointsX[i]);
+            maxY = Math.max(maxY, dataPointsY[i]);
+        }
+        this.maxXValue = maxX;
+        this.maxYValue = maxY;
+    }
+    /**
+     * Renders the graph, reusing the last image if it has the same size.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the rendered image; it must not be modified
+     */
+    public BufferedImage render(int width, int height) {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                drawGraph(g2, width, height);
+            } finally {
+                g2.dispose();
+            }
+        }
+        return image;
+    }
+    /**
+     * Renders the graph with its title above it and writes it to a PNG file.
+     *
+     * @param file the PNG file; it is replaced if it exists
+     * @param width the width of the image
+     * @param height the height of the image
+     * @throws IOException if the file cannot be written
+     */
+    public void writePng(Path file, int width, int height) throws IOException {
+        BufferedImage titled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = titled.createGraphics();
+        try {
+            g2.drawImage(render(width, height), 0, 0, null);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(Color.BLACK);
+            g2.setFont(g2.getFont().deriveFont(Font.BOLD, 16f));
+            FontMetrics metrics = g2.getFontMetrics();
+            g2.drawString(title, (width - metrics.stringWidth(title)) / 2, PADDING / 2 + metrics.getAscent() / 2);
+        } finally {
+            g2.dispose();
+        }
+        if (!ImageIO.write(titled, "png", file.toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+    /**
+     * Gets the title of the graph.
+     *
+     * @return the title
+     */
+    public String getTitle() {
+        return title;
+    }
+    /**
+     * Gets the number of data points.
+     *
+     * @return the number of data points
+     */
+    public int getCount() {
+        return count;
+    }
+    /**
+     * Draws the axes, the grid, and the data points.
+     *
+     * @param g2 the graphics to draw with
+     * @param width the width of the drawing area
+     * @param height the height of the drawing area
+     */
+    private void drawGraph(Graphics2D g2, int width, int height) {
+        int plotWidth = width - PADDING * 2 - LABEL_PADDING;
+        int plotHeight = height - PADDING * 2 - LABEL_PADDING;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON); // Enable anti-aliasing
+        g2.setColor(BACKGROUND);
+        g2.fillRect(0, 0, width, height);
+
+        // Draw white background for the graph
+        g2.setColor(Color.WHITE);
+        g2.fillRect(PADDING + LABEL_PADDING, PADDING, plotWidth, plotHeight);
+        g2.setColor(Color.BLACK);
+        FontMetrics metrics = g2.getFontMetrics();
+
+        // Create hatch marks and grid lines for y axis.
+        for (int i = 0; i < DIVISIONS + 1; i++) {
+            int x0 = PADDING + LABEL_PADDING;
+            int y0 = height - ((i * plotHeight) / DIVISIONS + PADDING);
+            if (count > 0) {
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(PADDING + LABEL_PADDING + 1 + LABEL_PADDING, y0, width - PADDING, y0);
+                g2.setColor(Color.BLACK);
+                String yLabel = ((int) ((maxYValue * ((i * 1.0) / DIVISIONS)) * 100)) / 100.0 + "";
+                g2.drawString(yLabel, x0 - metrics.stringWidth(yLabel) - 5, y0 + (metrics.getHeight() / 2) - 3);
+            }
+        }
+
+        // Create hatch marks and grid lines for x axis.
+        for (int i = 0; i < DIVISIONS + 1; i++) {
+            int x0 = i * plotWidth / DIVISIONS + PADDING + LABEL_PADDING;
+            int y0 = height - PADDING - LABEL_PADDING;
+            if (count > 0) {
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(x0, height - PADDING - LABEL_PADDING - 1 - LABEL_PADDING, x0, PADDING);
+                g2.setColor(Color.BLACK);
+                String xLabel = ((int) ((maxXValue * ((i * 1.0) / DIVISIONS)) * 100)) / 100.0 + "";
+                g2.drawString(xLabel, x0 - metrics.stringWidth(xLabel) / 2, y0 + metrics.getHeight() + 3);
+            }
+            g2.drawLine(x0, y0, x0, y0 - 4); // Draw x-axis hatch mark
+        }
+
+        // Draw axis lines.
+        g2.drawLine(PADDING + LABEL_PADDING, height - PADDING - LABEL_PADDING, PADDING + LABEL_PADDING, PADDING);
+        g2.drawLine(PADDING + LABEL_PADDING, height - PADDING - LABEL_PADDING, width - PADDING, height - PADDING - LABEL_PADDING);
+
+        if (count == 0 || plotWidth <= 0 || plotHeight <= 0) {
+            return;
+        }
+
+        // Draw the actual graph.
+        g2.setColor(Color.BLUE);
+        g2.setStroke(new BasicStroke(2f));
+        int[] points = downsample(dataPointsY, count, plotWidth);
+        int pointCount = (points == null) ? count : points.length;
+        int[] xs = new int[pointCount];
+        int[] ys = new int[pointCount];
+        double yScale = plotHeight / (double) Math.max(maxYValue, 1);
+        for (int j = 0; j < pointCount; j++) {
+            int i = (points == null) ? j : points[j];
+            xs[j] = (count == 1) ? PADDING + LABEL_PADDING
+                    : (int) ((long) i * plotWidth / (count - 1)) + PADDING + LABEL_PADDING;
+            ys[j] = height - PADDING - LABEL_PADDING - (int) (dataPointsY[i] * yScale);
+        }
+
+        if (plotType.equals("line")) {
+            g2.drawPolyline(xs, ys, pointCount);
+        } else if (plotType.equals("scatter")) {
+            for (int j = 0; j < pointCount; j++) {
+                g2.fillOval(xs[j] - 3, ys[j] - 3, 6, 6); // Draw data point as a small circle
+            }
+        }
+    }
+    /**
+     * Selects the data points to draw when there are more points than pixel columns.
+     * The points are split into one group per column, and the first, the smallest,
+     * the largest, and the last point of each group are kept, in their original order.
+     *
+     * @param values the y values
+     * @param count the number of values
+     * @param columns the number of pixel columns
+     * @return the indexes of the selected points in ascending order, or null if every point should be drawn
+     */
+    static int[] downsample(long[] values, int count, int columns) {
+        if (columns <= 0 || count <= 4L * columns) {
+            return null;
+        }
+        int[] selected = new int[4 * columns];
+        int size = 0;
+        for (int column = 0; column < columns; column++) {
+            int start = (int) ((long) column * count / columns);
+            int end = (int) ((long) (column + 1) * count / columns);
+            int minIndex = start;
+            int maxIndex = start;
+            for (int i = start + 1; i < end; i++) {
+                if (values[i] < values[minIndex]) {
+                    minIndex = i;
+                } else if (values[i] > values[maxIndex]) {
+                    maxIndex = i;
+                }
+            }
+            selected[size++] = start;
+            int first = Math.min(minIndex, maxIndex);
+            int second = Math.max(minIndex, maxIndex);
+            if (first != start) {
+                selected[size++] = first;
+            }
+            if (second != first && second != start) {
+                selected[size++] = second;
+            }
+            if (end - 1 != second && end - 1 != start) {
+                selected[size++] = end - 1;
+            }
+        }
+        return Arrays.copyOf(selected, size);
+    }
+}
@@ -1,174 +1,410 @@
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 /**
  * RandomCommandGenerator class for generating random stock management commands.
  * This class generates commands for adding, removing, searching, and updating stocks
  * and writes them to a specified file.
  *
+ * The number of commands, the number of distinct symbols, the share of each command type,
+ * how often popular symbols are chosen (uniform, Zipf, or hotspot), and the random seed can
+ * all be configured. Commands are formatted by hand into byte buffers, with prices as whole
+ * cents, and written through a FileChannel, so hundreds of millions of commands can be written.
+ *
+ * The commands are generated in chunks of 65,536, each with its own random stream split
+ * from the seed in chunk order. Chunks can therefore be generated on several threads while
+ * the file stays the same for a given seed, whatever the number of threads.
+ *
  * @author Muhammet Akkurt
  * @version 1.0
  */
 public class RandomCommandGenerator {
 
-    private static final List<String> validSymbols = new ArrayList<>();
-    private static final Random random = new Random();
     private static final double VALID_SYMBOL_PROBABILITY = 0.5;
-    private static final String[] symbols = generateSymbols(1000);
+    private static final int CHUNK_SIZE = 1 << 16; // Commands per chunk
+    private static final int RECENT_SYMBOLS = 1024; // Added symbols remembered per chunk
+    private static final int MAX_LINE_LENGTH = 64; // Longer than any generated line
+    private static final long SYMBOL_MULTIPLIER = 7919; // Coprime with 26, so ranks map to distinct symbols
+    private static final byte[][] NAMES = {
+        "ADD ".getBytes(), "REMOVE ".getBytes(), "SEARCH ".getBytes(), "UPDATE ".getBytes()
+    };
+
+    private final long commandCount;
+    private final int symbolCount;
+    private final int symbolLength;
+    private final long symbolSpace; // 26^symbolLength
+    private final long symbolOffset;
+    private final int[] mixLimits; // Cumulative weights of ADD, REMOVE, SEARCH, UPDATE
+    private final long seed;
+    private ZipfDistribution zipf; // Null unless Zipf skew is used
+    private double hotspotFraction; // 0 unless hotspot skew is used
+    private double hotspotProbability;
+    /**
+     * Constructs a new RandomCommandGenerator that chooses symbols uniformly.
+     *
+     * @param commandCount the number of commands to generate
+     * @param symbolCount the number of distinct symbols to choose from
+     * @param mix the relative weights of ADD, REMOVE, SEARCH, and UPDATE commands
+     * @param seed the seed of the random numbers
+     * @throws IllegalArgumentException if a count is not positive or the mix is invalid
+     */
+    public RandomCommandGenerator(long commandCount, int symbolCount, int[] mix, long seed) {
+        if (commandCount <= 0 || symbolCount <= 0) {
+            throw new IllegalArgumentException("Command and symbol counts must be positive");
+        }
+        if (mix.length != NAMES.length) {
+            throw new IllegalArgumentException("Mix must have a weight for ADD, REMOVE, SEARCH, and UPDATE");
+        }
+        this.commandCount = commandCount;
+        this.symbolCount = symbolCount;
+        this.seed = seed;
+
+        int length = 1;
+        long space = 26;
+        while (space < symbolCount) {
+            length++;
+            space *= 26;
+        }
+        this.symbolLength = Math.max(length, 4); // Like the original four-letter symbols
+        this.symbolSpace = (long) Math.pow(26, symbolLength);
+        this.symbolOffset = Math.floorMod(seed, symbolSpace);
+
+        this.mixLimits = new int[mix.length];
+        int total = 0;
+        for (int i = 0; i < mix.length; i++) {
+            if (mix[i] < 0) {
+                throw new IllegalArgumentException("Mix weights must not be negative");
+            }
+            total += mix[i];
+            mixLimits[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Mix weights must not all be 0");
+        }
+    }
     /**
      * The main method to generate random stock management commands and write them to a file.
      *
-     * @param args command-line arguments (not used)
+     * @param args optional flags followed by the output file (default commands.txt)
      */
     public static void main(String[] args) {
-        int numCommands = 10000;
+        long numCommands = 10000;
+        int numSymbols = 1000;
+        int[] mix = {5, 2, 2, 1};
+        long seed = new SplittableRandom().nextLong();
+        double zipfExponent = -1;
+        double[] hotspot = null;
+        int threads = 1;
         String filename = "commands.txt";
 
-        try (FileWriter writer = new FileWriter(filename)) {
-            for (int i = 0; i < numCommands; i++) {
-                String command = generateRandomCommand();
-                writer.write(command + "\n");
+        try {
+            for (int i = 0; i < args.length; i++) {
+                boolean hasValue = i + 1 < args.length;
+                if (args[i].equals("--count") && hasValue) {
+                    numCommands = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--symbols") && hasValue) {
+                    numSymbols = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--mix") && hasValue) {
+                    String[] weights = args[++i].split(",");
+                    mix = new int[weights.length];
+                    for (int j = 0; j < weights.length; j++) {
+                        mix[j] = Integer.parseInt(weights[j]);
+                    }
+                } else if (args[i].equals("--zipf") && hasValue) {
+                    zipfExponent = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--hotspot") && hasValue) {
+                    String[] values = args[++i].split(",");
+                    hotspot = new double[] {Double.parseDouble(values[0]), Double.parseDouble(values[1])};
+                } else if (args[i].equals("--seed") && hasValue) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--threads") && hasValue) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (!args[i].startsWith("--") && i == args.length - 1) {
+                    filename = args[i];
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
             }
+            RandomCommandGenerator generator = new RandomCommandGenerator(numCommands, numSymbols, mix, seed);
+            if (zipfExponent >= 0) {
+                generator.setZipfSkew(zipfExponent);
+            }
+            if (hotspot != null) {
+                generator.setHotspotSkew(hotspot[0], hotspot[1]);
+            }
+
+            long startTime = System.nanoTime();
+            long bytes = generator.write(Paths.get(filename), threads);
+            long elapsed = System.nanoTime() - startTime;
+            System.out.printf("Wrote %d commands (%d bytes) to %s in %.1f ms with seed %d%n",
+                    numCommands, bytes, filename, elapsed / 1e6, seed);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: java RandomCommandGenerator [--count N] [--symbols N] [--mix ADD,REMOVE,SEARCH,UPDATE]"
+                    + " [--zipf S | --hotspot FRACTION,PROBABILITY] [--seed N] [--threads N] [output_file]");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Generates a random command based on predefined probabilities.
+     * Chooses symbols from a Zipf distribution, in which the k-th most popular symbol
+     * is chosen with a probability proportional to 1 / k^exponent.
      *
-     * @return a random stock management command
+     * @param exponent the skew; 0 is uniform, around 1 is typical for popularity
+     * @throws IllegalArgumentException if exponent is negative
      */
-    private static String generateRandomCommand() {
-        int commandType = random.nextInt(10);
-        if (commandType < 5) {
-            return generateAddCommand();
-        } else if (commandType < 7) {
-            return generateRemoveCommand();
-        } else if (commandType < 9) {
-            return generateSearchCommand();
-        } else {
-            return generateUpdateCommand();
-        }
+    public void setZipfSkew(double exponent) {
+        zipf = new ZipfDistribution(symbolCount, exponent);
+        hotspotFraction = 0;
     }
     /**
-     * Generates an ADD command with random parameters.
+     * Chooses symbols from a hotspot distribution, in which a small set of hot symbols
+     * receives a fixed share of the choices and the other symbols share the rest uniformly.
      *
-     * @return a formatted ADD command string
+     * @param fraction the fraction of the symbols that are hot, greater than 0 and less than 1
+     * @param probability the probability of choosing a hot symbol, from 0 to 1
+     * @throws IllegalArgumentException if fraction or probability is out of range
      */
-    private static String generateAddCommand() {
-        String symbol = getRandomSymbol();
-        double price = getRandomPrice();
-        long volume = getRandomVolume();
-        long marketCap = getRandomMarketCap();
-        validSymbols.add(symbol);
-        return String.format("ADD %s %.2f %d %d", symbol, price, volume, marketCap);
+    public void setHotspotSkew(double fraction, double probability) {
+        if (!(fraction > 0 && fraction < 1) || !(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Invalid hotspot: " + fraction + ", " + probability);
+        }
+        hotspotFraction = fraction;
+        hotspotProbability = probability;
+        zipf = null;
     }
     /**
-     * Generates a REMOVE command with a random or valid symbol.
+     * Generates every command and writes it to a file.
      *
-     * @return a formatted REMOVE command string
+     * @param file the output file; it is replaced if it exists
+     * @param threads the number of threads generating chunks; 1 generates on the calling thread
+     * @return the number of bytes written
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if threads is not positive
      */
-    private static String generateRemoveCommand() {
-        String symbol = getRandomSymbol(true);
-        return String.format("REMOVE %s", symbol);
+    public long write(Path file, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        long chunkCount = (commandCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        long bytes = 0;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (threads == 1) {
+                for (long chunk = 0; chunk < chunkCount; chunk++) {
+                    bytes += writeFully(channel, generateChunk(chunk, root.split()));
+                }
+                return bytes;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>(); // Chunks in file order
+                for (long chunk = 0; chunk < chunkCount; chunk++) {
+                    long index = chunk;
+                    SplittableRandom random = root.split(); // Split in chunk order, so the streams do not depend on timing
+                    pending.add(executor.submit(() -> generateChunk(index, random)));
+                    if (pending.size() >= 2 * threads) {
+                        bytes += writeFully(channel, pending.poll().get());
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    bytes += writeFully(channel, pending.poll().get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while generating commands", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Generating commands failed", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        return bytes;
     }
     /**
-     * Generates a SEARCH command with a random or valid symbol.
+     * Generates the commands of one chunk.
      *
-     * @return a formatted SEARCH command string
+     * @param chunk the index of the chunk
+     * @param random the random stream of the chunk
+     * @return a buffer holding the formatted commands, ready to be written
      */
-    private static String generateSearchCommand() {
-        String symbol = getRandomSymbol(true);
-        return String.format("SEARCH %s", symbol);
+    private ByteBuffer generateChunk(long chunk, SplittableRandom random) {
+        int commands = (int) Math.min(CHUNK_SIZE, commandCount - chunk * CHUNK_SIZE);
+        byte[] bytes = new byte[commands * MAX_LINE_LENGTH];
+        int[] recent = new int[RECENT_SYMBOLS]; // Ranks of recently added symbols
+        int recentCount = 0;
+        int position = 0;
+
+        for (int i = 0; i < commands; i++) {
+            int type = chooseType(random);
+            position = put(bytes, position, NAMES[type]);
+            int rank;
+            switch (type) {
+                case 0: // ADD
+                    rank = chooseRank(random);
+                    recent[recentCount++ % RECENT_SYMBOLS] = rank;
+                    position = putSymbol(bytes, position, rank);
+                    position = putValues(bytes, position, random);
+                    break;
+                case 1: // REMOVE
+                case 2: // SEARCH
+                    position = putSymbol(bytes, position, chooseValidRank(random, recent, recentCount));
+                    break;
+                default: // UPDATE
+                    position = putSymbol(bytes, position, chooseValidRank(random, recent, recentCount));
+                    bytes[position++] = ' ';
+                    position = putSymbol(bytes, position, chooseRank(random));
+                    position = putValues(bytes, position, random);
+                    break;
+            }
+            bytes[position++] = '\n';
+        }
+        return ByteBuffer.wrap(bytes, 0, position);
     }
     /**
-     * Generates an UPDATE command with random parameters.
+     * Chooses a command type by the weights of the mix.
      *
-     * @return a formatted UPDATE command string
+     * @param random the random stream
+     * @return 0 for ADD, 1 for REMOVE, 2 for SEARCH, or 3 for UPDATE
      */
-    private static String generateUpdateCommand() {
-        String oldSymbol = getRandomSymbol(true);
-        String newSymbol = getRandomSymbol();
-        double newPrice = getRandomPrice();
-        long newVolume = getRandomVolume();
-        long newMarketCap = getRandomMarketCap();
-        return String.format("UPDATE %s %s %.2f %d %d", oldSymbol, newSymbol, newPrice, newVolume, newMarketCap);
+    private int chooseType(SplittableRandom random) {
+        int value = random.nextInt(mixLimits[mixLimits.length - 1]);
+        int type = 0;
+        while (value >= mixLimits[type]) {
+            type++;
+        }
+        return type;
     }
     /**
-     * Gets a random symbol from the predefined symbols array.
+     * Chooses the popularity rank of a symbol from the configured distribution.
      *
-     * @return a random symbol string
+     * @param random the random stream
+     * @return a rank between 0 and symbolCount - 1; smaller ranks are more popular
      */
-    private static String getRandomSymbol() {
-        return symbols[random.nextInt(symbols.length)];
+    private int chooseRank(SplittableRandom random) {
+        if (zipf != null) {
+            return zipf.sample(random);
+        }
+        if (hotspotFraction > 0) {
+            int hotCount = Math.max(1, (int) (symbolCount * hotspotFraction));
+            if (hotCount < symbolCount && random.nextDouble() >= hotspotProbability) {
+                return hotCount + random.nextInt(symbolCount - hotCount);
+            }
+            return random.nextInt(hotCount);
+        }
+        return random.nextInt(symbolCount);
     }
     /**
-     * Gets a random symbol, with a probability of selecting a valid symbol if required.
+     * Chooses a symbol that was recently added, with a probability of VALID_SYMBOL_PROBABILITY,
+     * or else a symbol from the configured distribution.
      *
-     * @param useValidSymbol flag indicating whether to use a valid symbol
-     * @return a random or valid symbol string
+     * @param random the random stream
+     * @param recent the ranks of recently added symbols
+     * @param recentCount the number of symbols added so far in the chunk
+     * @return the rank of the chosen symbol
      */
-    private static String getRandomSymbol(boolean useValidSymbol) {
-        if (useValidSymbol && !validSymbols.isEmpty() && random.nextDouble() < VALID_SYMBOL_PROBABILITY) {
-            return validSymbols.get(random.nextInt(validSymbols.size()));
-        } else {
-            return getRandomSymbol();
+    private int chooseValidRank(SplittableRandom random, int[] recent, int recentCount) {
+        if (recentCount > 0 && random.nextDouble() < VALID_SYMBOL_PROBABILITY) {
+            return recent[random.nextInt(Math.min(recentCount, RECENT_SYMBOLS))];
         }
+        return chooseRank(random);
     }
     /**
-     * Generates a random price between 10 and 1000.
+     * Writes the symbol of a rank. Ranks are spread over the symbol space, so popular
+     * symbols are not alphabetical neighbors, and the spreading depends on the seed.
      *
-     * @return a random price
+     * @param bytes the buffer
+     * @param position the position to write at
+     * @param rank the rank of the symbol
+     * @return the position after the symbol
      */
-    private static double getRandomPrice() {
-        return 10 + (1000 - 10) * random.nextDouble();
+    private int putSymbol(byte[] bytes, int position, int rank) {
+        long index = (rank * SYMBOL_MULTIPLIER + symbolOffset) % symbolSpace;
+        for (int i = position + symbolLength - 1; i >= position; i--) {
+            bytes[i] = (byte) ('A' + index % 26);
+            index /= 26;
+        }
+        return position + symbolLength;
     }
     /**
-     * Generates a random volume between 100,000 and 1,000,000.
+     * Writes a random price between 10.00 and 999.99, a random volume between 100,000 and
+     * 999,999, and a random market cap between 1,000,000 and 9,999,999, each preceded by a space.
      *
-     * @return a random volume
+     * @param bytes the buffer
+     * @param position the position to write at
+     * @param random the random stream
+     * @return the position after the values
      */
-    private static long getRandomVolume() {
-        return 100000 + random.nextInt(900000);
+    private static int putValues(byte[] bytes, int position, SplittableRandom random) {
+        int cents = 1000 + random.nextInt(99000);
+        bytes[position++] = ' ';
+        position = putLong(bytes, position, cents / 100);
+        bytes[position++] = '.';
+        bytes[position++] = (byte) ('0' + cents / 10 % 10);
+        bytes[position++] = (byte) ('0' + cents % 10);
+        bytes[position++] = ' ';
+        position = putLong(bytes, position, 100000 + random.nextInt(900000));
+        bytes[position++] = ' ';
+        return putLong(bytes, position, 1000000 + random.nextInt(9000000));
     }
-
     /**
-     * Generates a random market cap between 1,000,000 and 10,000,000.
+     * Writes a non-negative number in decimal.
      *
-     * @return a random market cap
+     * @param bytes the buffer
+     * @param position the position to write at
+     * @param value the number
+     * @return the position after the number
      */
-    private static long getRandomMarketCap() {
-        return 1000000 + random.nextInt(9000000);
+    private static int putLong(byte[] bytes, int position, long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
     }
     /**
-     * Generates an array of random symbols.
+     * Copies bytes into the buffer.
      *
-     * @param count the number of symbols to generate
-     * @return an array of generated symbols
+     * @param bytes the buffer
+     * @param position the position to write at
+     * @param source the bytes to copy
+     * @return the position after the copied bytes
      */
-    private static String[] generateSymbols(int count) {
-        String[] symbols = new String[count];
-        for (int i = 0; i < count; i++) {
-            symbols[i] = generateRandomString(4);
-        }
-        return symbols;
+    private static int put(byte[] bytes, int position, byte[] source) {
+        System.arraycopy(source, 0, bytes, position, source.length);
+        return position + source.length;
     }
     /**
-     * Generates a random string of specified length from uppercase alphabets.
+     * Writes a whole buffer to a channel.
      *
-     * @param length the length of the string to generate
-     * @return a random string
+     * @param channel the channel
+     * @param buffer the buffer
+     * @return the number of bytes written
+     * @throws IOException if the channel cannot be written
      */
-    private static String generateRandomString(int length) {
-        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            sb.append(characters.charAt(random.nextInt(characters.length())));
+    private static long writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
-        return sb.toString();
+        return length;
     }
 
 }
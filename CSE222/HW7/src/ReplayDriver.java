@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * ReplayDriver class converts text command files into {@link BinaryCommandLog} files and
+ * replays binary logs into a StockDataManager for capacity tests. Replays decode the
+ * memory-mapped records without parsing, so they are bound by the engine and not by I/O.
+ *
+ * Each pass replays the whole log into a new, empty manager, either as fast as possible or
+ * paced to a target rate. A paced command is due at a fixed interval after the start of its
+ * pass, and its latency is measured from that time rather than from when it actually started,
+ * so commands delayed behind a slow one are counted with their waiting time. Commands that
+ * are already late are applied immediately, without trying to catch up with pauses.
+ * SEARCH results are not printed.
+ *
+ * <pre>
+ * java ReplayDriver convert commands.txt commands.bin
+ * java ReplayDriver replay commands.bin [--rate OPS] [--passes N] [--report] [--engine NAME] [--filter] [--cache N]
+ * </pre>
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ReplayDriver {
+    private static final long SPIN_NANOS = 200_000; // Shorter waits spin, because parking overshoots by tens of microseconds
+
+    private final Path logFile;
+    private double rate; // Commands per second; 0 replays at the maximum rate
+    private int passes = 1;
+    private boolean report; // Records per-command latencies even at the maximum rate
+    private StockIndex.Engine engine = StockIndex.Engine.AVL;
+    private boolean filter;
+    private int cacheCapacity;
+    /**
+     * Constructs a new ReplayDriver with the default options.
+     *
+     * @param logFile the binary command log to replay
+     */
+    private ReplayDriver(Path logFile) {
+        this.logFile = logFile;
+    }
+    /**
+     * Converts a text command file or replays a binary command log.
+     *
+     * @param args "convert" with the text and binary files, or "replay" with the binary file and options
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length == 3 && args[0].equals("convert")) {
+                long startTime = System.nanoTime();
+                long count = BinaryCommandLog.convert(Paths.get(args[1]), Paths.get(args[2]));
+                System.out.printf("Converted %d commands to %s in %.3f ms%n", count, args[2],
+                        (System.nanoTime() - startTime) / 1e6);
+                return;
+            }
+            ReplayDriver driver = (args.length >= 2 && args[0].equals("replay")) ? parse(args) : null;
+            if (driver == null) {
+                System.out.println("Usage: java ReplayDriver convert <text_file> <binary_file>");
+                System.out.println("       java ReplayDriver replay <binary_file> [--rate OPS] [--passes N] [--report] "
+                        + "[--engine NAME] [--filter] [--cache N]");
+                return;
+            }
+            driver.run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Parses the options of the replay command.
+     *
+     * @param args the command-line arguments, starting with "replay" and the binary file
+     * @return the configured driver, or null if the options are invalid
+     */
+    private static ReplayDriver parse(String[] args) {
+        ReplayDriver driver = new ReplayDriver(Paths.get(args[1]));
+        try {
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("--rate") && i + 1 < args.length) {
+                    driver.rate = Double.parseDouble(args[++i]);
+                    if (!(driver.rate > 0)) {
+                        return null;
+                    }
+                } else if (args[i].equals("--passes") && i + 1 < args.length) {
+                    driver.passes = Integer.parseInt(args[++i]);
+                    if (driver.passes <= 0) {
+                        return null;
+                    }
+                } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                    driver.engine = StockIndex.Engine.of(args[++i]);
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    driver.cacheCapacity = Integer.parseInt(args[++i]);
+                    if (driver.cacheCapacity <= 0) {
+                        return null;
+                    }
+                } else if (args[i].equals("--filter")) {
+                    driver.filter = true;
+                } else if (args[i].equals("--report")) {
+                    driver.report = true;
+                } else {
+                    return null;
+                }
+            }
+        } catch (IllegalArgumentException e) { // Also thrown for a bad number or an unknown engine
+            return null;
+        }
+        return driver;
+    }
+    /**
+     * Replays the log for every pass and prints the throughput of each pass, followed by
+     * the latency percentiles of all passes if latencies were recorded.
+     *
+     * @throws IOException if the log cannot be read
+     */
+    private void run() throws IOException {
+        boolean timed = report || rate > 0;
+        try (BinaryCommandLog log = new BinaryCommandLog(logFile);
+             LatencyRecorder recorder = new LatencyRecorder()) {
+            System.out.printf("Replaying %d commands from %s with the %s engine at %s%n", log.getRecordCount(), logFile,
+                    engine, (rate > 0) ? String.format("%.0f commands/s", rate) : "the maximum rate");
+            for (int pass = 1; pass <= passes; pass++) {
+                log.rewind();
+                StockDataManager manager = new StockDataManager(engine, false, filter, cacheCapacity);
+                long startTime = System.nanoTime();
+                long count = timed ? replayTimed(log, manager, recorder, startTime) : replay(log, manager);
+                long elapsed = System.nanoTime() - startTime;
+                System.out.printf("Pass %d: %d commands in %.3f ms, %.0f commands/s, %d stocks%n", pass, count,
+                        elapsed / 1e6, count * 1e9 / elapsed, manager.size());
+            }
+            if (timed) {
+                recorder.printReport(System.out);
+            }
+        }
+    }
+    /**
+     * Applies every command of the log as fast as possible, without timing single commands.
+     *
+     * @param log the log, positioned at its first command
+     * @param manager the manager to apply the commands to
+     * @return the number of commands applied
+     * @throws IOException if the log cannot be read
+     */
+    private static long replay(BinaryCommandLog log, StockDataManager manager) throws IOException {
+        StockCommand command = new StockCommand();
+        long count = 0;
+        while (log.next(command)) {
+            command.applyTo(manager);
+            count++;
+        }
+        return count;
+    }
+    /**
+     * Applies every command of the log, paced to the target rate if one is set, and records
+     * the latency of each command from the time it was due.
+     *
+     * @param log the log, positioned at its first command
+     * @param manager the manager to apply the commands to
+     * @param recorder receives the latency of every command
+     * @param startTime the start time of the pass, from {@link System#nanoTime()}
+     * @return the number of commands applied
+     * @throws IOException if the log cannot be read
+     */
+    private long replayTimed(BinaryCommandLog log, StockDataManager manager, LatencyRecorder recorder,
+                             long startTime) throws IOException {
+        StockCommand command = new StockCommand();
+        double interval = (rate > 0) ? 1e9 / rate : 0;
+        long count = 0;
+        while (log.next(command)) {
+            long dueTime = (rate > 0) ? startTime + (long) (count * interval) : System.nanoTime();
+            for (long wait = dueTime - System.nanoTime(); wait > 0; wait = dueTime - System.nanoTime()) {
+                if (wait > SPIN_NANOS) {
+                    LockSupport.parkNanos(wait - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+            command.applyTo(manager);
+            recorder.record(command.getType(), System.nanoTime() - dueTime, manager.size());
+            count++;
+        }
+        return count;
+    }
+}
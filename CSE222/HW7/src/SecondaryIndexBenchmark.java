@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntSupplier;
+/**
+ * SecondaryIndexBenchmark class for comparing secondary index queries with a full scan and sort.
+ * For each tree size it times "top 50 by market capitalization" and "all stocks priced
+ * between 100 and 200", once through the secondary indexes of StockDataManager and once
+ * by scanning the whole AVL tree and sorting the matches.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class SecondaryIndexBenchmark {
+    private static final int TOP_K = 50;
+    private static final double PRICE_LO = 100;
+    private static final double PRICE_HI = 200;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional tree sizes (default 100,000 and 1,000,000)
+     */
+    public static void main(String[] args) {
+        int[] sizes = {100000, 1000000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+    /**
+     * Builds a manager of the given size and times both query kinds both ways.
+     *
+     * @param size the number of stocks
+     */
+    private static void run(int size) {
+        Random random = new Random(size);
+        StockDataManager manager = new StockDataManager(true);
+        AVLTree tree = new AVLTree();
+        for (int i = 0; i < size; i++) {
+            String symbol = symbolOf(i);
+            double price = 10 + 990 * random.nextDouble();
+            long volume = 100000 + random.nextInt(900000);
+            long marketCap = 1000000 + random.nextInt(9000000);
+            manager.addOrUpdateStock(symbol, price, volume, marketCap);
+            tree.insert(new Stock(symbol, price, volume, marketCap));
+        }
+        int queries = Math.max(10, 10000000 / size);
+
+        System.out.println("Stocks: " + size);
+        report("top " + TOP_K + " by market cap, index", queries,
+                () -> manager.topStocks(StockAttribute.MARKET_CAP, TOP_K).size());
+        report("top " + TOP_K + " by market cap, scan+sort", Math.max(3, queries / 100),
+                () -> scanTop(tree, StockAttribute.MARKET_CAP, TOP_K).size());
+        report("price in [100, 200], index", Math.max(3, queries / 100),
+                () -> manager.stocksInRange(StockAttribute.PRICE, PRICE_LO, PRICE_HI).size());
+        report("price in [100, 200], scan+sort", Math.max(3, queries / 100),
+                () -> scanRange(tree, StockAttribute.PRICE, PRICE_LO, PRICE_HI).size());
+    }
+    /**
+     * Times a query and prints its average latency.
+     *
+     * @param name the name of the query
+     * @param repetitions the number of calls per round
+     * @param query the query, returning its result size
+     */
+    private static void report(String name, int repetitions, IntSupplier query) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS * repetitions; i++) {
+            sink += query.getAsInt();
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS * repetitions; i++) {
+            sink += query.getAsInt();
+        }
+        long endTime = System.nanoTime();
+        double micros = (endTime - startTime) / 1000.0 / (MEASURED_ROUNDS * repetitions);
+        System.out.printf("  %-40s %12.1f us/query (checksum %d)%n", name, micros, sink);
+    }
+    /**
+     * Finds the top k stocks by scanning the whole tree and sorting.
+     *
+     * @param tree the tree to scan
+     * @param attribute the attribute to rank by
+     * @param k the number of stocks to return
+     * @return the top k stocks, highest first
+     */
+    private static List<Stock> scanTop(AVLTree tree, StockAttribute attribute, int k) {
+        List<Stock> all = new ArrayList<>(tree.size());
+        tree.forEach(all::add);
+        all.sort(attribute.order().reversed());
+        return all.subList(0, Math.min(k, all.size()));
+    }
+    /**
+     * Finds the stocks in a value range by scanning the whole tree and sorting the matches.
+     *
+     * @param tree the tree to scan
+     * @param attribute the attribute to filter by
+     * @param lo the lowest value, inclusive
+     * @param hi the highest value, inclusive
+     * @return the matching stocks in ascending attribute order
+     */
+    private static List<Stock> scanRange(AVLTree tree, StockAttribute attribute, double lo, double hi) {
+        List<Stock> matches = new ArrayList<>();
+        tree.forEach(stock -> {
+            double value = attribute.valueOf(stock);
+            if (value >= lo && value <= hi) {
+                matches.add(stock);
+            }
+        });
+        matches.sort(attribute.order());
+        return matches;
+    }
+    /**
+     * Builds a distinct symbol for an index by writing it in base 26.
+     *
+     * @param index the index of the stock
+     * @return a symbol of uppercase letters
+     */
+    private static String symbolOf(int index) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append((char) ('A' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return sb.reverse().toString();
+    }
+}
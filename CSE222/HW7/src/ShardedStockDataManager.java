@@ -0,0 +1,318 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+/**
+ * ShardedStockDataManager class applies stock commands in parallel on independent shards.
+ * Every symbol is routed to one of N shards, each holding its own StockDataManager and
+ * owned by a single worker thread that applies its commands in submission order. Commands
+ * for the same symbol therefore always apply in the order they were submitted.
+ * Commands are handed to the workers in batches to keep queue traffic low.
+ *
+ * An UPDATE that renames a stock to a symbol of another shard is split into two halves that
+ * share a Transfer. The source shard removes the old stock and signals whether it existed;
+ * the target shard waits for that signal at the position the UPDATE had in its own order,
+ * and then stores the stock under the new symbol. The source half is flushed to its worker
+ * before the target half is queued, and a target only ever waits for a transfer submitted
+ * earlier than everything behind it, so the shards cannot deadlock.
+ *
+ * Commands are submitted by a single dispatching thread, and the submitted StockCommand
+ * objects belong to the manager until {@link #awaitCompletion()} returns.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ShardedStockDataManager implements AutoCloseable {
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 64; // Batches waiting per shard
+    private static final Object[] STOP = new Object[0];
+
+    private final Shard[] shards;
+    /**
+     * Constructs a new ShardedStockDataManager and starts one worker thread per shard.
+     *
+     * @param shardCount the number of shards
+     * @throws IllegalArgumentException if shardCount is not positive
+     */
+    public ShardedStockDataManager(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+            Thread thread = new Thread(shards[i], "stock-shard-" + i);
+            thread.setDaemon(true);
+            shards[i].thread = thread;
+            thread.start();
+        }
+    }
+    /**
+     * Submits a command to the shard that owns its symbol.
+     *
+     * @param command the command to apply; it must not be changed afterwards
+     */
+    public void submit(StockCommand command) {
+        Shard source = shardOf(command.getSymbolKey(), command, false);
+        if (command.getType() == StockCommand.Type.UPDATE) {
+            Shard target = shardOf(command.getNewSymbolKey(), command, true);
+            if (target != source) {
+                Transfer transfer = new Transfer(command, source);
+                append(source, transfer);
+                flush(source);
+                append(target, transfer);
+                return;
+            }
+        }
+        append(source, command);
+    }
+    /**
+     * Hands every pending batch to the workers and waits until all submitted commands are applied.
+     *
+     * @throws IllegalStateException if a command failed on one of the shards
+     */
+    public void awaitCompletion() {
+        CountDownLatch barrier = new CountDownLatch(shards.length);
+        for (Shard shard : shards) {
+            append(shard, barrier);
+            flush(shard);
+        }
+        try {
+            barrier.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        }
+        for (Shard shard : shards) {
+            if (shard.failure != null) {
+                throw new IllegalStateException("A command failed on " + shard.thread.getName(), shard.failure);
+            }
+        }
+    }
+    /**
+     * Gets the number of stocks over all shards. Only meaningful after {@link #awaitCompletion()}.
+     *
+     * @return the number of stocks
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.manager.size();
+        }
+        return size;
+    }
+    /**
+     * Gets the number of SEARCH commands that found their stock. Only meaningful after {@link #awaitCompletion()}.
+     *
+     * @return the number of successful searches
+     */
+    public long getSearchHits() {
+        long hits = 0;
+        for (Shard shard : shards) {
+            hits += shard.searchHits;
+        }
+        return hits;
+    }
+    /**
+     * Gets the number of SEARCH commands that did not find their stock. Only meaningful after {@link #awaitCompletion()}.
+     *
+     * @return the number of failed searches
+     */
+    public long getSearchMisses() {
+        long misses = 0;
+        for (Shard shard : shards) {
+            misses += shard.searchMisses;
+        }
+        return misses;
+    }
+    /**
+     * Gets the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+    /**
+     * Applies every submitted command and stops the worker threads.
+     */
+    @Override
+    public void close() {
+        awaitCompletion();
+        for (Shard shard : shards) {
+            put(shard, STOP);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    /**
+     * Finds the shard that owns one of the symbols of a command.
+     * Packed keys are hashed directly; the symbol String is only used for fallback keys.
+     *
+     * @param key the packed symbol to route
+     * @param command the command the symbol belongs to
+     * @param newSymbol whether the key is the new symbol of an UPDATE
+     * @return the owning shard
+     */
+    private Shard shardOf(long key, StockCommand command, boolean newSymbol) {
+        long hash = key;
+        if (!SymbolKey.isPacked(key)) {
+            hash = newSymbol ? command.getNewSymbol().hashCode() : command.getSymbol().hashCode();
+        }
+        hash *= 0x9E3779B97F4A7C15L; // Fibonacci hashing spreads neighbouring symbols over the shards
+        return shards[(int) ((hash >>> 32) % shards.length)];
+    }
+    /**
+     * Adds an item to the pending batch of a shard, handing the batch over when it is full.
+     *
+     * @param shard the shard to add to
+     * @param item a StockCommand, Transfer, or CountDownLatch barrier
+     */
+    private void append(Shard shard, Object item) {
+        shard.pending[shard.pendingSize++] = item;
+        if (shard.pendingSize == BATCH_SIZE) {
+            flush(shard);
+        }
+    }
+    /**
+     * Hands the pending batch of a shard to its worker, if it is not empty.
+     *
+     * @param shard the shard to flush
+     */
+    private void flush(Shard shard) {
+        if (shard.pendingSize > 0) {
+            put(shard, shard.pending);
+            shard.pending = new Object[BATCH_SIZE];
+            shard.pendingSize = 0;
+        }
+    }
+    /**
+     * Puts a batch on the queue of a shard, waiting while the queue is full.
+     *
+     * @param shard the shard to hand the batch to
+     * @param batch the batch
+     */
+    private static void put(Shard shard, Object[] batch) {
+        try {
+            shard.queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting to " + shard.thread.getName(), e);
+        }
+    }
+    /**
+     * Shard class holds one StockDataManager and applies the batches queued for it.
+     */
+    private static final class Shard implements Runnable {
+        final StockDataManager manager = new StockDataManager();
+        final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Object[] pending = new Object[BATCH_SIZE]; // Owned by the dispatching thread
+        int pendingSize;
+        long searchHits, searchMisses; // Owned by the worker thread
+        volatile Throwable failure;
+        Thread thread;
+        /**
+         * Applies queued batches until the stop batch arrives.
+         */
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Object[] batch = queue.take();
+                    if (batch == STOP) {
+                        return;
+                    }
+                    for (Object item : batch) {
+                        if (item == null) {
+                            break;
+                        }
+                        apply(item);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        /**
+         * Applies one queued item. A failing command is recorded and does not stop the worker.
+         *
+         * @param item a StockCommand, Transfer, or CountDownLatch barrier
+         * @throws InterruptedException if interrupted while waiting for a transfer
+         */
+        private void apply(Object item) throws InterruptedException {
+            try {
+                if (item instanceof StockCommand) {
+                    StockCommand command = (StockCommand) item;
+                    if (command.getType() == StockCommand.Type.SEARCH) {
+                        if (command.applyTo(manager) != null) {
+                            searchHits++;
+                        } else {
+                            searchMisses++;
+                        }
+                    } else {
+                        command.applyTo(manager);
+                    }
+                } else if (item instanceof Transfer) {
+                    ((Transfer) item).applyOn(this);
+                } else {
+                    ((CountDownLatch) item).countDown();
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+    /**
+     * Transfer class carries an UPDATE whose old and new symbols live on different shards.
+     * It is queued on both shards and does the source half or the target half depending
+     * on which shard applies it.
+     */
+    private static final class Transfer {
+        private final StockCommand command;
+        private final Shard source;
+        private final CountDownLatch removed = new CountDownLatch(1);
+        private volatile boolean found;
+        /**
+         * Constructs a new Transfer.
+         *
+         * @param command the UPDATE command
+         * @param source the shard that owns the old symbol
+         */
+        Transfer(StockCommand command, Shard source) {
+            this.command = command;
+            this.source = source;
+        }
+        /**
+         * Applies the half of the transfer that belongs to the given shard.
+         * The source removes the old stock and releases the target; the target waits
+         * for the source and stores the stock under the new symbol if it existed.
+         *
+         * @param shard the shard applying the transfer
+         * @throws InterruptedException if interrupted while waiting for the source
+         */
+        void applyOn(Shard shard) throws InterruptedException {
+            if (shard == source) {
+                try {
+                    found = shard.manager.searchStock(command.getSymbol()) != null;
+                    if (found) {
+                        shard.manager.removeStock(command.getSymbol());
+                    }
+                } finally {
+                    removed.countDown();
+                }
+            } else {
+                removed.await();
+                if (found) {
+                    shard.manager.addOrUpdateStock(command.getNewSymbol(), command.getPrice(), command.getVolume(), command.getMarketCap());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+/**
+ * SkipListStockIndex class stores stocks in a ConcurrentSkipListMap keyed by packed symbols.
+ * Searches and iteration are safe while another thread modifies the index, so optimistic
+ * reads never see a torn structure, and ordered iteration and range scans follow the
+ * bottom level of the skip list in key order.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class SkipListStockIndex extends AbstractStockIndex {
+    private final ConcurrentSkipListMap<Long, Stock> stocks = new ConcurrentSkipListMap<>();
+    private int size; // Counted here, because the skip list counts its entries on every call
+    /**
+     * Searches for a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found
+     */
+    @Override
+    protected Stock searchPacked(long key) {
+        return stocks.get(key);
+    }
+    /**
+     * Searches for a stock by its packed key. The skip list is safe for concurrent reads,
+     * so this is the same as a normal search.
+     *
+     * @param key a packed symbol
+     * @return the found stock, or null if not found
+     */
+    @Override
+    protected Stock searchPackedOptimistic(long key) {
+        return stocks.get(key);
+    }
+    /**
+     * Computes a new stock for a packed key.
+     *
+     * @param key a packed symbol
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the key, or null if there is none
+     */
+    @Override
+    protected Stock computePacked(long key, BiFunction<String, Stock, Stock> remappingFunction) {
+        boolean[] existed = new boolean[1];
+        Stock computed = stocks.compute(key, (packed, stock) -> {
+            existed[0] = stock != null;
+            return remappingFunction.apply(existed[0] ? stock.getSymbol() : SymbolKey.decode(packed), stock);
+        });
+        if (existed[0] != (computed != null)) {
+            size += existed[0] ? -1 : 1;
+        }
+        return computed;
+    }
+    /**
+     * Deletes a stock by its packed key.
+     *
+     * @param key a packed symbol
+     * @return the removed stock, or null if no stock has the key
+     */
+    @Override
+    protected Stock deletePacked(long key) {
+        Stock removed = stocks.remove(key);
+        if (removed != null) {
+            size--;
+        }
+        return removed;
+    }
+    /**
+     * Gets the number of stocks stored under packed keys.
+     *
+     * @return the number of stocks
+     */
+    @Override
+    protected int packedSize() {
+        return size;
+    }
+    /**
+     * Passes every stock whose key lies in a range to the given action in key order.
+     *
+     * @param lo the lowest key of the range, inclusive
+     * @param hi the highest key of the range, inclusive
+     * @param action the action to perform on each stock
+     */
+    @Override
+    protected void forEachPacked(long lo, long hi, Consumer<Stock> action) {
+        stocks.subMap(lo, true, hi, true).values().forEach(action);
+    }
+}
@@ -10,6 +10,7 @@ public class Stock {
     private double price;
     private long volume;
     private long marketCap;
+    private TickHistory tickHistory; // Null unless the manager keeps tick histories
     /**
      * Constructs a new Stock with the specified symbol, price, volume, and market capitalization.
      *
@@ -24,6 +25,15 @@ public class Stock {
         this.volume = volume;
         this.marketCap = marketCap;
     }
+    /**
+     * Constructs a new Stock with the same symbol, price, volume, and market capitalization as another stock.
+     * The tick history is not copied, so copies stay cheap; use {@link TickHistory#TickHistory(TickHistory)} for that.
+     *
+     * @param other the stock to copy
+     */
+    public Stock(Stock other) {
+        this(other.symbol, other.price, other.volume, other.marketCap);
+    }
     /**
      * Gets the stock symbol.
      *
@@ -89,6 +99,22 @@ public class Stock {
     public void setMarketCap(long marketCap) {
         this.marketCap = marketCap;
     }
+    /**
+     * Gets the recent price and volume ticks of the stock.
+     *
+     * @return the tick history, or null if the stock has none
+     */
+    public TickHistory getTickHistory() {
+        return tickHistory;
+    }
+    /**
+     * Sets the recent price and volume ticks of the stock.
+     *
+     * @param tickHistory the tick history, or null to remove it
+     */
+    public void setTickHistory(TickHistory tickHistory) {
+        this.tickHistory = tickHistory;
+    }
     /**
      * Returns a string representation of the stock.
      *
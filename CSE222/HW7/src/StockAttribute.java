@@ -0,0 +1,51 @@
+import java.util.Comparator;
+/**
+ * StockAttribute enum lists the numeric stock attributes that can be indexed
+ * and queried in order, besides the symbol.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public enum StockAttribute {
+    PRICE {
+        @Override
+        public double valueOf(Stock stock) {
+            return stock.getPrice();
+        }
+    },
+    VOLUME {
+        @Override
+        public double valueOf(Stock stock) {
+            return stock.getVolume();
+        }
+    },
+    MARKET_CAP {
+        @Override
+        public double valueOf(Stock stock) {
+            return stock.getMarketCap();
+        }
+    };
+
+    private final Comparator<Stock> order = (a, b) -> {
+        int cmp = Double.compare(valueOf(a), valueOf(b));
+        if (cmp != 0) {
+            return cmp;
+        }
+        return SymbolKey.compare(SymbolKey.encode(a.getSymbol()), a.getSymbol(), SymbolKey.encode(b.getSymbol()), b.getSymbol());
+    };
+    /**
+     * Gets the value of this attribute for a stock.
+     *
+     * @param stock the stock to read
+     * @return the attribute value
+     */
+    public abstract double valueOf(Stock stock);
+    /**
+     * Gets a comparator that orders stocks by this attribute, breaking ties by symbol.
+     *
+     * @return the comparator
+     */
+    public Comparator<Stock> order() {
+        return order;
+    }
+}
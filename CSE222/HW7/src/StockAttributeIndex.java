@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+/**
+ * StockAttributeIndex class keeps the stocks ordered by one attribute, with ties broken by symbol.
+ * It answers top-k and value range queries in O(log n + k) without visiting the other stocks.
+ * A stock must be removed from the index before its attribute or symbol changes, and added back afterwards.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockAttributeIndex {
+    private final StockAttribute attribute;
+    private final TreeSet<Stock> stocks;
+    /**
+     * Constructs a new, empty index on the given attribute.
+     *
+     * @param attribute the attribute to order stocks by
+     */
+    public StockAttributeIndex(StockAttribute attribute) {
+        this.attribute = attribute;
+        this.stocks = new TreeSet<>(attribute.order());
+    }
+    /**
+     * Gets the attribute this index orders stocks by.
+     *
+     * @return the indexed attribute
+     */
+    public StockAttribute getAttribute() {
+        return attribute;
+    }
+    /**
+     * Adds a stock to the index.
+     *
+     * @param stock the stock to add
+     */
+    public void add(Stock stock) {
+        stocks.add(stock);
+    }
+    /**
+     * Removes a stock from the index. The stock must still have the attribute
+     * value and symbol it was added with.
+     *
+     * @param stock the stock to remove
+     */
+    public void remove(Stock stock) {
+        stocks.remove(stock);
+    }
+    /**
+     * Gets the number of indexed stocks.
+     *
+     * @return the number of stocks
+     */
+    public int size() {
+        return stocks.size();
+    }
+    /**
+     * Gets the k stocks with the highest attribute values, highest first.
+     *
+     * @param k the number of stocks to return
+     * @return up to k stocks in descending attribute order
+     */
+    public List<Stock> top(int k) {
+        List<Stock> result = new ArrayList<>(Math.max(0, Math.min(k, stocks.size())));
+        Iterator<Stock> iterator = stocks.descendingIterator();
+        while (result.size() < k && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+    /**
+     * Gets the stocks whose attribute values lie in a range, in ascending attribute order.
+     *
+     * @param lo the lowest value of the range, inclusive
+     * @param hi the highest value of the range, inclusive
+     * @return the stocks in the range
+     */
+    public List<Stock> range(double lo, double hi) {
+        List<Stock> result = new ArrayList<>();
+        for (Stock stock : stocks.tailSet(probe(lo), true)) {
+            if (attribute.valueOf(stock) > hi) {
+                break;
+            }
+            result.add(stock);
+        }
+        return result;
+    }
+    /**
+     * Creates a stock that is ordered before every indexed stock whose attribute
+     * value is at least the given value. The empty symbol has the smallest packed key.
+     *
+     * @param value the lowest attribute value of interest
+     * @return the probe stock
+     */
+    private static Stock probe(double value) {
+        long whole = (long) Math.ceil(value);
+        return new Stock("", value, whole, whole);
+    }
+}
@@ -0,0 +1,616 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+/**
+ * StockBenchmark class is a microbenchmark harness for StockDataManager operations that follows
+ * the JMH way of measuring: every parameter combination runs in fresh JVM forks with the JIT
+ * enabled, goes through timed warmup iterations before the measured ones, and is reported as
+ * throughput (ops/s) and average time (ns/op) with a 99.9% confidence interval. Results can be
+ * written as JSON in the layout of JMH result files, so runs of different versions can be compared.
+ *
+ * The parameters are the {@link StockIndex.Engine} holding the stocks, the tree size, the key
+ * distribution (uniform, or Zipf with most operations on a few hot symbols), and the operation mix:
+ * "read" only searches, "mixed" is 80% searches, 15% updates, and 5% remove-and-re-add pairs,
+ * "write" is 20%, 60%, and 20%, "scan" is 50% searches and 50% range scans over 100
+ * consecutive symbols, and "miss" is 50% searches and 50% searches of symbols that are not stored.
+ * The filter parameter turns the {@link SymbolFilter} of the manager on or off, and the cache parameter
+ * sets the capacity of its {@link StockCache}, 0 disabling it. Keys and operations
+ * are generated before measuring, and the tree keeps its size, so only the operations themselves are timed.
+ *
+ * Usage: java StockBenchmark [-f forks] [-wi warmupIterations] [-i iterations] [-w warmupMillis]
+ * [-r iterationMillis] [-p engine=avl,bplus,skiplist,hash] [-p filter=off,on] [-p cache=0,1024]
+ * [-p size=1000,100000] [-p distribution=uniform,zipf] [-p mix=read,mixed,write,scan,miss] [-jvmArg arg] [-rf json] [-rff file]
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockBenchmark {
+    private static final String BENCHMARK_NAME = "StockBenchmark.mix";
+    private static final String FORK_FLAG = "--fork";
+    private static final String RESULT_PREFIX = "ITERATION ";
+    private static final double ZIPF_EXPONENT = 0.99;
+    private static final int OPERATION_COUNT = 1 << 20; // Pregenerated operations, replayed cyclically
+    private static final int BATCH_SIZE = 1024; // Operations between two clock reads
+    private static final int SCAN_LENGTH = 100; // Symbols visited by a range scan
+    private static final byte SEARCH = 0, UPDATE = 1, CHURN = 2, SCAN = 3, MISS = 4;
+    private static final String[] PARAMETERS = {"engine", "filter", "cache", "size", "distribution", "mix"};
+    private static final int ENGINE = 0, FILTER = 1, CACHE = 2, SIZE = 3, DISTRIBUTION = 4, MIX = 5; // Indexes into PARAMETERS
+    private static final double[] T_999 = { // Two-sided 99.9% quantiles of Student's t for 1 to 30 degrees of freedom
+            636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+            4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+            3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+    private static final double Z_999 = 3.291;
+
+    private int forks = 2;
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long warmupMillis = 1000;
+    private long iterationMillis = 1000;
+    private final String[][] parameterValues = { // The values of each parameter, in the order of PARAMETERS
+            {"avl"}, {"off"}, {"0"}, {"1000", "100000", "1000000"}, {"uniform", "zipf"}, {"read", "mixed", "write"}};
+    private final List<String> jvmArgs = new ArrayList<>();
+    private String resultFile; // Null if no JSON is written
+    /**
+     * Runs the benchmark, or a single fork of it when started by the harness itself.
+     *
+     * @param args the options described in the class comment
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals(FORK_FLAG)) {
+            runFork(args);
+            return;
+        }
+        StockBenchmark benchmark = parse(args);
+        if (benchmark == null) {
+            System.out.println("Usage: java StockBenchmark [-f forks] [-wi warmupIterations] [-i iterations] "
+                    + "[-w warmupMillis] [-r iterationMillis] [-p engine=avl,bplus,skiplist,hash] [-p filter=off,on] [-p cache=0,1024] "
+                    + "[-p size=1000,100000] [-p distribution=uniform,zipf] [-p mix=read,mixed,write,scan,miss] [-jvmArg arg] "
+                    + "[-rf json] [-rff file]");
+            return;
+        }
+        try {
+            benchmark.run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Parses the command-line options.
+     *
+     * @param args the command-line arguments
+     * @return the configured benchmark, or null if the arguments are invalid
+     */
+    private static StockBenchmark parse(String[] args) {
+        StockBenchmark benchmark = new StockBenchmark();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    return null;
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "-f":
+                        benchmark.forks = Integer.parseInt(value);
+                        break;
+                    case "-wi":
+                        benchmark.warmupIterations = Integer.parseInt(value);
+                        break;
+                    case "-i":
+                        benchmark.iterations = Integer.parseInt(value);
+                        break;
+                    case "-w":
+                        benchmark.warmupMillis = Long.parseLong(value);
+                        break;
+                    case "-r":
+                        benchmark.iterationMillis = Long.parseLong(value);
+                        break;
+                    case "-jvmArg":
+                        benchmark.jvmArgs.add(value);
+                        break;
+                    case "-rf":
+                        if (!value.equals("json")) {
+                            return null;
+                        }
+                        if (benchmark.resultFile == null) {
+                            benchmark.resultFile = "bench-result.json";
+                        }
+                        break;
+                    case "-rff":
+                        benchmark.resultFile = value;
+                        break;
+                    case "-p":
+                        if (!benchmark.setParameter(value)) {
+                            return null;
+                        }
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (IllegalArgumentException e) { // Also thrown for a bad number or an unknown engine
+            return null;
+        }
+        if (benchmark.forks < 0 || benchmark.warmupIterations < 0 || benchmark.iterations <= 0
+                || benchmark.warmupMillis <= 0 || benchmark.iterationMillis <= 0) {
+            return null;
+        }
+        return benchmark;
+    }
+    /**
+     * Sets the values of a parameter from a "name=value1,value2" option.
+     *
+     * @param assignment the parameter assignment
+     * @return true if the parameter and all of its values are valid
+     * @throws IllegalArgumentException if a number or an engine cannot be parsed
+     */
+    private boolean setParameter(String assignment) {
+        int equals = assignment.indexOf('=');
+        if (equals < 0) {
+            return false;
+        }
+        String name = assignment.substring(0, equals);
+        String[] values = assignment.substring(equals + 1).split(",");
+        switch (name) {
+            case "engine":
+                for (String value : values) {
+                    StockIndex.Engine.of(value);
+                }
+                break;
+            case "filter":
+                for (String value : values) {
+                    if (!value.equals("off") && !value.equals("on")) {
+                        return false;
+                    }
+                }
+                break;
+            case "cache":
+                for (String value : values) {
+                    if (Integer.parseInt(value) < 0) {
+                        return false;
+                    }
+                }
+                break;
+            case "size":
+                for (String value : values) {
+                    if (Integer.parseInt(value) <= 0) {
+                        return false;
+                    }
+                }
+                break;
+            case "distribution":
+                for (String value : values) {
+                    if (!value.equals("uniform") && !value.equals("zipf")) {
+                        return false;
+                    }
+                }
+                break;
+            case "mix":
+                for (String value : values) {
+                    if (mixOf(value) == null) {
+                        return false;
+                    }
+                }
+                break;
+            default:
+                return false;
+        }
+        parameterValues[Arrays.asList(PARAMETERS).indexOf(name)] = values;
+        return true;
+    }
+    /**
+     * Runs every parameter combination, prints a summary table, and writes the JSON results.
+     *
+     * @throws IOException if a fork cannot be started or the results cannot be written
+     */
+    private void run() throws IOException {
+        List<String> json = new ArrayList<>();
+        List<String> table = new ArrayList<>();
+        String[] columns = new String[PARAMETERS.length];
+        for (int p = 0; p < PARAMETERS.length; p++) {
+            int width = PARAMETERS[p].length() + 2;
+            for (String value : parameterValues[p]) {
+                width = Math.max(width, value.length());
+            }
+            columns[p] = " %" + width + "s";
+        }
+        StringBuilder header = new StringBuilder(String.format("%-20s", "Benchmark"));
+        for (int p = 0; p < PARAMETERS.length; p++) {
+            header.append(String.format(columns[p], "(" + PARAMETERS[p] + ")"));
+        }
+        table.add(header + String.format(" %6s %4s %16s %12s  %s", "Mode", "Cnt", "Score", "Error", "Units"));
+
+        int[] index = new int[PARAMETERS.length]; // The value of each parameter in the current combination
+        do {
+            String[] params = new String[PARAMETERS.length];
+            StringBuilder description = new StringBuilder();
+            StringBuilder row = new StringBuilder(String.format("%-20s", BENCHMARK_NAME));
+            for (int p = 0; p < PARAMETERS.length; p++) {
+                params[p] = parameterValues[p][index[p]];
+                description.append(p == 0 ? "" : ", ").append(PARAMETERS[p]).append(" = ").append(params[p]);
+                row.append(String.format(columns[p], params[p]));
+            }
+            System.out.printf("# Parameters: (%s)%n", description);
+            long[][][] forkResults = new long[Math.max(forks, 1)][][];
+            for (int fork = 0; fork < forkResults.length; fork++) {
+                forkResults[fork] = (forks == 0) ? measure(params, warmupIterations, iterations, warmupMillis, iterationMillis)
+                        : fork(fork, params);
+            }
+            for (boolean throughput : new boolean[]{true, false}) {
+                double[][] raw = scores(forkResults, throughput);
+                double[] stats = statistics(raw);
+                String mode = throughput ? "thrpt" : "avgt";
+                String unit = throughput ? "ops/s" : "ns/op";
+                table.add(row + String.format(Locale.ROOT, " %6s %4d %16.3f +- %10.3f  %s",
+                        mode, (int) stats[3], stats[0], stats[1], unit));
+                json.add(toJson(params, mode, unit, stats, raw));
+            }
+        } while (nextCombination(index));
+
+        System.out.println();
+        for (String line : table) {
+            System.out.println(line);
+        }
+        if (resultFile != null) {
+            Files.write(Paths.get(resultFile), Arrays.asList("[", String.join(",\n", json), "]"), StandardCharsets.UTF_8);
+            System.out.println("Results written to " + resultFile);
+        }
+    }
+    /**
+     * Runs one fork of a parameter combination in a new JVM and collects its measured iterations.
+     *
+     * @param fork the number of the fork, counting from 0
+     * @param params the value of each parameter, in the order of PARAMETERS
+     * @return the operation count and elapsed nanoseconds of each measured iteration
+     * @throws IOException if the fork cannot be started or fails
+     */
+    private long[][] fork(int fork, String[] params) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StockBenchmark.class.getName());
+        command.add(FORK_FLAG);
+        command.addAll(Arrays.asList(params));
+        command.addAll(Arrays.asList(String.valueOf(warmupIterations), String.valueOf(iterations),
+                String.valueOf(warmupMillis), String.valueOf(iterationMillis)));
+        System.out.printf("# Fork: %d of %d%n", fork + 1, forks);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<long[]> results = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    String[] fields = line.substring(RESULT_PREFIX.length()).split(" ");
+                    results.add(new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1])});
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        try {
+            if (process.waitFor() != 0 || results.size() != iterations) {
+                throw new IOException("Benchmark fork failed with exit code " + process.exitValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a benchmark fork", e);
+        }
+        return results.toArray(new long[0][]);
+    }
+    /**
+     * Runs a single fork inside a JVM started by {@link #fork} and prints its measured iterations.
+     *
+     * @param args the fork flag, the value of each parameter in the order of PARAMETERS, warmup iterations,
+     *             iterations, warmup milliseconds, and iteration milliseconds
+     */
+    private static void runFork(String[] args) {
+        int n = 1 + PARAMETERS.length;
+        long[][] results = measure(Arrays.copyOfRange(args, 1, n), Integer.parseInt(args[n]), Integer.parseInt(args[n + 1]),
+                Long.parseLong(args[n + 2]), Long.parseLong(args[n + 3]));
+        for (long[] result : results) {
+            System.out.println(RESULT_PREFIX + result[0] + " " + result[1]);
+        }
+    }
+    /**
+     * Builds the workload of a parameter combination and runs its warmup and measured iterations.
+     *
+     * @param params the value of each parameter, in the order of PARAMETERS
+     * @param warmupIterations the number of warmup iterations
+     * @param iterations the number of measured iterations
+     * @param warmupMillis the length of a warmup iteration
+     * @param iterationMillis the length of a measured iteration
+     * @return the operation count and elapsed nanoseconds of each measured iteration
+     */
+    private static long[][] measure(String[] params, int warmupIterations, int iterations, long warmupMillis,
+                                    long iterationMillis) {
+        Workload workload = new Workload(StockIndex.Engine.of(params[ENGINE]), params[FILTER].equals("on"),
+                Integer.parseInt(params[CACHE]), Integer.parseInt(params[SIZE]), params[DISTRIBUTION].equals("zipf"),
+                mixOf(params[MIX]));
+        for (int i = 0; i < warmupIterations; i++) {
+            long[] result = workload.iterate(warmupMillis * 1_000_000);
+            System.out.printf(Locale.ROOT, "# Warmup Iteration %2d: %.3f ops/s%n", i + 1, result[0] / (result[1] / 1e9));
+        }
+        long[][] results = new long[iterations][];
+        for (int i = 0; i < iterations; i++) {
+            results[i] = workload.iterate(iterationMillis * 1_000_000);
+            System.out.printf(Locale.ROOT, "Iteration %2d: %.3f ops/s%n", i + 1, results[i][0] / (results[i][1] / 1e9));
+        }
+        System.out.println("# Checksum: " + workload.sink);
+        return results;
+    }
+    /**
+     * Advances to the next parameter combination, varying the last parameter fastest.
+     *
+     * @param index the value of each parameter in the current combination, updated in place
+     * @return false if the current combination was the last one
+     */
+    private boolean nextCombination(int[] index) {
+        for (int p = index.length - 1; p >= 0; p--) {
+            if (++index[p] < parameterValues[p].length) {
+                return true;
+            }
+            index[p] = 0;
+        }
+        return false;
+    }
+    /**
+     * Converts measured iterations into scores.
+     *
+     * @param forkResults the operation count and elapsed nanoseconds of each iteration of each fork
+     * @param throughput whether to compute throughput in ops/s instead of average time in ns/op
+     * @return the score of each iteration of each fork
+     */
+    private static double[][] scores(long[][][] forkResults, boolean throughput) {
+        double[][] raw = new double[forkResults.length][];
+        for (int fork = 0; fork < forkResults.length; fork++) {
+            raw[fork] = new double[forkResults[fork].length];
+            for (int i = 0; i < forkResults[fork].length; i++) {
+                long operations = forkResults[fork][i][0];
+                long nanos = forkResults[fork][i][1];
+                raw[fork][i] = throughput ? operations / (nanos / 1e9) : (double) nanos / operations;
+            }
+        }
+        return raw;
+    }
+    /**
+     * Computes the mean of all scores and the half-width of its 99.9% confidence interval.
+     *
+     * @param raw the score of each iteration of each fork
+     * @return the mean, the error, the standard deviation, and the number of scores
+     */
+    private static double[] statistics(double[][] raw) {
+        int count = 0;
+        double sum = 0;
+        for (double[] fork : raw) {
+            for (double score : fork) {
+                sum += score;
+                count++;
+            }
+        }
+        double mean = sum / count;
+        double squares = 0;
+        for (double[] fork : raw) {
+            for (double score : fork) {
+                squares += (score - mean) * (score - mean);
+            }
+        }
+        double deviation = (count > 1) ? Math.sqrt(squares / (count - 1)) : 0;
+        double quantile = (count > 1) ? ((count - 1 <= T_999.length) ? T_999[count - 2] : Z_999) : Double.NaN;
+        double error = (count > 1) ? quantile * deviation / Math.sqrt(count) : Double.NaN;
+        return new double[]{mean, error, deviation, count};
+    }
+    /**
+     * Formats one result as a JSON object in the layout of JMH result files.
+     *
+     * @param params the value of each parameter, in the order of PARAMETERS
+     * @param mode "thrpt" or "avgt"
+     * @param unit the unit of the scores
+     * @param stats the mean, error, standard deviation, and count of the scores
+     * @param raw the score of each iteration of each fork
+     * @return the JSON object
+     */
+    private String toJson(String[] params, String mode, String unit, double[] stats, double[][] raw) {
+        StringBuilder paramData = new StringBuilder();
+        for (int p = 0; p < PARAMETERS.length; p++) {
+            paramData.append(p == 0 ? "" : ", ").append('"').append(PARAMETERS[p]).append("\": \"").append(escape(params[p])).append('"');
+        }
+        StringBuilder rawData = new StringBuilder();
+        for (double[] fork : raw) {
+            rawData.append(rawData.length() == 0 ? "[" : ", [");
+            for (int i = 0; i < fork.length; i++) {
+                rawData.append(i == 0 ? "" : ", ").append(number(fork[i]));
+            }
+            rawData.append(']');
+        }
+        return String.format(Locale.ROOT, "  {%n"
+                        + "    \"benchmark\": \"%s\",%n"
+                        + "    \"mode\": \"%s\",%n"
+                        + "    \"jvm\": \"%s\",%n"
+                        + "    \"jdkVersion\": \"%s\",%n"
+                        + "    \"forks\": %d,%n"
+                        + "    \"warmupIterations\": %d,%n"
+                        + "    \"warmupTime\": \"%d ms\",%n"
+                        + "    \"measurementIterations\": %d,%n"
+                        + "    \"measurementTime\": \"%d ms\",%n"
+                        + "    \"params\": {%s},%n"
+                        + "    \"primaryMetric\": {%n"
+                        + "      \"score\": %s,%n"
+                        + "      \"scoreError\": %s,%n"
+                        + "      \"scoreConfidence\": [%s, %s],%n"
+                        + "      \"scoreUnit\": \"%s\",%n"
+                        + "      \"rawData\": [%s]%n"
+                        + "    }%n"
+                        + "  }",
+                BENCHMARK_NAME, mode, escape(Paths.get(System.getProperty("java.home"), "bin", "java").toString()),
+                escape(System.getProperty("java.version")), forks, warmupIterations, warmupMillis, iterations,
+                iterationMillis, paramData, number(stats[0]), number(stats[1]),
+                number(stats[0] - stats[1]), number(stats[0] + stats[1]), unit, rawData);
+    }
+    /**
+     * Formats a number for JSON, which has no representation for NaN.
+     *
+     * @param value the number
+     * @return the number, or "NaN" as a string
+     */
+    private static String number(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", value);
+    }
+    /**
+     * Escapes backslashes and quotes for a JSON string.
+     *
+     * @param value the string
+     * @return the escaped string
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+    /**
+     * Gets the percentages of searches, updates, remove-and-re-add pairs, range scans, and searches
+     * of missing symbols of an operation mix.
+     *
+     * @param mix the name of the mix
+     * @return the percentages, or null if the mix is unknown
+     */
+    private static int[] mixOf(String mix) {
+        switch (mix) {
+            case "read":
+                return new int[]{100, 0, 0, 0, 0};
+            case "mixed":
+                return new int[]{80, 15, 5, 0, 0};
+            case "write":
+                return new int[]{20, 60, 20, 0, 0};
+            case "scan":
+                return new int[]{50, 0, 0, 50, 0};
+            case "miss":
+                return new int[]{50, 0, 0, 0, 50};
+            default:
+                return null;
+        }
+    }
+    /**
+     * Workload class holds a loaded StockDataManager and the pregenerated operations run against it.
+     */
+    private static final class Workload {
+        private final StockDataManager manager;
+        private final String[] symbols; // Symbols in the tree, in random order
+        private final String[] sortedSymbols; // Symbols in the tree, in symbol order, for range scans
+        private final String[] missingSymbols; // Symbols between those in the tree, which are never stored
+        private final int[] keys = new int[OPERATION_COUNT]; // Index into symbols for each operation
+        private final byte[] operations = new byte[OPERATION_COUNT];
+        private final double[] prices = new double[OPERATION_COUNT];
+        private int cursor;
+        long sink; // Consumes results so that the JIT cannot remove the operations
+        /**
+         * Constructs a new Workload and loads the tree.
+         *
+         * @param engine the index engine holding the stocks
+         * @param filter whether to enable the symbol filter
+         * @param cacheCapacity the capacity of the search cache, or 0 to disable it
+         * @param size the number of stocks in the tree
+         * @param zipf whether keys follow a Zipf distribution instead of a uniform one
+         * @param mix the percentages of searches, updates, remove-and-re-add pairs, range scans,
+         *            and searches of missing symbols
+         */
+        Workload(StockIndex.Engine engine, boolean filter, int cacheCapacity, int size, boolean zipf, int[] mix) {
+            manager = new StockDataManager(engine, false, filter, cacheCapacity);
+            SplittableRandom random = new SplittableRandom(size);
+            Stock[] sorted = new Stock[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = new Stock(symbolOf(i), 10 + 990 * random.nextDouble(), 100000 + random.nextInt(900000),
+                        1000000 + random.nextInt(9000000));
+            }
+            manager.bulkLoad(Arrays.asList(sorted).iterator());
+
+            symbols = new String[size];
+            sortedSymbols = new String[size];
+            missingSymbols = new String[size];
+            for (int i = 0; i < size; i++) {
+                sortedSymbols[i] = sorted[i].getSymbol();
+                missingSymbols[i] = sorted[i].getSymbol() + "Z";
+                int j = random.nextInt(i + 1); // Shuffle, so that the hot Zipf ranks are spread over the tree
+                symbols[i] = symbols[j];
+                symbols[j] = sorted[i].getSymbol();
+            }
+            ZipfDistribution distribution = zipf ? new ZipfDistribution(size, ZIPF_EXPONENT) : null;
+            for (int i = 0; i < OPERATION_COUNT; i++) {
+                keys[i] = zipf ? distribution.sample(random) : random.nextInt(size);
+                int roll = random.nextInt(100);
+                operations[i] = (roll < mix[0]) ? SEARCH : (roll < mix[0] + mix[1]) ? UPDATE
+                        : (roll < mix[0] + mix[1] + mix[2]) ? CHURN : (roll < 100 - mix[4]) ? SCAN : MISS;
+                prices[i] = 10 + 990 * random.nextDouble();
+            }
+        }
+        /**
+         * Runs operations in batches until the given time has passed.
+         *
+         * @param nanos the length of the iteration
+         * @return the number of operations and the elapsed nanoseconds
+         */
+        long[] iterate(long nanos) {
+            long operationCount = 0;
+            long start = System.nanoTime();
+            long now;
+            do {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    step();
+                }
+                operationCount += BATCH_SIZE;
+                now = System.nanoTime();
+            } while (now - start < nanos);
+            return new long[]{operationCount, now - start};
+        }
+        /**
+         * Runs the next pregenerated operation.
+         */
+        private void step() {
+            int index = cursor;
+            cursor = (cursor + 1) & (OPERATION_COUNT - 1);
+            String symbol = symbols[keys[index]];
+            switch (operations[index]) {
+                case SEARCH:
+                    Stock stock = manager.searchStock(symbol);
+                    sink += (stock != null) ? stock.getVolume() : 0;
+                    break;
+                case UPDATE:
+                    manager.addOrUpdateStock(symbol, prices[index], index, index);
+                    break;
+                case CHURN:
+                    manager.removeStock(symbol);
+                    manager.addOrUpdateStock(symbol, prices[index], index, index);
+                    break;
+                case SCAN:
+                    int last = Math.min(keys[index] + SCAN_LENGTH, sortedSymbols.length) - 1;
+                    manager.forEachInRange(sortedSymbols[keys[index]], sortedSymbols[last], found -> sink += found.getVolume());
+                    break;
+                default:
+                    sink += (manager.searchStock(missingSymbols[keys[index]]) != null) ? 1 : 0;
+                    break;
+            }
+        }
+        /**
+         * Creates the symbol with the given index. Symbols are ordered like their indexes.
+         *
+         * @param index the index of the symbol
+         * @return a symbol of uppercase letters
+         */
+        private static String symbolOf(int index) {
+            char[] letters = new char[6];
+            for (int i = letters.length - 1; i >= 0; i--) {
+                letters[i] = (char) ('A' + index % 26);
+                index /= 26;
+            }
+            return new String(letters);
+        }
+    }
+}
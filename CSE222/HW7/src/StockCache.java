@@ -0,0 +1,340 @@
+import java.util.Arrays;
+/**
+ * StockCache class is a bounded cache from packed symbols to stocks with CLOCK eviction.
+ * It sits in front of the index of a StockDataManager, so searches for hot symbols are
+ * answered by one hash probe instead of a walk from the root of the tree.
+ *
+ * The entries live in fixed slots with a reference bit each. A hit sets the bit of its slot.
+ * When the cache is full, a hand sweeps over the slots, clearing set bits, and evicts the
+ * first entry whose bit was already clear, so an entry survives as long as it is hit once per
+ * sweep. This approximates LRU without moving entries on every hit. An open-addressing table
+ * with linear probing maps each packed symbol to its slot.
+ *
+ * Under skewed traffic most misses are for rarely requested symbols, which would evict hot
+ * stocks. As in TinyLFU, a small count-min sketch therefore estimates how often each symbol
+ * was looked up recently, and a full cache only admits a new stock if its symbol is looked
+ * up more often than the symbol of the stock the clock would evict. The sketch halves its
+ * counters periodically, so old popularity fades.
+ *
+ * Stocks are cached by reference, so changes to their details are seen without invalidation;
+ * the owner must invalidate a symbol when its stock leaves the index or changes its symbol.
+ * The cache is not thread-safe, because even a hit changes it.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockCache {
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L; // Multiplier for Fibonacci hashing
+    private static final int SKETCH_DEPTH = 4; // Counters per symbol in the frequency sketch
+    private static final int SKETCH_WIDTH = 8; // Sketch counters per cache slot
+    private static final int SKETCH_MAX = 15; // Counters saturate here, so halving keeps them recent
+    private static final int SAMPLE_FACTOR = 10; // Lookups per cache slot between two halvings
+    private static final long MAX_TABLE_LENGTH = 1 << 30; // Longest power-of-two array length
+
+    private final long[] keys; // Packed symbol of each slot
+    private final Stock[] stocks; // Cached stock of each slot, or null if the slot is free
+    private final boolean[] referenced; // Reference bit of each slot
+    private final int[] table; // Slot + 1 for each entry of the hash table, or 0 if the entry is empty
+    private final int[] freeSlots; // Stack of slots freed by invalidation
+    private final byte[] sketch; // Count-min sketch of recent lookups per symbol
+    private final int sampleSize; // Lookups between two halvings of the sketch
+    private int samples; // Lookups since the last halving
+    private int freeCount;
+    private int used; // Slots taken at least once, counting from slot 0
+    private int hand; // Next slot the clock inspects
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long invalidations;
+    /**
+     * Constructs a new, empty StockCache.
+     * The sketch needs SKETCH_WIDTH counters per slot in one array, which limits the capacity
+     * to 2^27 stocks.
+     *
+     * @param capacity the maximum number of cached stocks
+     * @throws IllegalArgumentException if capacity is not positive or too large
+     */
+    public StockCache(int capacity) {
+        if (capacity <= 0 || (long) capacity * SKETCH_WIDTH > MAX_TABLE_LENGTH) {
+            throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+        }
+        keys = new long[capacity];
+        stocks = new Stock[capacity];
+        referenced = new boolean[capacity];
+        freeSlots = new int[capacity];
+        table = new int[(int) (Long.highestOneBit(2L * capacity - 1) << 1)]; // At most half full
+        sketch = new byte[(int) (Long.highestOneBit(Math.max((long) capacity * SKETCH_WIDTH, 64) - 1) << 1)];
+        sampleSize = Math.max(capacity, 64) * SAMPLE_FACTOR; // Below 2^31, since capacity is at most 2^27
+    }
+    /**
+     * Gets the cached stock of a packed symbol and counts a hit or a miss.
+     *
+     * @param key the packed symbol
+     * @return the cached stock, or null if the symbol is not cached
+     */
+    public Stock get(long key) {
+        recordAccess(key);
+        int entry = find(key);
+        if (entry < 0) {
+            misses++;
+            return null;
+        }
+        int slot = table[entry] - 1;
+        referenced[slot] = true;
+        hits++;
+        return stocks[slot];
+    }
+    /**
+     * Caches the stock of a packed symbol, which was just looked up with {@link #get}.
+     * If the cache is full, the stock replaces the stock chosen by the clock only if its symbol
+     * was looked up more often recently; otherwise it is not cached. A new entry starts with a
+     * clear reference bit, so it is evicted before the stocks hit since the hand last passed them.
+     *
+     * @param key the packed symbol
+     * @param stock the stock stored under the symbol
+     */
+    public void put(long key, Stock stock) {
+        int entry = find(key);
+        if (entry >= 0) {
+            stocks[table[entry] - 1] = stock;
+            return;
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else if (used < stocks.length) {
+            slot = used++;
+        } else {
+            slot = evict(key);
+            if (slot < 0) {
+                return;
+            }
+        }
+        keys[slot] = key;
+        stocks[slot] = stock;
+        referenced[slot] = false;
+        table[~find(key)] = slot + 1; // The complement of the empty entry where the probe ended
+    }
+    /**
+     * Removes a packed symbol from the cache, if it is cached.
+     *
+     * @param key the packed symbol
+     */
+    public void invalidate(long key) {
+        int entry = find(key);
+        if (entry >= 0) {
+            int slot = table[entry] - 1;
+            removeEntry(entry);
+            stocks[slot] = null;
+            freeSlots[freeCount++] = slot;
+            invalidations++;
+        }
+    }
+    /**
+     * Removes every stock from the cache. The counters are kept.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(stocks, null);
+        freeCount = 0;
+        used = 0;
+        hand = 0;
+    }
+    /**
+     * Gets the maximum number of cached stocks.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return stocks.length;
+    }
+    /**
+     * Gets the number of cached stocks.
+     *
+     * @return the number of cached stocks
+     */
+    public int size() {
+        return used - freeCount;
+    }
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+    /**
+     * Gets the number of lookups not answered from the cache.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+    /**
+     * Gets the number of stocks evicted to make room for others.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+    /**
+     * Gets the number of stocks that were not cached because their symbols were looked up
+     * less often than the symbols of the stocks they would have evicted.
+     *
+     * @return the number of rejected stocks
+     */
+    public long getRejections() {
+        return rejections;
+    }
+    /**
+     * Gets the number of stocks removed because they left the index or changed their symbol.
+     *
+     * @return the number of invalidations
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+    /**
+     * Gets the fraction of lookups answered from the cache.
+     *
+     * @return the hit ratio, or 0 if there were no lookups
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+    /**
+     * Returns a summary of the counters.
+     *
+     * @return a string with the size, hits, misses, evictions, rejections, and invalidations
+     */
+    @Override
+    public String toString() {
+        return String.format("Search cache: %d of %d stocks, %d hits, %d misses (%.2f%% hit ratio), %d evictions, "
+                + "%d rejections, %d invalidations", size(), getCapacity(), hits, misses, 100 * getHitRatio(), evictions,
+                rejections, invalidations);
+    }
+    /**
+     * Advances the clock hand to a slot whose reference bit is clear, clearing the bits it passes,
+     * and removes the entry of that slot if the candidate symbol is looked up more often than
+     * the symbol of the slot. Only called when every slot is taken.
+     *
+     * @param candidate the packed symbol that needs a slot
+     * @return the freed slot, or -1 if the candidate is not admitted
+     */
+    private int evict(long candidate) {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1 == stocks.length) ? 0 : hand + 1;
+        }
+        int slot = hand;
+        hand = (hand + 1 == stocks.length) ? 0 : hand + 1;
+        if (frequency(candidate) <= frequency(keys[slot])) {
+            rejections++;
+            return -1;
+        }
+        removeEntry(find(keys[slot]));
+        evictions++;
+        return slot;
+    }
+    /**
+     * Counts a lookup of a packed symbol in the frequency sketch, and halves every
+     * counter of the sketch once enough lookups were counted since the last halving.
+     *
+     * @param key the packed symbol
+     */
+    private void recordAccess(long key) {
+        long hash = mix(key);
+        long step = (hash >>> 32) | 1;
+        int mask = sketch.length - 1;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            int cell = (int) (hash + i * step) & mask;
+            if (sketch[cell] < SKETCH_MAX) {
+                sketch[cell]++;
+            }
+        }
+        if (++samples == sampleSize) {
+            samples = 0;
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] >>= 1;
+            }
+        }
+    }
+    /**
+     * Estimates how often a packed symbol was looked up recently.
+     *
+     * @param key the packed symbol
+     * @return the smallest sketch counter of the symbol
+     */
+    private int frequency(long key) {
+        long hash = mix(key);
+        long step = (hash >>> 32) | 1;
+        int mask = sketch.length - 1;
+        int frequency = SKETCH_MAX;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            frequency = Math.min(frequency, sketch[(int) (hash + i * step) & mask]);
+        }
+        return frequency;
+    }
+    /**
+     * Finds the table entry of a packed symbol.
+     *
+     * @param key the packed symbol
+     * @return the entry holding the symbol, or the complement (~entry) of the empty entry where the probe ended
+     */
+    private int find(long key) {
+        int mask = table.length - 1;
+        int entry = home(key);
+        while (table[entry] != 0) {
+            if (keys[table[entry] - 1] == key) {
+                return entry;
+            }
+            entry = (entry + 1) & mask;
+        }
+        return ~entry;
+    }
+    /**
+     * Empties a table entry and shifts back the later entries of its probe run
+     * that would otherwise no longer be found.
+     *
+     * @param entry the entry to empty
+     */
+    private void removeEntry(int entry) {
+        int mask = table.length - 1;
+        int hole = entry;
+        table[hole] = 0;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = home(keys[table[next] - 1]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) { // The hole lies on the probe path of the entry
+                table[hole] = table[next];
+                table[next] = 0;
+                hole = next;
+            }
+        }
+    }
+    /**
+     * Scrambles the bits of a packed symbol with the finalizer of SplitMix64, so that
+     * its counters are spread over the whole sketch by double hashing.
+     *
+     * @param key the packed symbol
+     * @return the scrambled key
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+    /**
+     * Gets the first table entry probed for a packed symbol.
+     *
+     * @param key the packed symbol
+     * @return the home entry of the symbol
+     */
+    private int home(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> (64 - Integer.numberOfTrailingZeros(table.length)));
+    }
+}
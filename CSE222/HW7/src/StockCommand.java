@@ -0,0 +1,358 @@
+import java.util.function.Consumer;
+/**
+ * StockCommand class represents one parsed stock management command
+ * (ADD, REMOVE, SEARCH, or UPDATE) together with its parameters.
+ * Symbols are held as packed {@link SymbolKey} keys. A symbol String is only kept
+ * for fallback keys, or created on demand, so a single command object can be
+ * reused as a flyweight for every line of a file without creating garbage.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockCommand {
+    /**
+     * Type enum lists the supported command types.
+     */
+    public enum Type {
+        ADD, REMOVE, SEARCH, UPDATE
+    }
+
+    private Type type;
+    private long symbolKey;
+    private long newSymbolKey;
+    private String symbol; // Null until needed when symbolKey is packed
+    private String newSymbol; // Null until needed when newSymbolKey is packed
+    private double price;
+    private long volume;
+    private long marketCap;
+    private String error; // Message of an invalid line, or null for a valid command
+    /**
+     * Constructs a new, empty StockCommand to be filled by one of the setters.
+     */
+    public StockCommand() {
+    }
+    /**
+     * Parses a command line.
+     * Invalid lines are reported on standard output with the same messages as before
+     * and yield null.
+     *
+     * @param line the command line to parse
+     * @return the parsed command, or null if the line is not a valid command
+     */
+    public static StockCommand parse(String line) {
+        return parse(line, System.out::println);
+    }
+    /**
+     * Parses a command line, passing the message for an invalid line to the given handler.
+     *
+     * @param line the command line to parse
+     * @param errorHandler receives the message if the line is not a valid command
+     * @return the parsed command, or null if the line is not a valid command
+     */
+    public static StockCommand parse(String line, Consumer<String> errorHandler) {
+        String[] tokens = line.split(" ");
+        if (tokens.length == 0) { // Only spaces, like CommandFileParser reports it
+            errorHandler.accept("Unknown command: ");
+            return null;
+        }
+        String command = tokens[0];
+        StockCommand result = new StockCommand();
+
+        switch (command) {
+            case "ADD":
+                if (tokens.length != 5) {
+                    errorHandler.accept(usageMessage(Type.ADD));
+                    return null;
+                }
+                try {
+                    return result.setAdd(tokens[1], Double.parseDouble(tokens[2]), Long.parseLong(tokens[3]), Long.parseLong(tokens[4]));
+                } catch (NumberFormatException e) {
+                    errorHandler.accept(invalidNumberMessage(Type.ADD));
+                    return null;
+                }
+            case "REMOVE":
+                if (tokens.length != 2) {
+                    errorHandler.accept(usageMessage(Type.REMOVE));
+                    return null;
+                }
+                return result.setRemove(tokens[1]);
+            case "SEARCH":
+                if (tokens.length != 2) {
+                    errorHandler.accept(usageMessage(Type.SEARCH));
+                    return null;
+                }
+                return result.setSearch(tokens[1]);
+            case "UPDATE":
+                if (tokens.length != 6) {
+                    errorHandler.accept(usageMessage(Type.UPDATE));
+                    return null;
+                }
+                try {
+                    return result.setUpdate(tokens[1], tokens[2], Double.parseDouble(tokens[3]), Long.parseLong(tokens[4]), Long.parseLong(tokens[5]));
+                } catch (NumberFormatException e) {
+                    errorHandler.accept(invalidNumberMessage(Type.UPDATE));
+                    return null;
+                }
+            default:
+                errorHandler.accept("Unknown command: " + command);
+                return null;
+        }
+    }
+    /**
+     * Gets the message reported for a command with the wrong number of parameters.
+     *
+     * @param type the command type
+     * @return the message
+     */
+    public static String usageMessage(Type type) {
+        switch (type) {
+            case ADD:
+                return "ADD command requires symbol, price, volume, and marketCap parameters.";
+            case REMOVE:
+                return "REMOVE command requires symbol parameter.";
+            case SEARCH:
+                return "SEARCH command requires symbol parameter.";
+            default:
+                return "UPDATE command requires old symbol, new symbol, new price, new volume, and new marketCap parameters.";
+        }
+    }
+    /**
+     * Gets the message reported for an ADD or UPDATE command whose numeric parameters cannot be parsed.
+     *
+     * @param type the command type, ADD or UPDATE
+     * @return the message
+     */
+    public static String invalidNumberMessage(Type type) {
+        if (type == Type.ADD) {
+            return "Invalid parameters for ADD command. Price, volume, and marketCap must be numbers.";
+        }
+        return "Invalid parameters for UPDATE command. New price, new volume, and new marketCap must be numbers.";
+    }
+    /**
+     * Makes this an ADD command.
+     *
+     * @param symbol the stock symbol
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @return this command
+     */
+    public StockCommand setAdd(String symbol, double price, long volume, long marketCap) {
+        return set(Type.ADD, symbol, null, price, volume, marketCap);
+    }
+    /**
+     * Makes this a REMOVE command.
+     *
+     * @param symbol the symbol of the stock to remove
+     * @return this command
+     */
+    public StockCommand setRemove(String symbol) {
+        return set(Type.REMOVE, symbol, null, 0, 0, 0);
+    }
+    /**
+     * Makes this a SEARCH command.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return this command
+     */
+    public StockCommand setSearch(String symbol) {
+        return set(Type.SEARCH, symbol, null, 0, 0, 0);
+    }
+    /**
+     * Makes this an UPDATE command.
+     *
+     * @param symbol the current symbol of the stock
+     * @param newSymbol the new symbol of the stock
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     * @return this command
+     */
+    public StockCommand setUpdate(String symbol, String newSymbol, double newPrice, long newVolume, long newMarketCap) {
+        return set(Type.UPDATE, symbol, newSymbol, newPrice, newVolume, newMarketCap);
+    }
+    /**
+     * Sets every field of this command from symbol Strings.
+     *
+     * @param type the command type
+     * @param symbol the (current) symbol
+     * @param newSymbol the new symbol for UPDATE, or null
+     * @param price the (new) price
+     * @param volume the (new) volume
+     * @param marketCap the (new) market capitalization
+     * @return this command
+     */
+    private StockCommand set(Type type, String symbol, String newSymbol, double price, long volume, long marketCap) {
+        long newKey = (newSymbol != null) ? SymbolKey.encode(newSymbol) : SymbolKey.FALLBACK;
+        set(type, SymbolKey.encode(symbol), symbol, newKey, newSymbol, price, volume, marketCap);
+        return this;
+    }
+    /**
+     * Sets every field of this command from packed symbol keys.
+     * A symbol String is only required when its key is {@link SymbolKey#FALLBACK};
+     * for packed keys it may be null and is decoded when first asked for.
+     *
+     * @param type the command type
+     * @param symbolKey the packed (current) symbol
+     * @param symbol the (current) symbol, or null if symbolKey is packed
+     * @param newSymbolKey the packed new symbol for UPDATE
+     * @param newSymbol the new symbol, or null if newSymbolKey is packed or unused
+     * @param price the (new) price
+     * @param volume the (new) volume
+     * @param marketCap the (new) market capitalization
+     * @return this command
+     */
+    public StockCommand set(Type type, long symbolKey, String symbol, long newSymbolKey, String newSymbol,
+                            double price, long volume, long marketCap) {
+        this.type = type;
+        this.symbolKey = symbolKey;
+        this.symbol = symbol;
+        this.newSymbolKey = newSymbolKey;
+        this.newSymbol = newSymbol;
+        this.price = price;
+        this.volume = volume;
+        this.marketCap = marketCap;
+        this.error = null;
+        return this;
+    }
+    /**
+     * Marks this command as an invalid line, so that its message can be reported later,
+     * in order with the valid commands. An invalid command has no type and cannot be applied.
+     *
+     * @param message the message describing the invalid line
+     * @return this command
+     */
+    public StockCommand setInvalid(String message) {
+        set(null, SymbolKey.FALLBACK, null, SymbolKey.FALLBACK, null, 0, 0, 0);
+        this.error = message;
+        return this;
+    }
+    /**
+     * Creates an independent copy of this command, for handing it to another thread.
+     *
+     * @return the copy
+     */
+    public StockCommand copy() {
+        StockCommand copy = new StockCommand();
+        copy.set(type, symbolKey, symbol, newSymbolKey, newSymbol, price, volume, marketCap);
+        copy.error = error;
+        return copy;
+    }
+    /**
+     * Applies this command to a manager, using the packed symbol keys whenever possible.
+     *
+     * @param manager the manager to apply the command to
+     * @return for SEARCH, the found stock or null; null for every other command
+     * @throws IllegalStateException if the command is invalid or was never set
+     */
+    public Stock applyTo(StockDataManager manager) {
+        boolean packed = SymbolKey.isPacked(symbolKey);
+        switch (type) {
+            case ADD:
+                if (packed) {
+                    manager.addOrUpdateStock(symbolKey, price, volume, marketCap);
+                } else {
+                    manager.addOrUpdateStock(symbol, price, volume, marketCap);
+                }
+                return null;
+            case REMOVE:
+                if (packed) {
+                    manager.removeStock(symbolKey);
+                } else {
+                    manager.removeStock(symbol);
+                }
+                return null;
+            case SEARCH:
+                return packed ? manager.searchStock(symbolKey) : manager.searchStock(symbol);
+            case UPDATE:
+                if (packed && SymbolKey.isPacked(newSymbolKey)) {
+                    manager.updateStock(symbolKey, newSymbolKey, price, volume, marketCap);
+                } else {
+                    manager.updateStock(getSymbol(), getNewSymbol(), price, volume, marketCap);
+                }
+                return null;
+            default:
+                throw new IllegalStateException("Command has no type");
+        }
+    }
+    /**
+     * Gets the command type.
+     *
+     * @return the command type
+     */
+    public Type getType() {
+        return type;
+    }
+    /**
+     * Gets the message of an invalid line.
+     *
+     * @return the message, or null if this command is valid
+     */
+    public String getError() {
+        return error;
+    }
+    /**
+     * Gets the packed symbol key, which is the current symbol for UPDATE.
+     *
+     * @return the packed symbol
+     */
+    public long getSymbolKey() {
+        return symbolKey;
+    }
+    /**
+     * Gets the packed new symbol key of an UPDATE command.
+     *
+     * @return the packed new symbol
+     */
+    public long getNewSymbolKey() {
+        return newSymbolKey;
+    }
+    /**
+     * Gets the symbol, which is the current symbol for UPDATE.
+     * For packed keys the String is created on the first call.
+     *
+     * @return the symbol
+     */
+    public String getSymbol() {
+        if (symbol == null) {
+            symbol = SymbolKey.decode(symbolKey);
+        }
+        return symbol;
+    }
+    /**
+     * Gets the new symbol of an UPDATE command.
+     * For packed keys the String is created on the first call.
+     *
+     * @return the new symbol, or null for other commands
+     */
+    public String getNewSymbol() {
+        if (newSymbol == null && type == Type.UPDATE) {
+            newSymbol = SymbolKey.decode(newSymbolKey);
+        }
+        return newSymbol;
+    }
+    /**
+     * Gets the price, which is the new price for UPDATE.
+     *
+     * @return the price
+     */
+    public double getPrice() {
+        return price;
+    }
+    /**
+     * Gets the volume, which is the new volume for UPDATE.
+     *
+     * @return the volume
+     */
+    public long getVolume() {
+        return volume;
+    }
+    /**
+     * Gets the market capitalization, which is the new market capitalization for UPDATE.
+     *
+     * @return the market capitalization
+     */
+    public long getMarketCap() {
+        return marketCap;
+    }
+}
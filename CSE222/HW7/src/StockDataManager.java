@@ -1,22 +1,106 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 /**
  * StockDataManager class for managing stock information using an AVL tree.
  * This class supports adding, updating, removing, and searching stocks.
+ * The stocks can also be kept in another {@link StockIndex.Engine}, such as a B+tree,
+ * a skip list, or a hash table, chosen when the manager is constructed.
+ * Optionally, it also keeps secondary indexes on price, volume, and market
+ * capitalization for top-k and value range queries, a {@link SymbolFilter}
+ * that rejects searches, removals, and updates of unknown symbols without
+ * searching the index, and a {@link StockCache} that answers searches for
+ * recently found symbols without searching the index. It can also keep a
+ * bounded {@link TickHistory} of recent prices and volumes for every stock.
  *
  * @author Muhammet Akkurt
  * @version 1.0
  */
 public class StockDataManager {
-    private AVLTree avlTree;
+    private static final int INITIAL_FILTER_CAPACITY = 1024;
+
+    private final StockIndex.Engine engine;
+    private StockIndex store; // The AVL tree, or the index of another engine, holding the stocks
+    private StockAttributeIndex[] indexes; // One index per StockAttribute, or null if disabled
+    private SymbolFilter filter; // Null if disabled
+    private final StockCache cache; // Null if disabled
+    private int tickCapacity; // Ticks kept per stock, or 0 if tick histories are disabled
+    private double tickSmoothing;
     /**
      * Constructs a new StockDataManager with an empty AVL tree.
      */
     public StockDataManager() {
-        avlTree = new AVLTree();
+        this(false);
+    }
+    /**
+     * Constructs a new StockDataManager with an empty AVL tree and, if requested,
+     * empty secondary indexes on every {@link StockAttribute}.
+     *
+     * @param secondaryIndexes whether to maintain secondary indexes
+     */
+    public StockDataManager(boolean secondaryIndexes) {
+        this(StockIndex.Engine.AVL, secondaryIndexes);
+    }
+    /**
+     * Constructs a new StockDataManager that keeps its stocks in an empty index of the given
+     * engine and, if requested, empty secondary indexes on every {@link StockAttribute}.
+     * Rank and range queries are logarithmic only with the AVL engine; the other engines
+     * answer them by visiting the stocks.
+     *
+     * @param engine the index implementation that holds the stocks
+     * @param secondaryIndexes whether to maintain secondary indexes
+     */
+    public StockDataManager(StockIndex.Engine engine, boolean secondaryIndexes) {
+        this(engine, secondaryIndexes, false);
+    }
+    /**
+     * Constructs a new StockDataManager that keeps its stocks in an empty index of the given
+     * engine and, if requested, empty secondary indexes and an empty {@link SymbolFilter}.
+     * The filter grows with the number of stocks, so its false positive rate stays low.
+     *
+     * @param engine the index implementation that holds the stocks
+     * @param secondaryIndexes whether to maintain secondary indexes
+     * @param symbolFilter whether to check symbols against a filter before searching the index
+     */
+    public StockDataManager(StockIndex.Engine engine, boolean secondaryIndexes, boolean symbolFilter) {
+        this(engine, secondaryIndexes, symbolFilter, 0);
+    }
+    /**
+     * Constructs a new StockDataManager like {@link #StockDataManager(StockIndex.Engine, boolean, boolean)}
+     * that also caches up to cacheCapacity found stocks, so that repeated searches for symbols
+     * that can be packed skip the index. The cache is not thread-safe, so subclasses that
+     * search concurrently must not enable it.
+     *
+     * @param engine the index implementation that holds the stocks
+     * @param secondaryIndexes whether to maintain secondary indexes
+     * @param symbolFilter whether to check symbols against a filter before searching the index
+     * @param cacheCapacity the maximum number of cached stocks, or 0 to disable the cache
+     * @throws IllegalArgumentException if cacheCapacity is negative or too large
+     */
+    public StockDataManager(StockIndex.Engine engine, boolean secondaryIndexes, boolean symbolFilter, int cacheCapacity) {
+        this.engine = engine;
+        cache = (cacheCapacity != 0) ? new StockCache(cacheCapacity) : null;
+        store = engine.create();
+        if (symbolFilter) {
+            filter = new SymbolFilter(INITIAL_FILTER_CAPACITY);
+        }
+        if (secondaryIndexes) {
+            StockAttribute[] attributes = StockAttribute.values();
+            indexes = new StockAttributeIndex[attributes.length];
+            for (StockAttribute attribute : attributes) {
+                indexes[attribute.ordinal()] = new StockAttributeIndex(attribute);
+            }
+        }
     }
     /**
      * Adds a new stock or updates an existing stock in the AVL tree.
      * If the stock already exists, its price, volume, and market capitalization are updated.
      * Otherwise, a new stock is added to the AVL tree.
+     * Both cases are handled in a single descent of the tree.
      *
      * @param symbol the stock symbol
      * @param price the stock price
@@ -24,15 +108,43 @@ public class StockDataManager {
      * @param marketCap the stock market capitalization
      */
     public void addOrUpdateStock(String symbol, double price, long volume, long marketCap) {
-        Stock existingStock = avlTree.search(symbol);
-        if (existingStock != null) {
-            existingStock.setPrice(price);
-            existingStock.setVolume(volume);
-            existingStock.setMarketCap(marketCap);
-        } else {
-            Stock newStock = new Stock(symbol, price, volume, marketCap);
-            avlTree.insert(newStock);
-        }
+        store.compute(symbol, upsert(price, volume, marketCap));
+        growFilter();
+    }
+    /**
+     * Adds a new stock or updates an existing stock given its packed symbol key.
+     * The symbol String is only created when a new stock is added.
+     *
+     * @param symbolKey the packed stock symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     */
+    public void addOrUpdateStock(long symbolKey, double price, long volume, long marketCap) {
+        store.compute(symbolKey, upsert(price, volume, marketCap));
+        growFilter();
+    }
+    /**
+     * Creates the remapping function that adds a stock or updates an existing one.
+     *
+     * @param price the stock price
+     * @param volume the stock volume
+     * @param marketCap the stock market capitalization
+     * @return the remapping function for {@link StockIndex#compute}
+     */
+    private BiFunction<String, Stock, Stock> upsert(double price, long volume, long marketCap) {
+        return (symbol, stock) -> {
+            if (stock == null) {
+                stock = new Stock(symbol, price, volume, marketCap);
+                admit(symbol);
+            } else {
+                unindex(stock);
+                setDetails(stock, price, volume, marketCap);
+            }
+            index(stock);
+            recordTick(stock);
+            return stock;
+        };
     }
     /**
      * Removes a stock from the AVL tree by its symbol.
@@ -40,7 +152,19 @@ public class StockDataManager {
      * @param symbol the symbol of the stock to be removed
      */
     public void removeStock(String symbol) {
-        avlTree.delete(symbol);
+        if (!rejects(symbol)) {
+            unindexRemoved(checkMiss(store.delete(symbol)));
+        }
+    }
+    /**
+     * Removes a stock from the AVL tree by its packed symbol key.
+     *
+     * @param symbolKey the packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     */
+    public void removeStock(long symbolKey) {
+        if (!rejects(symbolKey)) {
+            unindexRemoved(checkMiss(store.delete(symbolKey)));
+        }
     }
     /**
      * Searches for a stock in the AVL tree by its symbol.
@@ -49,12 +173,68 @@ public class StockDataManager {
      * @return the found stock, or null if not found
      */
     public Stock searchStock(String symbol) {
-        return avlTree.search(symbol);
+        if (cache != null) {
+            long symbolKey = SymbolKey.encode(symbol);
+            if (SymbolKey.isPacked(symbolKey)) {
+                return cachedSearch(symbolKey);
+            }
+        }
+        return rejects(symbol) ? null : checkMiss(store.search(symbol));
+    }
+    /**
+     * Searches for a stock in the AVL tree by its packed symbol key.
+     *
+     * @param symbolKey the packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @return the found stock, or null if not found
+     */
+    public Stock searchStock(long symbolKey) {
+        return (cache != null) ? cachedSearch(symbolKey) : rejects(symbolKey) ? null : checkMiss(store.search(symbolKey));
+    }
+    /**
+     * Searches for a stock in the cache, and in the tree if it is not cached,
+     * caching the stock found there.
+     *
+     * @param symbolKey the packed symbol of the stock to search for
+     * @return the found stock, or null if not found
+     */
+    private Stock cachedSearch(long symbolKey) {
+        Stock found = cache.get(symbolKey);
+        if (found == null && !rejects(symbolKey)) {
+            found = checkMiss(store.search(symbolKey));
+            if (found != null) {
+                cache.put(symbolKey, found);
+            }
+        }
+        return found;
+    }
+    /**
+     * Searches for a stock without any guarantee of consistency while another thread
+     * is modifying the tree. Subclasses that add locking use this for optimistic reads,
+     * and must validate the result before using it.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found or the search gave up
+     */
+    protected Stock searchStockOptimistic(String symbol) {
+        return rejects(symbol) ? null : store.searchOptimistic(symbol);
+    }
+    /**
+     * Searches for a stock by its packed symbol key without any guarantee of
+     * consistency, like {@link #searchStockOptimistic(String)}.
+     *
+     * @param symbolKey the packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @return the found stock, or null if not found or the search gave up
+     */
+    protected Stock searchStockOptimistic(long symbolKey) {
+        return rejects(symbolKey) ? null : store.searchOptimistic(symbolKey);
     }
     /**
      * Updates the details of an existing stock in the AVL tree.
      * If the stock is found, its symbol, price, volume, and market capitalization are updated.
-     * If the stock symbol changes, the stock is reinserted with the new symbol.
+     * If the stock symbol changes, the stock is detached from the tree before its
+     * symbol is changed and then stored under the new symbol, replacing any stock
+     * already stored there. This is the same sequence as {@link AVLTree#rekey},
+     * with the secondary indexes updated while the stock is detached.
      *
      * @param symbol the current symbol of the stock
      * @param newSymbol the new symbol of the stock
@@ -63,16 +243,452 @@ public class StockDataManager {
      * @param newMarketCap the new market capitalization of the stock
      */
     public void updateStock(String symbol, String newSymbol, double newPrice, long newVolume, long newMarketCap) {
-        Stock stock = avlTree.search(symbol);
+        if (rejects(symbol)) {
+            return;
+        }
+        if (symbol.equals(newSymbol)) {
+            checkMiss(store.compute(symbol, update(newPrice, newVolume, newMarketCap)));
+        } else {
+            move(checkMiss(store.delete(symbol)), newSymbol, newPrice, newVolume, newMarketCap);
+        }
+    }
+    /**
+     * Updates the details of an existing stock given its current and new packed
+     * symbol keys, like {@link #updateStock(String, String, double, long, long)}.
+     *
+     * @param symbolKey the current packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @param newSymbolKey the new packed symbol, which must not be {@link SymbolKey#FALLBACK}
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     */
+    public void updateStock(long symbolKey, long newSymbolKey, double newPrice, long newVolume, long newMarketCap) {
+        if (rejects(symbolKey)) {
+            return;
+        }
+        if (symbolKey == newSymbolKey) {
+            checkMiss(store.compute(symbolKey, update(newPrice, newVolume, newMarketCap)));
+        } else {
+            Stock moved = checkMiss(store.delete(symbolKey));
+            if (moved != null) {
+                move(moved, SymbolKey.decode(newSymbolKey), newPrice, newVolume, newMarketCap);
+            }
+        }
+    }
+    /**
+     * Creates the remapping function that updates an existing stock and leaves a missing one missing.
+     *
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     * @return the remapping function for {@link StockIndex#compute}
+     */
+    private BiFunction<String, Stock, Stock> update(double newPrice, long newVolume, long newMarketCap) {
+        return (symbol, stock) -> {
+            if (stock != null) {
+                unindex(stock);
+                setDetails(stock, newPrice, newVolume, newMarketCap);
+                index(stock);
+                recordTick(stock);
+            }
+            return stock;
+        };
+    }
+    /**
+     * Stores a stock that was just deleted from the tree under a new symbol with new details,
+     * replacing any stock already stored there.
+     *
+     * @param moved the deleted stock, or null if nothing was deleted
+     * @param newSymbol the new symbol of the stock
+     * @param newPrice the new price of the stock
+     * @param newVolume the new volume of the stock
+     * @param newMarketCap the new market capitalization of the stock
+     */
+    private void move(Stock moved, String newSymbol, double newPrice, long newVolume, long newMarketCap) {
+        if (moved == null) {
+            return;
+        }
+        unindex(moved);
+        forget(moved);
+        moved.setSymbol(newSymbol);
+        setDetails(moved, newPrice, newVolume, newMarketCap);
+        store.compute(newSymbol, (symbol, displaced) -> {
+            unindexRemoved(displaced);
+            admit(symbol);
+            return moved;
+        });
+        index(moved);
+        recordTick(moved);
+        growFilter();
+    }
+    /**
+     * Replaces every managed stock with stocks that are already sorted by symbol.
+     * The AVL tree is built in linear time instead of by one insertion per stock.
+     *
+     * @param sorted an iterator over the stocks in strictly ascending symbol order;
+     *               they become owned by this manager
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+     */
+    public void bulkLoad(Iterator<Stock> sorted) {
+        List<Stock> stocks = new ArrayList<>();
+        sorted.forEachRemaining(stocks::add);
+        load(stocks.toArray(new Stock[0]));
+    }
+    /**
+     * Replaces every managed stock with the given stocks, building the AVL tree
+     * in linear time and in parallel for large inputs, or filling an index of another engine.
+     * Subclasses use this to restore a saved state.
+     *
+     * @param sorted the stocks in strictly ascending symbol order; they become owned by this manager
+     * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+     */
+    protected void load(Stock[] sorted) {
+        store = engine.fromSorted(sorted);
+        if (filter != null) {
+            rebuildFilter(sorted.length);
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+        if (indexes != null) {
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = new StockAttributeIndex(StockAttribute.values()[i]);
+            }
+            for (Stock stock : sorted) {
+                index(stock);
+            }
+        }
+    }
+    /**
+     * Passes every stock to the given action in symbol order, unless the engine is unordered.
+     * The action must not change the stocks.
+     *
+     * @param action the action to perform on each stock
+     */
+    public void forEach(Consumer<Stock> action) {
+        store.forEach(action);
+    }
+    /**
+     * Passes every stock whose symbol lies between lo and hi, both inclusive, to the given action,
+     * in symbol order unless the engine is unordered. The action must not change the stocks.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @param action the action to perform on each stock in the range
+     */
+    public void forEachInRange(String lo, String hi, Consumer<Stock> action) {
+        store.forEachInRange(lo, hi, action);
+    }
+    /**
+     * Creates a stream over every stock, in symbol order unless the engine is unordered.
+     * With the AVL engine the stream walks the tree lazily, and a parallel stream splits it at
+     * subtree boundaries; the manager must then not be changed until the stream is consumed.
+     * The stream must not change the stocks.
+     *
+     * @param parallel whether the stream is parallel
+     * @return a stream of the stocks
+     */
+    public Stream<Stock> stream(boolean parallel) {
+        return StreamSupport.stream(store.spliterator(), parallel);
+    }
+    /**
+     * Starts keeping the recent ticks of every stock. Each addition or update of a stock records
+     * a tick of its new price and volume, timestamped with {@link System#currentTimeMillis()},
+     * and a stock receives its history at its first tick. The histories are kept in memory only,
+     * and a renamed stock keeps its history.
+     *
+     * @param capacity the number of ticks kept per stock, which bounds the memory of each history
+     * @param smoothing the weight of a new tick in the exponential moving average, in (0, 1]
+     * @throws IllegalArgumentException if capacity is not positive or smoothing is out of range
+     */
+    public void enableTickHistory(int capacity, double smoothing) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (!(smoothing > 0 && smoothing <= 1)) {
+            throw new IllegalArgumentException("Smoothing must be in (0, 1]: " + smoothing);
+        }
+        tickCapacity = capacity;
+        tickSmoothing = smoothing;
+    }
+    /**
+     * Gets the tick history of a stock.
+     *
+     * @param symbol the symbol of the stock
+     * @return the tick history, or null if the stock is not found or has no ticks yet
+     */
+    public TickHistory getTickHistory(String symbol) {
+        Stock stock = store.search(symbol);
+        return (stock != null) ? stock.getTickHistory() : null;
+    }
+    /**
+     * Gets the symbol filter, whose counters show how many lookups it answered.
+     *
+     * @return the filter, or null if it is disabled
+     */
+    public SymbolFilter getSymbolFilter() {
+        return filter;
+    }
+    /**
+     * Gets the search cache, whose counters show its hit ratio.
+     *
+     * @return the cache, or null if it is disabled
+     */
+    public StockCache getSearchCache() {
+        return cache;
+    }
+    /**
+     * Gets the index implementation that holds the stocks.
+     *
+     * @return the engine
+     */
+    public StockIndex.Engine getEngine() {
+        return engine;
+    }
+    /**
+     * Gets the number of stocks being managed.
+     *
+     * @return the number of stocks
+     */
+    public int size() {
+        return store.size();
+    }
+    /**
+     * Gets the number of stocks whose symbols are ordered before the given symbol.
+     *
+     * @param symbol the symbol to rank
+     * @return the rank of the symbol
+     */
+    public int rank(String symbol) {
+        return store.rank(symbol);
+    }
+    /**
+     * Selects the stock with the given rank in symbol order.
+     *
+     * @param k the zero-based rank
+     * @return the stock with rank k, or null if k is out of range
+     */
+    public Stock select(int k) {
+        return store.select(k);
+    }
+    /**
+     * Counts the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the number of stocks in the range
+     */
+    public int countRange(String lo, String hi) {
+        return store.countRange(lo, hi);
+    }
+    /**
+     * Sums the market capitalization of the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the total market capitalization of the range
+     */
+    public long sumMarketCap(String lo, String hi) {
+        return store.sumMarketCap(lo, hi);
+    }
+    /**
+     * Finds the lowest price of the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the lowest price, or NaN if the range is empty
+     */
+    public double minPrice(String lo, String hi) {
+        return store.minPrice(lo, hi);
+    }
+    /**
+     * Finds the highest price of the stocks whose symbols lie between lo and hi, both inclusive.
+     *
+     * @param lo the lowest symbol of the range
+     * @param hi the highest symbol of the range
+     * @return the highest price, or NaN if the range is empty
+     */
+    public double maxPrice(String lo, String hi) {
+        return store.maxPrice(lo, hi);
+    }
+    /**
+     * Gets the k stocks with the highest values of an attribute, highest first.
+     *
+     * @param attribute the attribute to rank stocks by
+     * @param k the number of stocks to return
+     * @return up to k stocks in descending attribute order
+     * @throws IllegalStateException if secondary indexes are disabled
+     */
+    public List<Stock> topStocks(StockAttribute attribute, int k) {
+        return indexFor(attribute).top(k);
+    }
+    /**
+     * Gets the stocks whose values of an attribute lie between lo and hi, both inclusive,
+     * in ascending attribute order.
+     *
+     * @param attribute the attribute to filter stocks by
+     * @param lo the lowest value of the range
+     * @param hi the highest value of the range
+     * @return the stocks in the range
+     * @throws IllegalStateException if secondary indexes are disabled
+     */
+    public List<Stock> stocksInRange(StockAttribute attribute, double lo, double hi) {
+        return indexFor(attribute).range(lo, hi);
+    }
+    /**
+     * Gets the secondary index on an attribute.
+     *
+     * @param attribute the indexed attribute
+     * @return the index
+     * @throws IllegalStateException if secondary indexes are disabled
+     */
+    private StockAttributeIndex indexFor(StockAttribute attribute) {
+        if (indexes == null) {
+            throw new IllegalStateException("Secondary indexes are not enabled");
+        }
+        return indexes[attribute.ordinal()];
+    }
+    /**
+     * Adds a stock to every secondary index, if they are enabled.
+     *
+     * @param stock the stock to add
+     */
+    private void index(Stock stock) {
+        if (indexes != null) {
+            for (StockAttributeIndex index : indexes) {
+                index.add(stock);
+            }
+        }
+    }
+    /**
+     * Removes a stock from every secondary index, if they are enabled.
+     * Must be called before the price, volume, market capitalization, or symbol of the stock changes.
+     *
+     * @param stock the stock to remove
+     */
+    private void unindex(Stock stock) {
+        if (indexes != null) {
+            for (StockAttributeIndex index : indexes) {
+                index.remove(stock);
+            }
+        }
+    }
+    /**
+     * Removes a stock that left the tree from every secondary index, the symbol filter, and the cache.
+     *
+     * @param stock the stock that left the tree, or null if none did
+     */
+    private void unindexRemoved(Stock stock) {
         if (stock != null) {
-            stock.setSymbol(newSymbol);
-            stock.setPrice(newPrice);
-            stock.setVolume(newVolume);
-            stock.setMarketCap(newMarketCap);
-            if (!symbol.equals(newSymbol)) {
-                avlTree.delete(symbol);
-                avlTree.insert(stock);
+            unindex(stock);
+            forget(stock);
+        }
+    }
+    /**
+     * Removes the symbol of a stock that left the tree, or is about to change its symbol,
+     * from the symbol filter and the cache, if they are enabled.
+     *
+     * @param stock the stock whose symbol is no longer stored
+     */
+    private void forget(Stock stock) {
+        if (filter != null) {
+            filter.remove(SymbolFilter.keyOf(stock.getSymbol()));
+        }
+        if (cache != null) {
+            long symbolKey = SymbolKey.encode(stock.getSymbol());
+            if (SymbolKey.isPacked(symbolKey)) {
+                cache.invalidate(symbolKey);
+            }
+        }
+    }
+    /**
+     * Adds the symbol of a stock that entered the tree to the symbol filter, if it is enabled.
+     *
+     * @param symbol the symbol of the new stock
+     */
+    private void admit(String symbol) {
+        if (filter != null) {
+            filter.add(SymbolFilter.keyOf(symbol));
+        }
+    }
+    /**
+     * Checks a symbol against the symbol filter, if it is enabled.
+     *
+     * @param symbol the symbol to check
+     * @return true if the symbol is certainly not stored
+     */
+    private boolean rejects(String symbol) {
+        return filter != null && !filter.mightContain(SymbolFilter.keyOf(symbol));
+    }
+    /**
+     * Checks a packed symbol against the symbol filter, if it is enabled.
+     *
+     * @param symbolKey the packed symbol to check
+     * @return true if the symbol is certainly not stored
+     */
+    private boolean rejects(long symbolKey) {
+        return filter != null && !filter.mightContain(symbolKey);
+    }
+    /**
+     * Records a false positive of the symbol filter if a symbol that passed it was not found.
+     *
+     * @param found the stock found for the symbol, or null
+     * @return the found stock
+     */
+    private Stock checkMiss(Stock found) {
+        if (found == null && filter != null) {
+            filter.recordFalsePositive();
+        }
+        return found;
+    }
+    /**
+     * Replaces the symbol filter with one of twice the capacity once it holds more symbols
+     * than it was sized for, so that its false positive rate stays low.
+     */
+    private void growFilter() {
+        if (filter != null && filter.isOverloaded()) {
+            rebuildFilter(filter.getCapacity() * 2);
+        }
+    }
+    /**
+     * Replaces the symbol filter with a new one holding the symbol of every managed stock,
+     * keeping the counters of the old filter.
+     *
+     * @param capacity the minimum capacity of the new filter
+     */
+    private void rebuildFilter(int capacity) {
+        SymbolFilter rebuilt = new SymbolFilter(Math.max(capacity, INITIAL_FILTER_CAPACITY));
+        rebuilt.addCounters(filter);
+        store.forEach(stock -> rebuilt.add(SymbolFilter.keyOf(stock.getSymbol())));
+        filter = rebuilt;
+    }
+    /**
+     * Records the current price and volume of a stock in its tick history, if tick histories
+     * are enabled, creating the history at the first tick.
+     *
+     * @param stock the stock that was added or updated
+     */
+    private void recordTick(Stock stock) {
+        if (tickCapacity > 0) {
+            TickHistory history = stock.getTickHistory();
+            if (history == null) {
+                history = new TickHistory(tickCapacity, tickSmoothing);
+                stock.setTickHistory(history);
             }
+            history.record(System.currentTimeMillis(), stock.getPrice(), stock.getVolume());
         }
     }
+    /**
+     * Sets the price, volume, and market capitalization of a stock.
+     *
+     * @param stock the stock to update
+     * @param price the new price
+     * @param volume the new volume
+     * @param marketCap the new market capitalization
+     */
+    private static void setDetails(Stock stock, double price, long volume, long marketCap) {
+        stock.setPrice(price);
+        stock.setVolume(volume);
+        stock.setMarketCap(marketCap);
+    }
 }
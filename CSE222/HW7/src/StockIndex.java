@@ -0,0 +1,323 @@
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+/**
+ * StockIndex interface for the data structures that store the stocks of a StockDataManager
+ * by symbol. Symbols are ordered like {@link SymbolKey}: packed symbols by their keys, and
+ * symbols that cannot be packed after them, by String comparison.
+ *
+ * Every index supports inserting, deleting, computing, and searching stocks by symbol or by
+ * packed key. Ordered indexes pass stocks to {@link #forEach} in symbol order; unordered ones,
+ * such as a hash index, in no particular order. The rank and range queries have default
+ * implementations that visit the stocks one by one; indexes that keep subtree aggregates,
+ * such as AVLTree, answer them in logarithmic time instead.
+ *
+ * Stocks stored in an index must only be changed through {@link #compute}.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public interface StockIndex {
+    /**
+     * Engine enum lists the available index implementations.
+     */
+    enum Engine {
+        /** Augmented AVL tree with rank and range aggregates. */
+        AVL {
+            @Override
+            public StockIndex create() {
+                return new AVLTree();
+            }
+            @Override
+            public StockIndex fromSorted(Stock[] sorted) {
+                return AVLTree.fromSortedParallel(sorted);
+            }
+        },
+        /** B+tree with array nodes and linked leaves, for range scans. */
+        BPLUS {
+            @Override
+            public StockIndex create() {
+                return new BPlusTreeIndex();
+            }
+        },
+        /** Concurrent skip list, whose searches never block. */
+        SKIPLIST {
+            @Override
+            public StockIndex create() {
+                return new SkipListStockIndex();
+            }
+        },
+        /** Open-addressing hash table, for lookups without ordered queries. */
+        HASH {
+            @Override
+            public StockIndex create() {
+                return new HashStockIndex();
+            }
+        };
+        /**
+         * Creates an empty index.
+         *
+         * @return the new index
+         */
+        public abstract StockIndex create();
+        /**
+         * Creates an index holding stocks that are already sorted by symbol.
+         *
+         * @param sorted the stocks in strictly ascending symbol order
+         * @return the new index
+         * @throws IllegalArgumentException if the stocks are not in strictly ascending symbol order
+         */
+        public StockIndex fromSorted(Stock[] sorted) {
+            long previousKey = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                long key = SymbolKey.encode(sorted[i].getSymbol());
+                if (i > 0 && SymbolKey.compare(previousKey, sorted[i - 1].getSymbol(), key, sorted[i].getSymbol()) >= 0) {
+                    throw new IllegalArgumentException("Stocks are not in ascending symbol order at index " + i
+                            + ": " + sorted[i - 1].getSymbol() + ", " + sorted[i].getSymbol());
+                }
+                previousKey = key;
+            }
+            StockIndex index = create();
+            for (Stock stock : sorted) {
+                index.insert(stock);
+            }
+            return index;
+        }
+        /**
+         * Finds an engine by its name, ignoring case.
+         *
+         * @param name the name of the engine
+         * @return the engine
+         * @throws IllegalArgumentException if there is no engine with the name
+         */
+        public static Engine of(String name) {
+            for (Engine engine : values()) {
+                if (engine.name().equalsIgnoreCase(name)) {
+                    return engine;
+                }
+            }
+            throw new IllegalArgumentException("Unknown engine: " + name);
+        }
+    }
+    /**
+     * Inserts a stock, replacing any stock stored under its symbol.
+     *
+     * @param stock the stock to be inserted
+     */
+    void insert(Stock stock);
+    /**
+     * Deletes a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
+     */
+    Stock delete(String symbol);
+    /**
+     * Deletes a stock by its packed symbol key.
+     *
+     * @param key the packed symbol of the stock to be deleted
+     * @return the removed stock, or null if no stock has the symbol
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    Stock delete(long key);
+    /**
+     * Computes a new stock for the given symbol, in the manner of {@link java.util.Map#compute}.
+     * The remapping function receives the symbol and the stored stock, or null if there is none.
+     * A non-null result is stored under the symbol, and a null result removes the existing stock.
+     * The function must not modify this index.
+     *
+     * @param symbol the symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     * @throws IllegalArgumentException if the computed stock has a different symbol
+     */
+    Stock compute(String symbol, BiFunction<String, Stock, Stock> remappingFunction);
+    /**
+     * Computes a new stock for the given packed symbol key, like {@link #compute(String, BiFunction)}.
+     * The symbol String is only created when a new stock has to be computed.
+     *
+     * @param key the packed symbol of the stock to compute
+     * @param remappingFunction the function computing the new stock
+     * @return the stock now stored under the symbol, or null if there is none
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     *         or the computed stock has a different symbol
+     */
+    Stock compute(long key, BiFunction<String, Stock, Stock> remappingFunction);
+    /**
+     * Searches for a stock by its symbol.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found
+     */
+    Stock search(String symbol);
+    /**
+     * Searches for a stock by its packed symbol key.
+     *
+     * @param key the packed symbol of the stock to search for
+     * @return the found stock, or null if not found
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    Stock search(long key);
+    /**
+     * Searches for a stock while a writer may be modifying the index at the same time.
+     * The search must end and must not throw because of the writer, but its result may be
+     * wrong, and the caller must validate it, for example against a StampedLock stamp.
+     *
+     * @param symbol the symbol of the stock to search for
+     * @return the found stock, or null if not found or the search gave up
+     */
+    Stock searchOptimistic(String symbol);
+    /**
+     * Searches for a stock by its packed symbol key while a writer may be modifying
+     * the index, like {@link #searchOptimistic(String)}.
+     *
+     * @param key the packed symbol of the stock to search for
+     * @return the found stock, or null if not found or the search gave up
+     * @throws IllegalArgumentException if the key is {@link SymbolKey#FALLBACK}
+     */
+    Stock searchOptimistic(long key);
+    /**
+     * Gets the number of stocks in the index.
+     *
+     * @return the number of stocks
+     */
+    int size();
+    /**
+     * Passes every stock to the given action, in symbol order if the index is ordered.
+     *
+     * @param action the action to perform on each stock
+     */
+    void forEach(Consumer<Stock> action);
+    /**
+     * Checks whether {@link #forEach} and {@link #forEachInRange} visit stocks in symbol order.
+     *
+     * @return true for ordered indexes
+     */
+    default boolean isOrdered() {
+        return true;
+    }
+    /**
+     * Passes every stock whose symbol lies in a range to the given action,
+     * in symbol order if the index is ordered. This default visits every stock.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @param action the action to perform on each stock in the range
+     */
+    default void forEachInRange(String lo, String hi, Consumer<Stock> action) {
+        long loKey = SymbolKey.encode(lo);
+        long hiKey = SymbolKey.encode(hi);
+        forEach(stock -> {
+            long key = SymbolKey.encode(stock.getSymbol());
+            if (SymbolKey.compare(key, stock.getSymbol(), loKey, lo) >= 0
+                    && SymbolKey.compare(key, stock.getSymbol(), hiKey, hi) <= 0) {
+                action.accept(stock);
+            }
+        });
+    }
+    /**
+     * Creates a spliterator over the stocks, in symbol order if the index is ordered.
+     * This default copies the stocks into an array first, so the spliterator does not see
+     * later changes; indexes that can split themselves, such as AVLTree, walk their nodes instead.
+     *
+     * @return a spliterator over every stock
+     */
+    default Spliterator<Stock> spliterator() {
+        Stock[] stocks = new Stock[size()];
+        int[] count = {0};
+        forEach(stock -> stocks[count[0]++] = stock);
+        return Spliterators.spliterator(stocks, Spliterator.DISTINCT | Spliterator.NONNULL
+                | (isOrdered() ? Spliterator.ORDERED : 0));
+    }
+    /**
+     * Gets the rank of a symbol, which is the number of stored symbols ordered before it.
+     * This default visits every stock.
+     *
+     * @param symbol the symbol to rank
+     * @return the number of stocks with a smaller symbol
+     */
+    default int rank(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        int[] count = new int[1];
+        forEach(stock -> {
+            if (SymbolKey.compare(SymbolKey.encode(stock.getSymbol()), stock.getSymbol(), key, symbol) < 0) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+    /**
+     * Selects the stock with the given rank. This default visits the stocks in order up to
+     * the rank, or sorts all of them if the index is not ordered.
+     *
+     * @param k the zero-based rank of the stock in symbol order
+     * @return the stock with rank k, or null if k is not between 0 and size() - 1
+     */
+    default Stock select(int k) {
+        if (k < 0 || k >= size()) {
+            return null;
+        }
+        Stock[] stocks = new Stock[size()];
+        int[] count = new int[1];
+        forEach(stock -> {
+            if (count[0] < stocks.length) {
+                stocks[count[0]++] = stock;
+            }
+        });
+        if (!isOrdered()) {
+            Arrays.sort(stocks, (a, b) -> SymbolKey.compare(SymbolKey.encode(a.getSymbol()), a.getSymbol(),
+                    SymbolKey.encode(b.getSymbol()), b.getSymbol()));
+        }
+        return stocks[k];
+    }
+    /**
+     * Counts the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the number of stocks in the range
+     */
+    default int countRange(String lo, String hi) {
+        int[] count = new int[1];
+        forEachInRange(lo, hi, stock -> count[0]++);
+        return count[0];
+    }
+    /**
+     * Sums the market capitalization of the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the total market capitalization of the range
+     */
+    default long sumMarketCap(String lo, String hi) {
+        long[] sum = new long[1];
+        forEachInRange(lo, hi, stock -> sum[0] += stock.getMarketCap());
+        return sum[0];
+    }
+    /**
+     * Finds the lowest price among the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the lowest price, or NaN if the range is empty
+     */
+    default double minPrice(String lo, String hi) {
+        double[] bound = {Double.NaN};
+        forEachInRange(lo, hi, stock -> bound[0] = Double.isNaN(bound[0]) ? stock.getPrice() : Math.min(bound[0], stock.getPrice()));
+        return bound[0];
+    }
+    /**
+     * Finds the highest price among the stocks whose symbols lie in a range.
+     *
+     * @param lo the lowest symbol of the range, inclusive
+     * @param hi the highest symbol of the range, inclusive
+     * @return the highest price, or NaN if the range is empty
+     */
+    default double maxPrice(String lo, String hi) {
+        double[] bound = {Double.NaN};
+        forEachInRange(lo, hi, stock -> bound[0] = Double.isNaN(bound[0]) ? stock.getPrice() : Math.max(bound[0], stock.getPrice()));
+        return bound[0];
+    }
+}
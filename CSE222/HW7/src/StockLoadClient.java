@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+/**
+ * StockLoadClient class generates load for a StockServer from many concurrent connections
+ * and measures the time from sending each command to receiving its response.
+ *
+ * One thread drives every connection through a Selector, so thousands of connections need
+ * no more threads than one. Each connection keeps up to a fixed number of commands in flight
+ * and sends the next one as soon as a response arrives, until it has received the responses
+ * to all of its commands. The commands are a random mix of ADD, SEARCH, and UPDATE (without
+ * a change of symbol) on a fixed set of symbols; since the client waits for responses before
+ * sending more, latencies under overload are those of a closed system. The latencies of all
+ * connections are recorded in one LatencyHistogram.
+ *
+ * <pre>
+ * java StockLoadClient [--port N] [--connections N] [--requests N] [--pipeline N] [--symbols N] [--seed N]
+ * </pre>
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockLoadClient {
+    private static final double SEARCH_RATIO = 0.7; // Fraction of SEARCH commands
+    private static final double ADD_RATIO = 0.2; // Fraction of ADD commands; the rest are UPDATE commands
+    private static final int BUFFER_SIZE = 1 << 13;
+    private static final int MAX_COMMAND_LENGTH = 64; // Longest generated command line, with its terminator
+    private static final int SYMBOL_LETTERS = 4;
+    private static final int MAX_SYMBOLS = 26 * 26 * 26 * 26; // Distinct symbols of SYMBOL_LETTERS letters
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private int port = StockServer.DEFAULT_PORT;
+    private int connectionCount = 1000;
+    private int requestsPerConnection = 1000;
+    private int pipelineDepth = 1;
+    private int symbolCount = 10000;
+    private long seed = 42;
+    private String[] symbols;
+    private Random random;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long errors; // Responses starting with ERROR
+    /**
+     * Connection class holds the buffers and the send times of one client connection.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        final ByteBuffer out; // Commands not yet written, in write mode
+        final long[] sendTimes = new long[pipelineDepth]; // Ring of the send times of the commands in flight
+        int oldest; // Index of the send time of the oldest command in flight
+        int inFlight;
+        int sent;
+        int received;
+        /**
+         * Constructs a new Connection.
+         *
+         * @param channel the connecting channel
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.out = ByteBuffer.allocate(Math.max(BUFFER_SIZE, pipelineDepth * MAX_COMMAND_LENGTH));
+        }
+        /**
+         * Appends commands until the pipeline is full or every command was sent.
+         */
+        void fill() {
+            while (inFlight < pipelineDepth && sent < requestsPerConnection) {
+                String command = nextCommand();
+                for (int i = 0; i < command.length(); i++) {
+                    out.put((byte) command.charAt(i));
+                }
+                out.put((byte) '\n');
+                sendTimes[(oldest + inFlight) % pipelineDepth] = System.nanoTime();
+                inFlight++;
+                sent++;
+            }
+        }
+        /**
+         * Checks whether every response was received.
+         *
+         * @return true if the connection is done
+         */
+        boolean isDone() {
+            return received == requestsPerConnection;
+        }
+    }
+    /**
+     * Runs the load test with the given options and prints the throughput and latency percentiles.
+     *
+     * @param args optional flags: --port, --connections, --requests, --pipeline, --symbols, and --seed
+     */
+    public static void main(String[] args) {
+        StockLoadClient client = parse(args);
+        if (client == null) {
+            System.out.println("Usage: java StockLoadClient [--port N] [--connections N] [--requests N] [--pipeline N] "
+                    + "[--symbols N] [--seed N]");
+            return;
+        }
+        try {
+            client.run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Parses the command-line options.
+     *
+     * @param args the command-line arguments
+     * @return the configured client, or null if the arguments are invalid
+     */
+    private static StockLoadClient parse(String[] args) {
+        StockLoadClient client = new StockLoadClient();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    return null;
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--port":
+                        client.port = Integer.parseInt(value);
+                        break;
+                    case "--connections":
+                        client.connectionCount = Integer.parseInt(value);
+                        break;
+                    case "--requests":
+                        client.requestsPerConnection = Integer.parseInt(value);
+                        break;
+                    case "--pipeline":
+                        client.pipelineDepth = Integer.parseInt(value);
+                        break;
+                    case "--symbols":
+                        client.symbolCount = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        client.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (client.port <= 0 || client.port > 0xFFFF || client.connectionCount <= 0 || client.requestsPerConnection <= 0
+                || client.pipelineDepth <= 0 || client.symbolCount <= 0 || client.symbolCount > MAX_SYMBOLS) {
+            return null;
+        }
+        return client;
+    }
+    /**
+     * Opens every connection, drives them until all responses are received, and prints the results.
+     *
+     * @throws IOException if a connection fails
+     */
+    private void run() throws IOException {
+        random = new Random(seed);
+        symbols = new String[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            symbols[i] = symbolOf(i);
+        }
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        long startTime = System.nanoTime();
+        int done = 0;
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connectionCount; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                if (channel.connect(address)) { // Connected at once, so OP_CONNECT will not be selected
+                    connection.fill();
+                    flush(key, connection);
+                }
+            }
+            while (done < connectionCount) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isConnectable()) {
+                        connection.channel.finishConnect();
+                        connection.fill();
+                    }
+                    if (key.isReadable() && read(connection)) {
+                        connection.fill();
+                    }
+                    if (connection.isDone()) {
+                        key.cancel();
+                        connection.channel.close();
+                        done++;
+                        continue;
+                    }
+                    flush(key, connection);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        long total = (long) connectionCount * requestsPerConnection;
+        System.out.printf("%d connections, %d commands each, pipeline depth %d: %d commands in %.3f ms, %.0f commands/s, "
+                + "%d errors%n", connectionCount, requestsPerConnection, pipelineDepth, total, elapsed / 1e6,
+                total * 1e9 / elapsed, errors);
+        System.out.printf("%10s %10s %10s %10s %10s %10s%n", "Count", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        System.out.printf("%10d", histogram.getTotalCount());
+        for (double percentile : PERCENTILES) {
+            System.out.printf(" %10.3f", histogram.getValueAtPercentile(percentile) / 1e3);
+        }
+        System.out.printf(" %10.3f%n", histogram.getMax() / 1e3);
+    }
+    /**
+     * Reads from a connection and records the latency of every complete response line.
+     *
+     * @param connection the connection
+     * @return true if at least one response was received
+     * @throws IOException if the connection cannot be read or was closed by the server
+     */
+    private boolean read(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        if (connection.channel.read(in) < 0) {
+            throw new IOException("Server closed the connection");
+        }
+        long now = System.nanoTime();
+        byte[] bytes = in.array();
+        int start = 0;
+        int responses = 0;
+        for (int i = 0; i < in.position(); i++) {
+            if (bytes[i] == '\n') {
+                if (i - start >= 5 && bytes[start] == 'E' && bytes[start + 1] == 'R' && bytes[start + 2] == 'R') {
+                    errors++;
+                }
+                histogram.record(now - connection.sendTimes[connection.oldest]);
+                connection.oldest = (connection.oldest + 1) % pipelineDepth;
+                connection.inFlight--;
+                connection.received++;
+                responses++;
+                start = i + 1;
+            }
+        }
+        in.limit(in.position()).position(start);
+        in.compact();
+        return responses > 0;
+    }
+    /**
+     * Writes as much of the pending commands as the socket takes, and selects the events
+     * of the connection: reads while commands are in flight, and writes while some are pending.
+     *
+     * @param key the key of the connection
+     * @param connection the connection
+     * @throws IOException if the connection cannot be written
+     */
+    private void flush(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        if (connection.channel.isConnected() && out.position() > 0) {
+            out.flip();
+            connection.channel.write(out);
+            out.compact();
+        }
+        int interest = connection.channel.isConnected() ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT;
+        if (out.position() > 0 && connection.channel.isConnected()) {
+            interest |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(interest);
+    }
+    /**
+     * Creates the next command of the mix.
+     *
+     * @return a command line without the line terminator
+     */
+    private String nextCommand() {
+        String symbol = symbols[random.nextInt(symbols.length)];
+        double choice = random.nextDouble();
+        if (choice < SEARCH_RATIO) {
+            return "SEARCH " + symbol;
+        }
+        String values = (1 + random.nextInt(99900) / 100.0) + " " + random.nextInt(1000000) + " " + random.nextInt(10000000);
+        if (choice < SEARCH_RATIO + ADD_RATIO) {
+            return "ADD " + symbol + " " + values;
+        }
+        return "UPDATE " + symbol + " " + symbol + " " + values;
+    }
+    /**
+     * Creates the symbol with the given index, with four letters for up to MAX_SYMBOLS symbols.
+     *
+     * @param index the index of the symbol
+     * @return the symbol
+     */
+    private static String symbolOf(int index) {
+        char[] letters = new char[SYMBOL_LETTERS];
+        for (int i = letters.length - 1; i >= 0; i--) {
+            letters[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return new String(letters);
+    }
+}
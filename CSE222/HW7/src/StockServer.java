@@ -0,0 +1,411 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Consumer;
+/**
+ * StockServer class serves the stock management commands of Main over TCP on the loopback
+ * interface, to many clients at once. A client sends one command per line, in the same format
+ * as the lines of a command file, and receives one response line per command, in order:
+ * <pre>
+ * ADD, REMOVE, UPDATE    OK
+ * SEARCH                 the stock as printed by Main, or "Stock not found: SYMBOL"
+ * invalid line           ERROR followed by the message Main would print
+ * failed command         ERROR followed by the message of the failure
+ * </pre>
+ * Empty lines are ignored.
+ *
+ * One thread runs a Selector over every connection and applies the commands to a plain
+ * StockDataManager, so commands from all clients are applied one at a time without locks.
+ * Clients may pipeline: every complete line in a read is answered, and the responses of a
+ * whole read are written together with one flush. A connection whose responses cannot be
+ * written as fast as it sends commands is not read again until its backlog is written,
+ * so slow readers cannot make the server buffer without bound. A client that shuts down its
+ * output still receives the responses to everything it sent, including a last line without
+ * a terminator; the connection is closed once they are written. If a connection cannot be
+ * accepted, for example because the process ran out of file descriptors, the server stops
+ * accepting for a moment and keeps serving the connections it has.
+ *
+ * <pre>
+ * java StockServer [--port N] [--engine NAME] [--filter] [--cache N]
+ * </pre>
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7070;
+    private static final int BACKLOG = 4096; // Pending connections the kernel may queue
+    private static final int BUFFER_SIZE = 1 << 14; // Input buffer per connection, which bounds the line length
+    private static final int HIGH_WATER_MARK = 1 << 16; // Unwritten response bytes at which reading pauses
+    private static final long ACCEPT_BACKOFF_MILLIS = 100; // Pause of accepting after a failed accept
+
+    private final StockDataManager manager;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final SelectionKey acceptKey;
+    private volatile boolean running = true;
+    private volatile boolean serving; // Set once run() is called, which then closes the sockets itself
+    private long accepted;
+    private long requests;
+    private long flushes;
+    private long acceptResumeTime; // System.nanoTime() at which accepting resumes, or 0 if it is not paused
+    /**
+     * Connection class holds the buffers of one client connection.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE); // Responses not yet written, in write mode
+        boolean closing; // Set once the input ended; the connection closes when out is written
+        final Consumer<String> errors = message -> respond("ERROR " + message);
+        /**
+         * Constructs a new Connection.
+         *
+         * @param channel the accepted channel
+         */
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+        /**
+         * Appends a response line to the output buffer, growing it if needed.
+         *
+         * @param response the response, without the line terminator
+         */
+        void respond(String response) {
+            int length = response.length() + 1;
+            if (out.remaining() < length) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + length));
+                out.flip();
+                grown.put(out);
+                out = grown;
+            }
+            for (int i = 0; i < response.length(); i++) {
+                out.put((byte) response.charAt(i));
+            }
+            out.put((byte) '\n');
+        }
+    }
+    /**
+     * Opens a server socket on the loopback interface. Connections are only accepted once {@link #run()} is called.
+     *
+     * @param manager the manager the commands are applied to; it must only be used by the server thread
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the socket cannot be opened or bound
+     */
+    public StockServer(StockDataManager manager, int port) throws IOException {
+        this.manager = manager;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+            server.configureBlocking(false);
+            acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+    /**
+     * Starts a server and serves clients until the process is stopped.
+     *
+     * @param args optional flags: --port N, --engine NAME, --filter, and --cache N
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        StockIndex.Engine engine = StockIndex.Engine.AVL;
+        boolean filter = false;
+        int cacheCapacity = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--port") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                    engine = StockIndex.Engine.of(args[++i]);
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    cacheCapacity = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--filter")) {
+                    filter = true;
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (port < 0 || port > 0xFFFF || cacheCapacity < 0) {
+                throw new IllegalArgumentException("Invalid port or cache capacity");
+            }
+        } catch (IllegalArgumentException e) { // Also thrown for a bad number or an unknown engine
+            System.out.println("Usage: java StockServer [--port N] [--engine NAME] [--filter] [--cache N]");
+            return;
+        }
+
+        try (StockServer server = new StockServer(new StockDataManager(engine, false, filter, cacheCapacity), port)) {
+            System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+            server.run();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Gets the port the server listens on, which is useful when it was opened on port 0.
+     *
+     * @return the local port
+     * @throws IOException if the port cannot be determined
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+    /**
+     * Accepts connections and serves their commands on the calling thread until {@link #close()} is called.
+     *
+     * @throws IOException if the selector or the server socket fails
+     */
+    public void run() throws IOException {
+        serving = true;
+        try {
+            while (running) {
+                selector.select((acceptResumeTime != 0) ? ACCEPT_BACKOFF_MILLIS : 0);
+                if (acceptResumeTime != 0 && System.nanoTime() - acceptResumeTime >= 0) {
+                    acceptResumeTime = 0;
+                    acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(key, connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(key, connection);
+                        }
+                    } catch (IOException e) { // The client reset or otherwise broke its connection
+                        disconnect(key, connection);
+                    }
+                }
+            }
+        } finally {
+            closeSockets();
+        }
+    }
+    /**
+     * Stops the server. If it is serving, the serving thread closes the sockets when it
+     * leaves {@link #run()}, soon after; otherwise they are closed at once.
+     *
+     * @throws IOException if a socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        if (!serving) {
+            closeSockets();
+        }
+    }
+    /**
+     * Gets the number of connections accepted so far.
+     *
+     * @return the number of accepted connections
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+    /**
+     * Gets the number of command lines answered so far.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+    /**
+     * Gets the number of writes of responses so far. With pipelining clients it is lower than
+     * the number of requests, because all responses to one read are written together.
+     *
+     * @return the number of flushes
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+    /**
+     * Accepts every pending connection. A connection that fails while it is set up is closed.
+     * If accepting itself fails, typically because the process has no file descriptors left,
+     * accepting pauses for ACCEPT_BACKOFF_MILLIS so that the server does not spin on the
+     * pending connection while it keeps serving the others.
+     */
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                acceptKey.interestOps(0);
+                acceptResumeTime = System.nanoTime() + ACCEPT_BACKOFF_MILLIS * 1000000;
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                accepted++;
+            } catch (IOException e) { // The client reset the connection before it was set up
+                try {
+                    channel.close();
+                } catch (IOException closeError) {
+                    // The channel is unusable either way
+                }
+            }
+        }
+    }
+    /**
+     * Reads from a connection, answers every complete line, and flushes the responses.
+     * At the end of the input, the last line is answered even without a terminator, and the
+     * connection is closed once every response is written. A line that does not fit into the
+     * input buffer is answered with an error and closes the connection the same way.
+     *
+     * @param key the key of the connection
+     * @param connection the connection
+     * @throws IOException if the connection cannot be read or written
+     */
+    private void read(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+        boolean ended = connection.channel.read(in) < 0;
+        byte[] bytes = in.array();
+        int start = 0;
+        for (int i = 0; i < in.position(); i++) {
+            if (bytes[i] == '\n') {
+                answer(bytes, start, i, connection);
+                start = i + 1;
+            }
+        }
+        if (ended) {
+            answer(bytes, start, in.position(), connection);
+            in.clear();
+            connection.closing = true;
+        } else {
+            in.limit(in.position()).position(start);
+            in.compact();
+            if (!in.hasRemaining()) {
+                connection.respond("ERROR Line too long");
+                connection.closing = true;
+            }
+        }
+        flush(key, connection);
+    }
+    /**
+     * Answers one line of input, without its terminator; empty lines are ignored.
+     *
+     * @param bytes the input buffer
+     * @param start the index of the first byte of the line
+     * @param end the index after the last byte of the line
+     * @param connection the connection that sent it
+     */
+    private void answer(byte[] bytes, int start, int end, Connection connection) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (end > start) {
+            handle(new String(bytes, start, end - start, StandardCharsets.US_ASCII), connection);
+        }
+    }
+    /**
+     * Applies one command line and appends its response. A command that fails with an
+     * unexpected exception is answered with ERROR and its message, like an invalid line.
+     *
+     * @param line the command line
+     * @param connection the connection that sent it
+     */
+    private void handle(String line, Connection connection) {
+        requests++;
+        StockCommand command;
+        Stock stock;
+        try {
+            command = StockCommand.parse(line, connection.errors);
+            if (command == null) {
+                return;
+            }
+            stock = command.applyTo(manager);
+        } catch (RuntimeException e) { // One bad request must not stop the server for every client
+            connection.respond("ERROR " + ((e.getMessage() != null) ? e.getMessage() : e.toString()));
+            return;
+        }
+        if (command.getType() != StockCommand.Type.SEARCH) {
+            connection.respond("OK");
+        } else if (stock != null) {
+            connection.respond(stock.toString());
+        } else {
+            connection.respond("Stock not found: " + command.getSymbol());
+        }
+    }
+    /**
+     * Writes as much of the pending responses as the socket takes, and selects the events of the
+     * connection: writes while responses are pending, and reads while the backlog is small and
+     * the input has not ended. A closing connection is closed once every response is written.
+     *
+     * @param key the key of the connection
+     * @param connection the connection
+     * @throws IOException if the connection cannot be written
+     */
+    private void flush(SelectionKey key, Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        if (out.position() > 0) {
+            out.flip();
+            connection.channel.write(out);
+            out.compact();
+            flushes++;
+        }
+        if (connection.closing && out.position() == 0) {
+            disconnect(key, connection);
+            return;
+        }
+        int interest = (!connection.closing && out.position() < HIGH_WATER_MARK) ? SelectionKey.OP_READ : 0;
+        if (out.position() > 0) {
+            interest |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(interest);
+    }
+    /**
+     * Closes the server socket, every connection, and the selector, unless they are already closed.
+     *
+     * @throws IOException if a socket cannot be closed
+     */
+    private synchronized void closeSockets() throws IOException {
+        if (!selector.isOpen()) {
+            return;
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+    /**
+     * Closes a connection and cancels its key.
+     *
+     * @param key the key of the connection
+     * @param connection the connection
+     * @throws IOException if the channel cannot be closed
+     */
+    private void disconnect(SelectionKey key, Connection connection) throws IOException {
+        key.cancel();
+        connection.channel.close();
+    }
+}
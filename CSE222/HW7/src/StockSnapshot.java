@@ -0,0 +1,156 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+/**
+ * StockSnapshot class stores every stock of a StockDataManager in a compact binary file.
+ * The stocks are written in symbol order, so they can be loaded back into a balanced tree
+ * in linear time. The file also records the sequence number of the last write-ahead log
+ * record it contains, and ends with a checksum:
+ * <pre>
+ * int magic, int version, long lastSequence, int count,
+ * count times: UTF symbol, double price, long volume, long marketCap,
+ * long crc32c of everything before it
+ * </pre>
+ * A snapshot is first written to a temporary file, forced to disk, and then moved over the
+ * old one, so a crash leaves either the old or the new snapshot, never a partial one. The
+ * directory is forced after the move, so once {@link #write} returns the new snapshot survives
+ * a crash and the log it contains may be emptied.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockSnapshot {
+    private static final int MAGIC = 0x53544B53; // "STKS"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final long lastSequence;
+    private final Stock[] stocks;
+    /**
+     * Constructs a new StockSnapshot that was read from a file.
+     *
+     * @param lastSequence the sequence number of the last log record in the snapshot
+     * @param stocks the stocks in symbol order
+     */
+    private StockSnapshot(long lastSequence, Stock[] stocks) {
+        this.lastSequence = lastSequence;
+        this.stocks = stocks;
+    }
+    /**
+     * Writes every stock of a manager to a snapshot file, replacing the old snapshot atomically
+     * and durably.
+     *
+     * @param file the snapshot file
+     * @param lastSequence the sequence number of the last log record applied to the manager
+     * @param manager the manager to save
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(Path file, long lastSequence, StockDataManager manager) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fileOut, crc), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastSequence);
+            out.writeInt(manager.size());
+            try {
+                manager.forEach(stock -> {
+                    try {
+                        out.writeUTF(stock.getSymbol());
+                        out.writeDouble(stock.getPrice());
+                        out.writeLong(stock.getVolume());
+                        out.writeLong(stock.getMarketCap());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+            fileOut.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+    /**
+     * Forces a directory to disk, which makes a rename within it durable. Windows cannot open
+     * a directory as a channel, so there the rename relies on the journal of the file system.
+     *
+     * @param directory the directory to force
+     * @throws IOException if the directory cannot be forced
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+    /**
+     * Reads a snapshot file.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot, or is damaged
+     */
+    public static StockSnapshot read(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream fileIn = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(fileIn, crc));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a stock snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            long lastSequence = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Damaged snapshot: " + file);
+            }
+            Stock[] stocks = new Stock[count];
+            for (int i = 0; i < count; i++) {
+                stocks[i] = new Stock(in.readUTF(), in.readDouble(), in.readLong(), in.readLong());
+            }
+            long expected = crc.getValue();
+            if (new DataInputStream(fileIn).readLong() != expected) {
+                throw new IOException("Damaged snapshot: " + file);
+            }
+            return new StockSnapshot(lastSequence, stocks);
+        }
+    }
+    /**
+     * Gets the sequence number of the last write-ahead log record contained in the snapshot.
+     *
+     * @return the last sequence number
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+    /**
+     * Gets the stocks of the snapshot in symbol order.
+     *
+     * @return the stocks
+     */
+    public Stock[] getStocks() {
+        return stocks;
+    }
+}
@@ -0,0 +1,311 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+/**
+ * StockWal class is an append-only binary write-ahead log of stock modifications.
+ * Every record holds one ADD, REMOVE, or UPDATE command and a sequence number:
+ * <pre>
+ * int length, int crc32c, then length bytes of body:
+ *   long sequence, byte type, symbol, [new symbol for UPDATE], [double price, long volume, long marketCap]
+ * </pre>
+ * A symbol is its packed {@link SymbolKey}, followed by a short length and UTF-8 bytes only for
+ * fallback keys. Sequence numbers increase, so records already contained in a snapshot can be skipped.
+ *
+ * Appends use group commit: records are collected in a buffer and written and forced to disk
+ * together once a group is full or {@link #commit()} is called, so one fsync covers a whole group.
+ * A record is only durable after the commit of its group. A record that was cut short by a
+ * crash is detected by its length or checksum when the log is replayed, and the log is
+ * truncated before it.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class StockWal implements AutoCloseable {
+    private static final int HEADER_SIZE = 8; // Length and checksum
+    private static final int MAX_SYMBOL_BYTES = 0xFFFF;
+    private static final int MIN_BODY_SIZE = 8 + 1 + 8; // A REMOVE with a packed symbol
+    private static final int MAX_BODY_SIZE = 8 + 1 + 2 * (8 + 2 + MAX_SYMBOL_BYTES) + 24; // An UPDATE with two fallback symbols
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final int groupSize;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE + HEADER_SIZE + MAX_BODY_SIZE);
+    private final CRC32C crc = new CRC32C();
+    private int pending; // Records appended since the last commit
+    private long syncCount;
+    private boolean replayed;
+    /**
+     * Opens a log file, creating it if it does not exist.
+     * The log must be replayed with {@link #replay} before anything is appended.
+     *
+     * @param file the log file
+     * @param groupSize the number of records that are committed together; 1 commits every record
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if groupSize is not positive
+     */
+    public StockWal(Path file, int groupSize) throws IOException {
+        if (groupSize <= 0) {
+            throw new IllegalArgumentException("Group size must be positive: " + groupSize);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.groupSize = groupSize;
+    }
+    /**
+     * Reads the log from the start and passes every record with a sequence number above
+     * afterSequence to the action, in log order. The log is truncated after the last
+     * complete record, and appends continue from there.
+     *
+     * @param afterSequence the last sequence number that must not be replayed
+     * @param action receives each replayed command; the command object is reused
+     * @return the highest sequence number in the log, or afterSequence if it is higher
+     * @throws IOException if the log cannot be read or truncated
+     */
+    public long replay(long afterSequence, Consumer<StockCommand> action) throws IOException {
+        long lastSequence = afterSequence;
+        long validEnd = 0;
+        long previous = Long.MIN_VALUE;
+        StockCommand command = new StockCommand();
+        byte[] body = new byte[256];
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        try {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < MIN_BODY_SIZE || length > MAX_BODY_SIZE) {
+                    break;
+                }
+                if (body.length < length) {
+                    body = new byte[Math.max(length, body.length * 2)];
+                }
+                in.readFully(body, 0, length);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body, 0, length);
+                long sequence = decode(record, command);
+                if (sequence <= previous) {
+                    break;
+                }
+                previous = sequence;
+                validEnd += HEADER_SIZE + length;
+                if (sequence > afterSequence) {
+                    action.accept(command);
+                    lastSequence = sequence;
+                }
+            }
+        } catch (EOFException | RuntimeException e) {
+            // A record cut short by a crash or otherwise damaged ends the valid part of the log
+        }
+
+        if (channel.size() > validEnd) {
+            channel.truncate(validEnd);
+            channel.force(false);
+        }
+        channel.position(validEnd);
+        replayed = true;
+        return lastSequence;
+    }
+    /**
+     * Appends a modifying command to the log. The record is buffered and becomes durable
+     * when its group is committed.
+     *
+     * @param sequence the sequence number of the record, higher than that of every earlier record
+     * @param command an ADD, REMOVE, or UPDATE command
+     * @throws IOException if a full group cannot be written
+     * @throws IllegalArgumentException if the command is a SEARCH or a symbol is longer than 65535 bytes
+     * @throws IllegalStateException if the log has not been replayed yet
+     */
+    public void append(long sequence, StockCommand command) throws IOException {
+        if (!replayed) {
+            throw new IllegalStateException("The log must be replayed before appending");
+        }
+        if (command.getType() == StockCommand.Type.SEARCH) {
+            throw new IllegalArgumentException("SEARCH commands are not logged");
+        }
+        if (buffer.position() >= BUFFER_SIZE) {
+            write(); // The buffer always has room for one more record of the largest size
+        }
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(sequence);
+        buffer.put((byte) command.getType().ordinal());
+        try {
+            putSymbol(command, false);
+            if (command.getType() == StockCommand.Type.UPDATE) {
+                putSymbol(command, true);
+            }
+        } catch (IllegalArgumentException e) {
+            buffer.position(start);
+            throw e;
+        }
+        if (command.getType() != StockCommand.Type.REMOVE) {
+            buffer.putDouble(command.getPrice());
+            buffer.putLong(command.getVolume());
+            buffer.putLong(command.getMarketCap());
+        }
+        int length = buffer.position() - start - HEADER_SIZE;
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(start + HEADER_SIZE).limit(start + HEADER_SIZE + length);
+        crc.reset();
+        crc.update(record);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+
+        if (++pending >= groupSize) {
+            commit();
+        }
+    }
+    /**
+     * Writes every buffered record and forces the log to disk, making all appended records durable.
+     *
+     * @throws IOException if the log cannot be written or forced
+     */
+    public void commit() throws IOException {
+        if (pending == 0 && buffer.position() == 0) {
+            return;
+        }
+        write();
+        channel.force(false);
+        pending = 0;
+        syncCount++;
+    }
+    /**
+     * Discards every record after a snapshot has made them unnecessary.
+     * Buffered records are discarded as well, so the snapshot must include them.
+     *
+     * @throws IOException if the log cannot be truncated
+     */
+    public void reset() throws IOException {
+        buffer.clear();
+        pending = 0;
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+    }
+    /**
+     * Gets the number of times the log has been forced to disk by commits.
+     *
+     * @return the number of commits that reached the disk
+     */
+    public long getSyncCount() {
+        return syncCount;
+    }
+    /**
+     * Gets the size of the log file, not counting buffered records.
+     *
+     * @return the size in bytes
+     * @throws IOException if the size cannot be read
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+    /**
+     * Commits every appended record and closes the log.
+     *
+     * @throws IOException if the log cannot be committed or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (replayed) {
+                commit();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+    /**
+     * Writes the buffered records to the file without forcing them to disk.
+     *
+     * @throws IOException if the records cannot be written
+     */
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    /**
+     * Appends one of the symbols of a command to the buffer: its packed key and,
+     * for fallback keys, its UTF-8 bytes.
+     *
+     * @param command the command the symbol belongs to
+     * @param newSymbol whether to append the new symbol of an UPDATE instead of the current one
+     * @throws IllegalArgumentException if the symbol is longer than 65535 bytes
+     */
+    private void putSymbol(StockCommand command, boolean newSymbol) {
+        long key = newSymbol ? command.getNewSymbolKey() : command.getSymbolKey();
+        buffer.putLong(key);
+        if (!SymbolKey.isPacked(key)) {
+            String symbol = newSymbol ? command.getNewSymbol() : command.getSymbol();
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_SYMBOL_BYTES) {
+                throw new IllegalArgumentException("Symbol is too long to be logged: " + bytes.length + " bytes");
+            }
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+    /**
+     * Decodes the body of a record into a command.
+     *
+     * @param record the body of the record
+     * @param command the command object to fill
+     * @return the sequence number of the record
+     * @throws IllegalArgumentException if the record type is invalid
+     */
+    private static long decode(ByteBuffer record, StockCommand command) {
+        long sequence = record.getLong();
+        int ordinal = record.get();
+        StockCommand.Type[] types = StockCommand.Type.values();
+        if (ordinal < 0 || ordinal >= types.length || types[ordinal] == StockCommand.Type.SEARCH) {
+            throw new IllegalArgumentException("Invalid record type: " + ordinal);
+        }
+        StockCommand.Type type = types[ordinal];
+        long symbolKey = record.getLong();
+        String symbol = getSymbol(symbolKey, record);
+        long newSymbolKey = SymbolKey.FALLBACK;
+        String newSymbol = null;
+        if (type == StockCommand.Type.UPDATE) {
+            newSymbolKey = record.getLong();
+            newSymbol = getSymbol(newSymbolKey, record);
+        }
+        if (type == StockCommand.Type.REMOVE) {
+            command.set(type, symbolKey, symbol, newSymbolKey, newSymbol, 0, 0, 0);
+        } else {
+            command.set(type, symbolKey, symbol, newSymbolKey, newSymbol, record.getDouble(), record.getLong(), record.getLong());
+        }
+        return sequence;
+    }
+    /**
+     * Reads the UTF-8 bytes that follow a fallback key in a record.
+     *
+     * @param key the packed symbol that was just read
+     * @param record the body of the record
+     * @return the symbol for a fallback key, or null for a packed key
+     */
+    private static String getSymbol(long key, ByteBuffer record) {
+        if (SymbolKey.isPacked(key)) {
+            return null;
+        }
+        byte[] bytes = new byte[record.getShort() & 0xFFFF];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * SymbolFilter class is a counting Bloom filter over stock symbols. It answers whether a symbol
+ * might be stored or is certainly not stored, so lookups of unknown symbols can be rejected in
+ * constant time without searching the index. Unlike a plain Bloom filter it keeps a small counter
+ * instead of a bit in every cell, so symbols can also be removed when their stocks are deleted.
+ *
+ * A symbol is hashed from its packed {@link SymbolKey}, or from its String for symbols that cannot
+ * be packed, into {@link #HASH_COUNT} cells by double hashing. With {@link #CELLS_PER_SYMBOL} cells
+ * per symbol the false positive rate is about 1% while the filter holds at most its capacity.
+ * Counters that reach 255 stay there, because their true count is no longer known; such a cell
+ * can only cause false positives, never false negatives.
+ *
+ * The filter also counts how many checks it answered and how many of them it rejected, and the
+ * owner reports the checks that passed the filter although the symbol was missing.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class SymbolFilter {
+    public static final int CELLS_PER_SYMBOL = 10;
+    public static final int HASH_COUNT = 5;
+    private static final int MIN_CAPACITY = 64;
+    private static final int SATURATED = 0xFF;
+
+    private final byte[] counters;
+    private final int mask;
+    private final int capacity;
+    private int count; // Number of symbols added and not removed
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    /**
+     * Constructs a new, empty SymbolFilter.
+     *
+     * @param capacity the number of symbols the filter should hold at its target false positive rate
+     * @throws IllegalArgumentException if capacity is negative or too large
+     */
+    public SymbolFilter(int capacity) {
+        if (capacity < 0 || capacity > (1 << 30) / CELLS_PER_SYMBOL) {
+            throw new IllegalArgumentException("Invalid filter capacity: " + capacity);
+        }
+        this.capacity = Math.max(capacity, MIN_CAPACITY);
+        int cells = Integer.highestOneBit(this.capacity * CELLS_PER_SYMBOL - 1) << 1;
+        counters = new byte[cells];
+        mask = cells - 1;
+    }
+    /**
+     * Gets the filter key of a symbol: its packed key, or a hash of it if it cannot be packed.
+     * Hashes of unpackable symbols may equal packed keys, which only causes false positives.
+     *
+     * @param symbol the stock symbol
+     * @return the key to pass to the other methods
+     */
+    public static long keyOf(String symbol) {
+        long key = SymbolKey.encode(symbol);
+        return SymbolKey.isPacked(key) ? key : mix(symbol.hashCode() ^ SymbolKey.FALLBACK);
+    }
+    /**
+     * Adds a symbol. A symbol must only be added once until it is removed.
+     *
+     * @param key the filter key of the symbol
+     */
+    public void add(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int cell = (int) (h1 + i * h2) & mask;
+            if ((counters[cell] & SATURATED) != SATURATED) {
+                counters[cell]++;
+            }
+        }
+        count++;
+    }
+    /**
+     * Removes a symbol that was added before.
+     *
+     * @param key the filter key of the symbol
+     */
+    public void remove(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int cell = (int) (h1 + i * h2) & mask;
+            if ((counters[cell] & SATURATED) != SATURATED && counters[cell] != 0) {
+                counters[cell]--;
+            }
+        }
+        count--;
+    }
+    /**
+     * Checks whether a symbol might have been added, and counts the check.
+     *
+     * @param key the filter key of the symbol
+     * @return false if the symbol was certainly not added, true if it might have been
+     */
+    public boolean mightContain(long key) {
+        checks.increment();
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            if (counters[(int) (h1 + i * h2) & mask] == 0) {
+                rejections.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Records that a check passed the filter although the symbol was not stored.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+    /**
+     * Checks whether the filter holds more symbols than its capacity, so that its false
+     * positive rate is above the target and it should be rebuilt with a larger capacity.
+     *
+     * @return true if the filter is over its capacity
+     */
+    public boolean isOverloaded() {
+        return count > capacity;
+    }
+    /**
+     * Gets the number of symbols the filter holds at its target false positive rate.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    /**
+     * Gets the number of symbols in the filter.
+     *
+     * @return the number of symbols added and not removed
+     */
+    public int getCount() {
+        return count;
+    }
+    /**
+     * Gets the number of checks answered.
+     *
+     * @return the number of calls of {@link #mightContain}
+     */
+    public long getChecks() {
+        return checks.sum();
+    }
+    /**
+     * Gets the number of checks that rejected their symbol, that is, the misses
+     * answered without searching the index.
+     *
+     * @return the number of rejected checks
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+    /**
+     * Gets the number of checks that passed although their symbol was not stored.
+     *
+     * @return the number of false positives
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+    /**
+     * Gets the fraction of missing symbols that passed the filter.
+     *
+     * @return the false positive rate, or 0 if no missing symbol was checked
+     */
+    public double getFalsePositiveRate() {
+        long falsePositives = getFalsePositives();
+        long misses = getRejections() + falsePositives;
+        return (misses == 0) ? 0 : (double) falsePositives / misses;
+    }
+    /**
+     * Adds the counters of another filter's checks to this filter, so that
+     * they are kept when a filter is replaced by a larger one.
+     *
+     * @param other the filter whose counters to add
+     */
+    public void addCounters(SymbolFilter other) {
+        checks.add(other.getChecks());
+        rejections.add(other.getRejections());
+        falsePositives.add(other.getFalsePositives());
+    }
+    /**
+     * Returns a summary of the counters.
+     *
+     * @return a string with the checks, rejections, and false positives
+     */
+    @Override
+    public String toString() {
+        return String.format("Symbol filter: %d symbols, %d checks, %d rejected, %d false positives (%.2f%% of misses)",
+                count, getChecks(), getRejections(), getFalsePositives(), 100 * getFalsePositiveRate());
+    }
+    /**
+     * Scrambles the bits of a key with the finalizer of SplitMix64.
+     *
+     * @param key the key
+     * @return the scrambled key
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+}
@@ -0,0 +1,119 @@
+import java.nio.ByteBuffer;
+/**
+ * SymbolKey class for packing stock symbols into order-preserving long keys.
+ * A symbol of up to 12 uppercase letters is stored as 5 bits per letter, with
+ * 'A' to 'Z' mapped to 1 to 26 and unused trailing positions left as 0, so that
+ * comparing two packed keys as longs gives the same result as comparing the symbols.
+ * Symbols that do not fit are given the {@link #FALLBACK} key and are ordered
+ * after every packed symbol, by String comparison among themselves.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public final class SymbolKey {
+    /** Maximum number of letters that fit into a packed key. */
+    public static final int MAX_LENGTH = 12;
+    /** Key shared by all symbols that cannot be packed. It is larger than any packed key. */
+    public static final long FALLBACK = Long.MAX_VALUE;
+    private static final int BITS_PER_LETTER = 5;
+    private static final long LETTER_MASK = (1L << BITS_PER_LETTER) - 1;
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private SymbolKey() {
+    }
+    /**
+     * Packs a symbol into a long key.
+     *
+     * @param symbol the symbol to pack
+     * @return the packed key, or {@link #FALLBACK} if the symbol is longer than
+     *         {@link #MAX_LENGTH} or contains a character other than 'A' to 'Z'
+     */
+    public static long encode(String symbol) {
+        int length = symbol.length();
+        if (length > MAX_LENGTH) {
+            return FALLBACK;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = symbol.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return FALLBACK;
+            }
+            key = (key << BITS_PER_LETTER) | (c - 'A' + 1);
+        }
+        return key << (BITS_PER_LETTER * (MAX_LENGTH - length));
+    }
+    /**
+     * Packs a symbol stored as ASCII bytes in a buffer into a long key, without creating a String.
+     *
+     * @param buffer the buffer holding the symbol
+     * @param start the index of the first byte of the symbol
+     * @param end the index just past the last byte of the symbol
+     * @return the packed key, or {@link #FALLBACK} if the symbol cannot be packed
+     */
+    public static long encode(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length > MAX_LENGTH) {
+            return FALLBACK;
+        }
+        long key = 0;
+        for (int i = start; i < end; i++) {
+            byte c = buffer.get(i);
+            if (c < 'A' || c > 'Z') {
+                return FALLBACK;
+            }
+            key = (key << BITS_PER_LETTER) | (c - 'A' + 1);
+        }
+        return key << (BITS_PER_LETTER * (MAX_LENGTH - length));
+    }
+    /**
+     * Unpacks a key back into its symbol.
+     *
+     * @param key a packed key
+     * @return the symbol the key was packed from
+     * @throws IllegalArgumentException if the key is {@link #FALLBACK}
+     */
+    public static String decode(long key) {
+        if (key == FALLBACK) {
+            throw new IllegalArgumentException("Fallback keys do not carry their symbol");
+        }
+        char[] letters = new char[MAX_LENGTH];
+        int length = 0;
+        for (int shift = BITS_PER_LETTER * (MAX_LENGTH - 1); shift >= 0; shift -= BITS_PER_LETTER) {
+            int letter = (int) ((key >>> shift) & LETTER_MASK);
+            if (letter == 0) {
+                break;
+            }
+            letters[length++] = (char) ('A' + letter - 1);
+        }
+        return new String(letters, 0, length);
+    }
+    /**
+     * Checks whether a key holds a packed symbol.
+     *
+     * @param key the key to check
+     * @return true if the key is not {@link #FALLBACK}
+     */
+    public static boolean isPacked(long key) {
+        return key != FALLBACK;
+    }
+    /**
+     * Compares two symbols given together with their keys.
+     * Packed keys are compared as longs; the symbols are only consulted when
+     * both keys are {@link #FALLBACK}.
+     *
+     * @param key the key of the first symbol
+     * @param symbol the first symbol
+     * @param otherKey the key of the second symbol
+     * @param otherSymbol the second symbol
+     * @return a negative number, zero, or a positive number as the first symbol
+     *         is ordered before, equal to, or after the second
+     */
+    public static int compare(long key, String symbol, long otherKey, String otherSymbol) {
+        if (key != otherKey) {
+            return (key < otherKey) ? -1 : 1;
+        }
+        return (key == FALLBACK) ? symbol.compareTo(otherSymbol) : 0;
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Random;
+/**
+ * SymbolKeyBenchmark class for measuring the effect of packed symbol keys on AVLTree search latency.
+ * It builds two trees holding the same symbols, once in uppercase (packed keys, long comparisons)
+ * and once in lowercase (fallback keys, String comparisons). Lowercasing keeps the symbol order,
+ * so both trees have the same shape and only the comparison path differs.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class SymbolKeyBenchmark {
+    private static final int SYMBOL_LENGTH = 5;
+    private static final int QUERY_COUNT = 1 << 20;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of symbols (default 1,000,000) and random seed (default 42)
+     */
+    public static void main(String[] args) {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 42;
+        Random random = new Random(seed);
+
+        String[] symbols = new String[size];
+        AVLTree packedTree = new AVLTree();
+        AVLTree fallbackTree = new AVLTree();
+        int count = 0;
+        while (count < size) {
+            String symbol = randomSymbol(random);
+            if (packedTree.search(symbol) == null) {
+                packedTree.insert(new Stock(symbol, 100.0, 1000, 1000000));
+                fallbackTree.insert(new Stock(symbol.toLowerCase(), 100.0, 1000, 1000000));
+                symbols[count++] = symbol;
+            }
+        }
+
+        // Half of the queries hit, the other half are random and mostly miss.
+        String[] packedQueries = new String[QUERY_COUNT];
+        String[] fallbackQueries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            packedQueries[i] = random.nextBoolean() ? symbols[random.nextInt(size)] : randomSymbol(random);
+            fallbackQueries[i] = packedQueries[i].toLowerCase();
+        }
+
+        System.out.println("Symbols: " + size + ", queries per round: " + QUERY_COUNT);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            measure(packedTree, packedQueries);
+            measure(fallbackTree, fallbackQueries);
+        }
+        double packedTotal = 0;
+        double fallbackTotal = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            packedTotal += measure(packedTree, packedQueries);
+            fallbackTotal += measure(fallbackTree, fallbackQueries);
+        }
+        System.out.printf("Packed long keys:     %.1f ns/search%n", packedTotal / MEASURED_ROUNDS);
+        System.out.printf("String fallback keys: %.1f ns/search%n", fallbackTotal / MEASURED_ROUNDS);
+    }
+    /**
+     * Searches every query once and returns the average time per search.
+     *
+     * @param tree the tree to search
+     * @param queries the symbols to search for
+     * @return the average search time in nanoseconds
+     */
+    private static double measure(AVLTree tree, String[] queries) {
+        int found = 0;
+        long startTime = System.nanoTime();
+        for (String query : queries) {
+            if (tree.search(query) != null) {
+                found++;
+            }
+        }
+        long endTime = System.nanoTime();
+        if (found < 0) {
+            System.out.println(found); // Keeps the loop from being optimized away
+        }
+        return (endTime - startTime) / (double) queries.length;
+    }
+    /**
+     * Generates a random uppercase symbol.
+     *
+     * @param random the random number generator
+     * @return a random symbol of SYMBOL_LENGTH letters
+     */
+    private static String randomSymbol(Random random) {
+        char[] letters = new char[SYMBOL_LENGTH];
+        for (int i = 0; i < SYMBOL_LENGTH; i++) {
+            letters[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
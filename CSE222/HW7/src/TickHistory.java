@@ -0,0 +1,247 @@
+/**
+ * TickHistory class keeps the most recent price and volume ticks of one stock in a
+ * fixed-capacity ring buffer of primitive arrays, and maintains statistics over them
+ * as ticks arrive, so queries never rescan the history.
+ *
+ * The window of the statistics is the ring itself: the last getCapacity() ticks.
+ * The simple moving average and the volume-weighted average price are kept as running
+ * sums, to which each new tick is added and from which the tick it overwrites is
+ * subtracted. The sums are recomputed from the ring once per capacity ticks, which keeps
+ * rounding errors from accumulating at an amortized cost of O(1) per tick. The rolling
+ * minimum and maximum come from monotonic deques of tick numbers, whose prices only
+ * increase (for the minimum) or decrease (for the maximum) from front to back. The
+ * exponential moving average covers every tick ever recorded, not only the window.
+ *
+ * A history takes about 40 bytes per tick of capacity and allocates nothing after construction.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class TickHistory {
+    private final long[] timestamps;
+    private final double[] prices;
+    private final long[] volumes;
+    private final long[] minimums; // Ring of tick numbers with increasing prices, oldest first
+    private final long[] maximums; // Ring of tick numbers with decreasing prices, oldest first
+    private int minimumHead, minimumCount;
+    private int maximumHead, maximumCount;
+    private final double smoothing;
+    private long tickCount; // Number of ticks ever recorded, and the number of the next tick
+    private double priceSum;
+    private double turnoverSum; // Sum of price * volume
+    private long volumeSum;
+    private double exponentialAverage = Double.NaN;
+    /**
+     * TickConsumer interface receives the ticks of a history without boxing.
+     */
+    public interface TickConsumer {
+        /**
+         * Receives one tick.
+         *
+         * @param timestamp the time of the tick
+         * @param price the price of the tick
+         * @param volume the volume of the tick
+         */
+        void accept(long timestamp, double price, long volume);
+    }
+    /**
+     * Constructs a new, empty TickHistory.
+     *
+     * @param capacity the number of ticks kept, which is also the window of the statistics
+     * @param smoothing the weight of a new tick in the exponential moving average, between 0 exclusive and 1 inclusive
+     * @throws IllegalArgumentException if capacity is not positive or smoothing is out of range
+     */
+    public TickHistory(int capacity, double smoothing) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (!(smoothing > 0 && smoothing <= 1)) {
+            throw new IllegalArgumentException("Smoothing must be in (0, 1]: " + smoothing);
+        }
+        timestamps = new long[capacity];
+        prices = new double[capacity];
+        volumes = new long[capacity];
+        minimums = new long[capacity];
+        maximums = new long[capacity];
+        this.smoothing = smoothing;
+    }
+    /**
+     * Constructs a new TickHistory with the same ticks and statistics as another history.
+     *
+     * @param other the history to copy
+     */
+    public TickHistory(TickHistory other) {
+        timestamps = other.timestamps.clone();
+        prices = other.prices.clone();
+        volumes = other.volumes.clone();
+        minimums = other.minimums.clone();
+        maximums = other.maximums.clone();
+        minimumHead = other.minimumHead;
+        minimumCount = other.minimumCount;
+        maximumHead = other.maximumHead;
+        maximumCount = other.maximumCount;
+        smoothing = other.smoothing;
+        tickCount = other.tickCount;
+        priceSum = other.priceSum;
+        turnoverSum = other.turnoverSum;
+        volumeSum = other.volumeSum;
+        exponentialAverage = other.exponentialAverage;
+    }
+    /**
+     * Records a tick, overwriting the oldest tick if the history is full, and updates the statistics.
+     *
+     * @param timestamp the time of the tick
+     * @param price the price of the tick
+     * @param volume the volume of the tick
+     */
+    public void record(long timestamp, double price, long volume) {
+        int capacity = prices.length;
+        long tick = tickCount++;
+        int slot = (int) (tick % capacity);
+        if (tick >= capacity) {
+            priceSum -= prices[slot];
+            turnoverSum -= prices[slot] * volumes[slot];
+            volumeSum -= volumes[slot];
+        }
+        timestamps[slot] = timestamp;
+        prices[slot] = price;
+        volumes[slot] = volume;
+        if (slot == capacity - 1) {
+            recomputeSums();
+        } else {
+            priceSum += price;
+            turnoverSum += price * volume;
+            volumeSum += volume;
+        }
+        exponentialAverage = Double.isNaN(exponentialAverage) ? price
+                : exponentialAverage + smoothing * (price - exponentialAverage);
+
+        long expired = tick - capacity; // Tick numbers up to this one have left the window
+        if (minimumCount > 0 && minimums[minimumHead] <= expired) {
+            minimumHead = (minimumHead + 1) % capacity;
+            minimumCount--;
+        }
+        while (minimumCount > 0 && prices[(int) (minimums[(minimumHead + minimumCount - 1) % capacity] % capacity)] >= price) {
+            minimumCount--;
+        }
+        minimums[(minimumHead + minimumCount++) % capacity] = tick;
+        if (maximumCount > 0 && maximums[maximumHead] <= expired) {
+            maximumHead = (maximumHead + 1) % capacity;
+            maximumCount--;
+        }
+        while (maximumCount > 0 && prices[(int) (maximums[(maximumHead + maximumCount - 1) % capacity] % capacity)] <= price) {
+            maximumCount--;
+        }
+        maximums[(maximumHead + maximumCount++) % capacity] = tick;
+    }
+    /**
+     * Gets the number of ticks kept, which is also the window of the statistics.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return prices.length;
+    }
+    /**
+     * Gets the number of ticks in the window.
+     *
+     * @return the number of ticks kept, at most the capacity
+     */
+    public int size() {
+        return (int) Math.min(tickCount, prices.length);
+    }
+    /**
+     * Gets the number of ticks ever recorded, including those that left the window.
+     *
+     * @return the total number of ticks
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+    /**
+     * Gets the simple moving average of the prices in the window.
+     *
+     * @return the average price, or NaN if there are no ticks
+     */
+    public double getSimpleMovingAverage() {
+        return (tickCount == 0) ? Double.NaN : priceSum / size();
+    }
+    /**
+     * Gets the exponential moving average of every price recorded.
+     *
+     * @return the exponential moving average, or NaN if there are no ticks
+     */
+    public double getExponentialMovingAverage() {
+        return exponentialAverage;
+    }
+    /**
+     * Gets the volume-weighted average price of the window.
+     *
+     * @return the sum of price times volume divided by the sum of volumes, or NaN if the volumes sum to 0
+     */
+    public double getVolumeWeightedAveragePrice() {
+        return (volumeSum == 0) ? Double.NaN : turnoverSum / volumeSum;
+    }
+    /**
+     * Gets the lowest price in the window.
+     *
+     * @return the lowest price, or NaN if there are no ticks
+     */
+    public double getMinimumPrice() {
+        return (minimumCount == 0) ? Double.NaN : prices[(int) (minimums[minimumHead] % prices.length)];
+    }
+    /**
+     * Gets the highest price in the window.
+     *
+     * @return the highest price, or NaN if there are no ticks
+     */
+    public double getMaximumPrice() {
+        return (maximumCount == 0) ? Double.NaN : prices[(int) (maximums[maximumHead] % prices.length)];
+    }
+    /**
+     * Gets the total volume of the window.
+     *
+     * @return the sum of the volumes in the window
+     */
+    public long getVolumeSum() {
+        return volumeSum;
+    }
+    /**
+     * Passes the ticks of the window to the given consumer, oldest first.
+     *
+     * @param consumer the consumer of the ticks
+     */
+    public void forEachTick(TickConsumer consumer) {
+        int capacity = prices.length;
+        for (long tick = tickCount - size(); tick < tickCount; tick++) {
+            int slot = (int) (tick % capacity);
+            consumer.accept(timestamps[slot], prices[slot], volumes[slot]);
+        }
+    }
+    /**
+     * Returns a summary of the statistics.
+     *
+     * @return a string with the window size and the statistics
+     */
+    @Override
+    public String toString() {
+        return String.format("TickHistory [ticks=%d, sma=%.4f, ema=%.4f, vwap=%.4f, min=%.4f, max=%.4f]", size(),
+                getSimpleMovingAverage(), getExponentialMovingAverage(), getVolumeWeightedAveragePrice(),
+                getMinimumPrice(), getMaximumPrice());
+    }
+    /**
+     * Recomputes the running sums from the ticks in the ring, discarding accumulated rounding errors.
+     * Called whenever the last slot of the ring is written, so once per capacity ticks.
+     */
+    private void recomputeSums() {
+        int size = size();
+        priceSum = 0;
+        turnoverSum = 0;
+        volumeSum = 0;
+        for (int slot = 0; slot < size; slot++) {
+            priceSum += prices[slot];
+            turnoverSum += prices[slot] * volumes[slot];
+            volumeSum += volumes[slot];
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.SplittableRandom;
+/**
+ * ZipfDistribution class draws ranks from a Zipf distribution, in which rank k (counting from 1)
+ * has a probability proportional to 1 / k^exponent. It models skewed access patterns where a
+ * few popular symbols receive most of the traffic.
+ *
+ * Sampling uses the rejection-inversion method of Hoermann and Derflinger, which needs
+ * constant time and memory per sample regardless of the number of ranks, so it also
+ * works for millions of symbols without a cumulative probability table.
+ *
+ * @author Muhammet Akkurt
+ * @version 1.0
+ */
+public class ZipfDistribution {
+    private final int numberOfElements;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralNumberOfElements;
+    private final double s;
+    /**
+     * Constructs a new ZipfDistribution.
+     *
+     * @param numberOfElements the number of ranks
+     * @param exponent the skew; 0 gives a uniform distribution, around 1 is typical for popularity
+     * @throws IllegalArgumentException if numberOfElements is not positive or exponent is negative
+     */
+    public ZipfDistribution(int numberOfElements, double exponent) {
+        if (numberOfElements <= 0) {
+            throw new IllegalArgumentException("Number of elements must be positive: " + numberOfElements);
+        }
+        if (!(exponent >= 0)) {
+            throw new IllegalArgumentException("Exponent must not be negative: " + exponent);
+        }
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+    /**
+     * Draws a rank.
+     *
+     * @param random the source of randomness
+     * @return a zero-based rank between 0 and numberOfElements - 1; rank 0 is the most likely
+     */
+    public int sample(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralNumberOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > numberOfElements) {
+                k = numberOfElements;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k - 1;
+            }
+        }
+    }
+    /**
+     * Gets the number of ranks.
+     *
+     * @return the number of ranks
+     */
+    public int getNumberOfElements() {
+        return numberOfElements;
+    }
+    /**
+     * Gets the skew of the distribution.
+     *
+     * @return the exponent
+     */
+    public double getExponent() {
+        return exponent;
+    }
+    /**
+     * Computes the antiderivative of h(x) = 1 / x^exponent, shifted so that it is continuous at exponent 1.
+     *
+     * @param x a positive number
+     * @return the value of the antiderivative
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+    /**
+     * Computes h(x) = 1 / x^exponent.
+     *
+     * @param x a positive number
+     * @return the value of h
+     */
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+    /**
+     * Computes the inverse of {@link #hIntegral(double)}.
+     *
+     * @param x a value of hIntegral
+     * @return the x for which hIntegral returns the given value
+     */
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            t = -1; // Guards against rounding errors at the lower end
+        }
+        return Math.exp(helper1(t) * x);
+    }
+    /**
+     * Computes log(1 + x) / x accurately, also for x close to 0.
+     *
+     * @param x a number greater than -1
+     * @return log1p(x) / x
+     */
+    private static double helper1(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+    /**
+     * Computes (exp(x) - 1) / x accurately, also for x close to 0.
+     *
+     * @param x a number
+     * @return expm1(x) / x
+     */
+    private static double helper2(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}